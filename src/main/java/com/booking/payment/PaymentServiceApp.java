@@ -3,6 +3,7 @@ package com.booking.payment;
 import com.booking.payment.config.ApplicationProperties;
 import com.booking.payment.config.DefaultProfileUtil;
 import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.config.NapasSimulatorProperties;
 
 import io.github.jhipster.config.JHipsterConstants;
 
@@ -25,7 +26,8 @@ import java.util.Collection;
 
 @ComponentScan
 @EnableAutoConfiguration(exclude = {MetricFilterAutoConfiguration.class, MetricRepositoryAutoConfiguration.class})
-@EnableConfigurationProperties({LiquibaseProperties.class, ApplicationProperties.class, NapasGatewayProperties.class})
+@EnableConfigurationProperties({LiquibaseProperties.class, ApplicationProperties.class, NapasGatewayProperties.class,
+    NapasSimulatorProperties.class})
 @EnableDiscoveryClient
 public class PaymentServiceApp {
 
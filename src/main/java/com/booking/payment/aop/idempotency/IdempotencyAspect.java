@@ -0,0 +1,151 @@
+package com.booking.payment.aop.idempotency;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.security.SecurityUtils;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import com.booking.payment.web.rest.errors.IdempotentRequestInProgressException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.core.IMap;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.xml.bind.DatatypeConverter;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aspect making the {@link Idempotent} endpoints safe to retry.
+ * <p>
+ * The responses are kept in a Hazelcast map, shared by all the instances of the service, under the login of the
+ * user and the Idempotency-Key of the request. A retry is answered from the map, without reaching the database nor
+ * Elasticsearch, and duplicates arriving while the first request is processed wait on the lock of its entry, so that
+ * only one of them is processed.
+ * <p>
+ * Only the successful responses are kept: a request which failed may be retried with the same key.
+ */
+@Aspect
+public class IdempotencyAspect {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * The name of the Hazelcast map of the responses, configured in CacheConfiguration.
+     */
+    public static final String RESPONSES_MAP = "idempotentResponses";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String ENTITY_NAME = "idempotency";
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyAspect.class);
+
+    private final IMap<String, IdempotentResponse> responses;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties.Idempotency properties;
+
+    public IdempotencyAspect(IMap<String, IdempotentResponse> responses, ObjectMapper objectMapper,
+                             ApplicationProperties applicationProperties) {
+        this.responses = responses;
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getIdempotency();
+    }
+
+    /**
+     * Advice that replays the response of an earlier request with the same Idempotency-Key, or else proceeds and
+     * keeps the response.
+     *
+     * @param joinPoint join point for advice
+     * @return the response
+     * @throws Throwable the exception of the endpoint
+     */
+    @Around("@annotation(com.booking.payment.aop.idempotency.Idempotent)")
+    public Object replayOrProceed(ProceedingJoinPoint joinPoint) throws Throwable {
+        HttpServletRequest request = currentRequest();
+        String idempotencyKey = request == null ? null : request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey == null) {
+            return joinPoint.proceed();
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestAlertException("Invalid Idempotency-Key", ENTITY_NAME, "idempotencykeyinvalid");
+        }
+        String key = SecurityUtils.getCurrentUserLogin().orElse("anonymous") + ':' + idempotencyKey;
+        String fingerprint = fingerprint(request, joinPoint);
+
+        IdempotentResponse response = responses.get(key);
+        if (response == null) {
+            if (!responses.tryLock(key, properties.getLockWaitMillis(), TimeUnit.MILLISECONDS,
+                properties.getLockLeaseMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IdempotentRequestInProgressException();
+            }
+            try {
+                // The request which held the lock may have completed in the meantime
+                response = responses.get(key);
+                if (response == null) {
+                    Object result = joinPoint.proceed();
+                    if (result instanceof ResponseEntity && ((ResponseEntity<?>) result).getStatusCode().is2xxSuccessful()) {
+                        responses.set(key, new IdempotentResponse(fingerprint, (ResponseEntity<?>) result));
+                    }
+                    return result;
+                }
+            } finally {
+                responses.unlock(key);
+            }
+        }
+        if (!response.getFingerprint().equals(fingerprint)) {
+            throw new BadRequestAlertException("The Idempotency-Key was used by another request", ENTITY_NAME,
+                "idempotencykeyreused");
+        }
+        log.debug("Replaying the response to the request with the Idempotency-Key {}", idempotencyKey);
+        return response.toResponseEntity();
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest() : null;
+    }
+
+    /**
+     * The SHA-256 of the method, the URI and the body of a request, which tells a retry from another request
+     * reusing the same key.
+     */
+    private String fingerprint(HttpServletRequest request, ProceedingJoinPoint joinPoint) throws Exception {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ' ');
+        digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        Annotation[][] parameterAnnotations = ((MethodSignature) joinPoint.getSignature()).getMethod().getParameterAnnotations();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; i < args.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof RequestBody) {
+                    digest.update((byte) '\n');
+                    digest.update(objectMapper.writeValueAsBytes(args[i]));
+                }
+            }
+        }
+        return DatatypeConverter.printHexBinary(digest.digest());
+    }
+}
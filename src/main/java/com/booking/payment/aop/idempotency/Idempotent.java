@@ -0,0 +1,15 @@
+package com.booking.payment.aop.idempotency;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a REST endpoint whose requests may carry an "Idempotency-Key" header: the response to the first request
+ * with a key is stored, and replayed to the retries of that request.
+ *
+ * @see IdempotencyAspect
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Idempotent {
+}
@@ -0,0 +1,50 @@
+package com.booking.payment.aop.idempotency;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The response to a request with an Idempotency-Key, with the fingerprint of that request.
+ */
+public class IdempotentResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String fingerprint;
+
+    private final int status;
+
+    private final LinkedHashMap<String, ArrayList<String>> headers = new LinkedHashMap<>();
+
+    private final Object body;
+
+    IdempotentResponse(String fingerprint, ResponseEntity<?> responseEntity) {
+        this.fingerprint = fingerprint;
+        this.status = responseEntity.getStatusCodeValue();
+        for (Map.Entry<String, List<String>> header : responseEntity.getHeaders().entrySet()) {
+            headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        this.body = responseEntity.getBody();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Rebuild the response, marked as replayed.
+     */
+    ResponseEntity<Object> toResponseEntity() {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        headers.forEach(httpHeaders::put);
+        httpHeaders.set(IdempotencyAspect.IDEMPOTENT_REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(body, httpHeaders, HttpStatus.valueOf(status));
+    }
+}
@@ -1,7 +1,13 @@
 package com.booking.payment.config;
 
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MaxSizeConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Properties specific to Payment Service.
  * <p>
@@ -11,4 +17,721 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Bulk bulk = new Bulk();
+
+    private final Export export = new Export();
+
+    private final SearchIndexer searchIndexer = new SearchIndexer();
+
+    private final Reindex reindex = new Reindex();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Reconciliation reconciliation = new Reconciliation();
+
+    private final PaymentPoller paymentPoller = new PaymentPoller();
+
+    private final Cache cache = new Cache();
+
+    private final DepositCache depositCache = new DepositCache();
+
+    private final CacheWarmUp cacheWarmUp = new CacheWarmUp();
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public SearchIndexer getSearchIndexer() {
+        return searchIndexer;
+    }
+
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Reconciliation getReconciliation() {
+        return reconciliation;
+    }
+
+    public PaymentPoller getPaymentPoller() {
+        return paymentPoller;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public DepositCache getDepositCache() {
+        return depositCache;
+    }
+
+    public CacheWarmUp getCacheWarmUp() {
+        return cacheWarmUp;
+    }
+
+    public static class Bulk {
+
+        private int chunkSize = 500;
+
+        private int maxItems = 10000;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+    }
+
+    public static class Export {
+
+        private long timeout = 3600000;
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class SearchIndexer {
+
+        private int batchSize = 500;
+
+        private long pollDelay = 1000;
+
+        private long initialBackoff = 1000;
+
+        private long maxBackoff = 300000;
+
+        private long lease = 60000;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getPollDelay() {
+            return pollDelay;
+        }
+
+        public void setPollDelay(long pollDelay) {
+            this.pollDelay = pollDelay;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public long getLease() {
+            return lease;
+        }
+
+        public void setLease(long lease) {
+            this.lease = lease;
+        }
+    }
+
+    public static class Reindex {
+
+        private int parallelism = 4;
+
+        private long rangeSize = 100000;
+
+        private int batchSize = 1000;
+
+        private String refreshInterval = "1s";
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public long getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(long rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(String refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class Idempotency {
+
+        private int timeToLiveSeconds = 86400;
+
+        private long lockWaitMillis = 10000;
+
+        private long lockLeaseMillis = 60000;
+
+        private int maxSize = 100000;
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public long getLockWaitMillis() {
+            return lockWaitMillis;
+        }
+
+        public void setLockWaitMillis(long lockWaitMillis) {
+            this.lockWaitMillis = lockWaitMillis;
+        }
+
+        public long getLockLeaseMillis() {
+            return lockLeaseMillis;
+        }
+
+        public void setLockLeaseMillis(long lockLeaseMillis) {
+            this.lockLeaseMillis = lockLeaseMillis;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Reconciliation {
+
+        private String settlementDirectory = "settlements";
+
+        private String reportDirectory = "settlements/reports";
+
+        private int runSize = 500000;
+
+        private int bufferSize = 1048576;
+
+        private char delimiter = ',';
+
+        private String referenceColumn = "MerchTxnRef";
+
+        private String responseCodeColumn = "TxnResponseCode";
+
+        private String transactionNoColumn = "TransactionNo";
+
+        private String amountColumn = "Amount";
+
+        private String timeZone = "Asia/Ho_Chi_Minh";
+
+        public String getSettlementDirectory() {
+            return settlementDirectory;
+        }
+
+        public void setSettlementDirectory(String settlementDirectory) {
+            this.settlementDirectory = settlementDirectory;
+        }
+
+        public String getReportDirectory() {
+            return reportDirectory;
+        }
+
+        public void setReportDirectory(String reportDirectory) {
+            this.reportDirectory = reportDirectory;
+        }
+
+        public int getRunSize() {
+            return runSize;
+        }
+
+        public void setRunSize(int runSize) {
+            this.runSize = runSize;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public char getDelimiter() {
+            return delimiter;
+        }
+
+        public void setDelimiter(char delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        public String getReferenceColumn() {
+            return referenceColumn;
+        }
+
+        public void setReferenceColumn(String referenceColumn) {
+            this.referenceColumn = referenceColumn;
+        }
+
+        public String getResponseCodeColumn() {
+            return responseCodeColumn;
+        }
+
+        public void setResponseCodeColumn(String responseCodeColumn) {
+            this.responseCodeColumn = responseCodeColumn;
+        }
+
+        public String getTransactionNoColumn() {
+            return transactionNoColumn;
+        }
+
+        public void setTransactionNoColumn(String transactionNoColumn) {
+            this.transactionNoColumn = transactionNoColumn;
+        }
+
+        public String getAmountColumn() {
+            return amountColumn;
+        }
+
+        public void setAmountColumn(String amountColumn) {
+            this.amountColumn = amountColumn;
+        }
+
+        public String getTimeZone() {
+            return timeZone;
+        }
+
+        public void setTimeZone(String timeZone) {
+            this.timeZone = timeZone;
+        }
+    }
+
+    public static class PaymentPoller {
+
+        private boolean enabled = true;
+
+        private long pollDelay = 60000;
+
+        private long staleAfter = 900000;
+
+        private long abandonAfter = 3600000;
+
+        private long lease = 300000;
+
+        private int batchSize = 100;
+
+        private int maxConcurrency = 8;
+
+        private double rate = 20;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getPollDelay() {
+            return pollDelay;
+        }
+
+        public void setPollDelay(long pollDelay) {
+            this.pollDelay = pollDelay;
+        }
+
+        public long getStaleAfter() {
+            return staleAfter;
+        }
+
+        public void setStaleAfter(long staleAfter) {
+            this.staleAfter = staleAfter;
+        }
+
+        public long getAbandonAfter() {
+            return abandonAfter;
+        }
+
+        public void setAbandonAfter(long abandonAfter) {
+            this.abandonAfter = abandonAfter;
+        }
+
+        public long getLease() {
+            return lease;
+        }
+
+        public void setLease(long lease) {
+            this.lease = lease;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+    }
+
+    public static class DepositCache {
+
+        private boolean enabled = true;
+
+        private int timeToLiveSeconds = 300;
+
+        private int negativeTimeToLiveSeconds = 5;
+
+        private double earlyRefreshBeta = 1.0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public int getNegativeTimeToLiveSeconds() {
+            return negativeTimeToLiveSeconds;
+        }
+
+        public void setNegativeTimeToLiveSeconds(int negativeTimeToLiveSeconds) {
+            this.negativeTimeToLiveSeconds = negativeTimeToLiveSeconds;
+        }
+
+        public double getEarlyRefreshBeta() {
+            return earlyRefreshBeta;
+        }
+
+        public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+            this.earlyRefreshBeta = earlyRefreshBeta;
+        }
+    }
+
+    public static class CacheWarmUp {
+
+        private boolean enabled = true;
+
+        private long window = 86400000;
+
+        private int maxDeposits = 10000;
+
+        private int batchSize = 500;
+
+        private int parallelism = 4;
+
+        private long timeout = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindow() {
+            return window;
+        }
+
+        public void setWindow(long window) {
+            this.window = window;
+        }
+
+        public int getMaxDeposits() {
+            return maxDeposits;
+        }
+
+        public void setMaxDeposits(int maxDeposits) {
+            this.maxDeposits = maxDeposits;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * The Hazelcast map configurations, by map name or wildcard pattern.
+         */
+        private final Map<String, Region> regions = new LinkedHashMap<>();
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+    }
+
+    /**
+     * The bounds of a Hazelcast map. The time to live and the backup count default to the jhipster.cache.hazelcast ones.
+     */
+    public static class Region {
+
+        private Integer timeToLiveSeconds;
+
+        private MaxSizeConfig.MaxSizePolicy maxSizePolicy = MaxSizeConfig.MaxSizePolicy.PER_NODE;
+
+        private int maxSize = 10000;
+
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+        private InMemoryFormat inMemoryFormat = InMemoryFormat.BINARY;
+
+        private Integer backupCount;
+
+        private int asyncBackupCount = 0;
+
+        private boolean readBackupData = false;
+
+        private final NearCache nearCache = new NearCache();
+
+        public Integer getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(Integer timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public MaxSizeConfig.MaxSizePolicy getMaxSizePolicy() {
+            return maxSizePolicy;
+        }
+
+        public void setMaxSizePolicy(MaxSizeConfig.MaxSizePolicy maxSizePolicy) {
+            this.maxSizePolicy = maxSizePolicy;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public EvictionPolicy getEvictionPolicy() {
+            return evictionPolicy;
+        }
+
+        public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+        }
+
+        public InMemoryFormat getInMemoryFormat() {
+            return inMemoryFormat;
+        }
+
+        public void setInMemoryFormat(InMemoryFormat inMemoryFormat) {
+            this.inMemoryFormat = inMemoryFormat;
+        }
+
+        public Integer getBackupCount() {
+            return backupCount;
+        }
+
+        public void setBackupCount(Integer backupCount) {
+            this.backupCount = backupCount;
+        }
+
+        public int getAsyncBackupCount() {
+            return asyncBackupCount;
+        }
+
+        public void setAsyncBackupCount(int asyncBackupCount) {
+            this.asyncBackupCount = asyncBackupCount;
+        }
+
+        public boolean isReadBackupData() {
+            return readBackupData;
+        }
+
+        public void setReadBackupData(boolean readBackupData) {
+            this.readBackupData = readBackupData;
+        }
+
+        public NearCache getNearCache() {
+            return nearCache;
+        }
+    }
+
+    /**
+     * The copy of the entries owned by the other members that each member keeps locally, for the maps read far more
+     * often than written.
+     */
+    public static class NearCache {
+
+        private boolean enabled = false;
+
+        private int maxSize = 10000;
+
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+        private InMemoryFormat inMemoryFormat = InMemoryFormat.OBJECT;
+
+        private int timeToLiveSeconds = 0;
+
+        private int maxIdleSeconds = 0;
+
+        private boolean invalidateOnChange = true;
+
+        private boolean cacheLocalEntries = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public EvictionPolicy getEvictionPolicy() {
+            return evictionPolicy;
+        }
+
+        public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+        }
+
+        public InMemoryFormat getInMemoryFormat() {
+            return inMemoryFormat;
+        }
+
+        public void setInMemoryFormat(InMemoryFormat inMemoryFormat) {
+            this.inMemoryFormat = inMemoryFormat;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public int getMaxIdleSeconds() {
+            return maxIdleSeconds;
+        }
+
+        public void setMaxIdleSeconds(int maxIdleSeconds) {
+            this.maxIdleSeconds = maxIdleSeconds;
+        }
+
+        public boolean isInvalidateOnChange() {
+            return invalidateOnChange;
+        }
+
+        public void setInvalidateOnChange(boolean invalidateOnChange) {
+            this.invalidateOnChange = invalidateOnChange;
+        }
+
+        public boolean isCacheLocalEntries() {
+            return cacheLocalEntries;
+        }
+
+        public void setCacheLocalEntries(boolean cacheLocalEntries) {
+            this.cacheLocalEntries = cacheLocalEntries;
+        }
+    }
 }
@@ -1,8 +1,13 @@
 package com.booking.payment.config;
 
+import com.booking.payment.aop.idempotency.IdempotencyAspect;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositService;
+
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
 
+import com.codahale.metrics.MetricRegistry;
 import com.hazelcast.config.*;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.Hazelcast;
@@ -30,6 +35,11 @@ import javax.annotation.PreDestroy;
 @AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
 public class CacheConfiguration {
 
+    /**
+     * The Hazelcast maps of the Hibernate second level cache, named after the domain classes.
+     */
+    static final String DOMAIN_MAPS = "com.booking.payment.domain.*";
+
     private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
 
     private final Environment env;
@@ -65,7 +75,12 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public HazelcastInstance hazelcastInstance(JHipsterProperties jHipsterProperties) {
+    public NearCacheMetrics nearCacheMetrics(HazelcastInstance hazelcastInstance, MetricRegistry metricRegistry) {
+        return new NearCacheMetrics(hazelcastInstance, metricRegistry);
+    }
+
+    @Bean
+    public HazelcastInstance hazelcastInstance(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         log.debug("Configuring Hazelcast");
         HazelcastInstance hazelCastInstance = Hazelcast.getHazelcastInstanceByName("PaymentService");
         if (hazelCastInstance != null) {
@@ -104,11 +119,22 @@ public class CacheConfiguration {
                 }
             }
         }
-        config.getMapConfigs().put("default", initializeDefaultMapConfig());
+        config.getMapConfigs().put("default", initializeDefaultMapConfig(applicationProperties));
+        DepositSerializers.register(config.getSerializationConfig());
 
         // Full reference is available at: http://docs.hazelcast.org/docs/management-center/3.9/manual/html/Deploying_and_Starting.html
         config.setManagementCenterConfig(initializeDefaultManagementCenterConfig(jHipsterProperties));
-        config.getMapConfigs().put("com.booking.payment.domain.*", initializeDomainMapConfig(jHipsterProperties));
+        config.getMapConfigs().put(DOMAIN_MAPS,
+            initializeDomainMapConfig(jHipsterProperties, region(applicationProperties, DOMAIN_MAPS)));
+        config.getMapConfigs().put(DepositRepository.DEPOSITS_BY_USER_CACHE,
+            initializeDomainMapConfig(jHipsterProperties, region(applicationProperties, DepositRepository.DEPOSITS_BY_USER_CACHE)));
+        config.getMapConfigs().put(DepositService.DEPOSIT_DTOS_CACHE,
+            initializeDomainMapConfig(jHipsterProperties, region(applicationProperties, DepositService.DEPOSIT_DTOS_CACHE)));
+        config.getMapConfigs().put("org.hibernate.cache.spi.UpdateTimestampsCache", initializeUpdateTimestampsMapConfig());
+        config.getMapConfigs().put(IdempotencyAspect.RESPONSES_MAP, initializeIdempotencyMapConfig(applicationProperties));
+        // The regions of a single entity or query cache, which take precedence over the wildcard of the domain maps
+        applicationProperties.getCache().getRegions().forEach((name, region) ->
+            config.getMapConfigs().computeIfAbsent(name, key -> initializeDomainMapConfig(jHipsterProperties, region)));
         return Hazelcast.newHazelcastInstance(config);
     }
 
@@ -120,39 +146,95 @@ public class CacheConfiguration {
         return managementCenterConfig;
     }
 
-    private MapConfig initializeDefaultMapConfig() {
-        MapConfig mapConfig = new MapConfig();
-
     /*
-        Number of backups. If 1 is set as the backup-count for example,
-        then all entries of the map will be copied to another JVM for
-        fail-safety. Valid numbers are 0 (no backup), 1, 2, 3.
+        The maps without a configuration of their own, such as the query results region of Hibernate, are bounded by
+        the "default" region. They have no backups and never expire unless configured otherwise.
      */
-        mapConfig.setBackupCount(0);
+    private MapConfig initializeDefaultMapConfig(ApplicationProperties applicationProperties) {
+        return initializeRegionMapConfig(region(applicationProperties, "default"), 0, 0);
+    }
 
-    /*
-        Valid values are:
-        NONE (no eviction),
-        LRU (Least Recently Used),
-        LFU (Least Frequently Used).
-        NONE is the default.
+    private MapConfig initializeDomainMapConfig(JHipsterProperties jHipsterProperties, ApplicationProperties.Region region) {
+        JHipsterProperties.Cache.Hazelcast hazelcast = jHipsterProperties.getCache().getHazelcast();
+        return initializeRegionMapConfig(region, hazelcast.getTimeToLiveSeconds(), hazelcast.getBackupCount());
+    }
+
+    private static ApplicationProperties.Region region(ApplicationProperties applicationProperties, String name) {
+        return applicationProperties.getCache().getRegions().getOrDefault(name, new ApplicationProperties.Region());
+    }
+
+    /**
+     * The configuration of a map bounded by a region of the application.cache properties.
+     * <p>
+     * BINARY keeps the entries serialized, which is the cheapest for the Hibernate second level cache as it
+     * serializes its entries anyway, and lets the heap policies measure the size of the map. OBJECT keeps them
+     * deserialized, which suits the maps read far more often than written, but only the PER_NODE and
+     * PER_PARTITION policies can bound it.
      */
-        mapConfig.setEvictionPolicy(EvictionPolicy.LRU);
+    static MapConfig initializeRegionMapConfig(ApplicationProperties.Region region, int defaultTimeToLiveSeconds,
+                                               int defaultBackupCount) {
+        if (region.getInMemoryFormat() == InMemoryFormat.OBJECT && region.getMaxSizePolicy().name().contains("HEAP")) {
+            throw new IllegalArgumentException("The " + region.getMaxSizePolicy() +
+                " max size policy can't measure the maps in the OBJECT in-memory format");
+        }
+        MapConfig mapConfig = new MapConfig();
+        mapConfig.setTimeToLiveSeconds(region.getTimeToLiveSeconds() == null ?
+            defaultTimeToLiveSeconds : region.getTimeToLiveSeconds());
+        mapConfig.setBackupCount(region.getBackupCount() == null ? defaultBackupCount : region.getBackupCount());
+        mapConfig.setAsyncBackupCount(region.getAsyncBackupCount());
+        mapConfig.setReadBackupData(region.isReadBackupData());
+        mapConfig.setInMemoryFormat(region.getInMemoryFormat());
+        mapConfig.setEvictionPolicy(region.getEvictionPolicy());
+        mapConfig.setMaxSizeConfig(new MaxSizeConfig(region.getMaxSize(), region.getMaxSizePolicy()));
+        if (region.getNearCache().isEnabled()) {
+            mapConfig.setNearCacheConfig(initializeNearCacheConfig(region.getNearCache()));
+        }
+        return mapConfig;
+    }
 
     /*
-        Maximum size of the map. When max size is reached,
-        map is evicted based on the policy defined.
-        Any integer between 0 and Integer.MAX_VALUE. 0 means
-        Integer.MAX_VALUE. Default is 0.
+        A near cache serves the entries owned by the other members from the local memory, without a network hop
+        nor, in the OBJECT format, a deserialization. It is bounded by its own entry count, and its entries are
+        invalidated by the events of the map when they change elsewhere. The entries of the OBJECT format are
+        shared by the readers, which is fine for the second level cache as Hibernate copies them when assembling
+        the entities.
      */
-        mapConfig.setMaxSizeConfig(new MaxSizeConfig(0, MaxSizeConfig.MaxSizePolicy.USED_HEAP_SIZE));
+    private static NearCacheConfig initializeNearCacheConfig(ApplicationProperties.NearCache nearCache) {
+        NearCacheConfig nearCacheConfig = new NearCacheConfig();
+        nearCacheConfig.setInMemoryFormat(nearCache.getInMemoryFormat());
+        nearCacheConfig.setEvictionConfig(new EvictionConfig(nearCache.getMaxSize(),
+            EvictionConfig.MaxSizePolicy.ENTRY_COUNT, nearCache.getEvictionPolicy()));
+        nearCacheConfig.setTimeToLiveSeconds(nearCache.getTimeToLiveSeconds());
+        nearCacheConfig.setMaxIdleSeconds(nearCache.getMaxIdleSeconds());
+        nearCacheConfig.setInvalidateOnChange(nearCache.isInvalidateOnChange());
+        nearCacheConfig.setCacheLocalEntries(nearCache.isCacheLocalEntries());
+        return nearCacheConfig;
+    }
 
+    /*
+        The query cache regions (such as the DepositRepository ones) are named after the domain classes, so they use
+        the domain map configuration. Their results are only valid as long as the last update timestamp of each
+        table they read is known, so the timestamps region must never expire nor be evicted.
+     */
+    private MapConfig initializeUpdateTimestampsMapConfig() {
+        MapConfig mapConfig = new MapConfig();
+        mapConfig.setTimeToLiveSeconds(0);
+        mapConfig.setEvictionPolicy(EvictionPolicy.NONE);
         return mapConfig;
     }
 
-    private MapConfig initializeDomainMapConfig(JHipsterProperties jHipsterProperties) {
+    /*
+        The responses replayed to the retries of the requests with an Idempotency-Key. Losing one would let a retry
+        create a duplicate, so they are backed up on another member, and only the least recently used are evicted
+        when the map is full.
+     */
+    private MapConfig initializeIdempotencyMapConfig(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Idempotency idempotency = applicationProperties.getIdempotency();
         MapConfig mapConfig = new MapConfig();
-        mapConfig.setTimeToLiveSeconds(jHipsterProperties.getCache().getHazelcast().getTimeToLiveSeconds());
+        mapConfig.setTimeToLiveSeconds(idempotency.getTimeToLiveSeconds());
+        mapConfig.setBackupCount(1);
+        mapConfig.setEvictionPolicy(EvictionPolicy.LRU);
+        mapConfig.setMaxSizeConfig(new MaxSizeConfig(idempotency.getMaxSize(), MaxSizeConfig.MaxSizePolicy.PER_NODE));
         return mapConfig;
     }
 }
@@ -11,6 +11,9 @@ public final class Constants {
     public static final String SYSTEM_ACCOUNT = "system";
     public static final String ANONYMOUS_USER = "anonymoususer";
     public static final String DEFAULT_LANGUAGE = "en";
+
+    // Spring profile replacing the NAPAS gateway by a local simulator, see NapasGatewaySimulator
+    public static final String SPRING_PROFILE_NAPAS_SIMULATOR = "napas-simulator";
     
     private Constants() {
     }
@@ -0,0 +1,208 @@
+package com.booking.payment.config;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.CacheTombstone;
+import com.booking.payment.service.dto.CachedDepositDTO;
+import com.booking.payment.service.dto.DepositDTO;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+import java.io.IOException;
+
+/**
+ * Hazelcast serializers of the deposits and of the tombstones of their caches, in place of the Java serialization
+ * of their Serializable classes.
+ * <p>
+ * A deposit is written as one byte flagging its non null numbers, then its numbers and its strings, without the
+ * class descriptors of the Java serialization: it is several times smaller and faster to read and write, for each
+ * put, get and backup of the maps holding deposits. The status is written by name, so the format doesn't depend
+ * on the order of the DepositStatus constants.
+ * <p>
+ * A change of the fields must come with a new type id, so that the members of a rolling upgrade never read a
+ * format they don't know.
+ */
+final class DepositSerializers {
+
+    static final int DEPOSIT_TYPE_ID = 1001;
+
+    static final int DEPOSIT_DTO_TYPE_ID = 1002;
+
+    static final int CACHED_DEPOSIT_DTO_TYPE_ID = 1003;
+
+    static final int CACHE_TOMBSTONE_TYPE_ID = 1004;
+
+    private static final int ID = 1;
+
+    private static final int USER_ID = 1 << 1;
+
+    private static final int VERSION = 1 << 2;
+
+    private static final int AMOUNT = 1 << 3;
+
+    private DepositSerializers() {
+    }
+
+    static void register(SerializationConfig serializationConfig) {
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(Deposit.class).setImplementation(new DepositSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(DepositDTO.class).setImplementation(new DepositDTOSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(CachedDepositDTO.class).setImplementation(new CachedDepositDTOSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(CacheTombstone.class).setImplementation(new CacheTombstoneSerializer()));
+    }
+
+    static final class DepositSerializer implements StreamSerializer<Deposit> {
+
+        @Override
+        public int getTypeId() {
+            return DEPOSIT_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, Deposit deposit) throws IOException {
+            writeNumbers(out, deposit.getId(), deposit.getUserId(), deposit.getVersion(), deposit.getAmount());
+            out.writeUTF(deposit.getBookingCode());
+            out.writeUTF(deposit.getCurrencyCode());
+            writeStatus(out, deposit.getStatus());
+            out.writeUTF(deposit.getGatewayTransactionNo());
+        }
+
+        @Override
+        public Deposit read(ObjectDataInput in) throws IOException {
+            Deposit deposit = new Deposit();
+            int flags = in.readByte();
+            deposit.setId(readNumber(in, flags, ID));
+            deposit.setUserId(readNumber(in, flags, USER_ID));
+            deposit.setVersion(readNumber(in, flags, VERSION));
+            deposit.setAmount(readNumber(in, flags, AMOUNT));
+            deposit.setBookingCode(in.readUTF());
+            deposit.setCurrencyCode(in.readUTF());
+            deposit.setStatus(readStatus(in));
+            deposit.setGatewayTransactionNo(in.readUTF());
+            return deposit;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class DepositDTOSerializer implements StreamSerializer<DepositDTO> {
+
+        @Override
+        public int getTypeId() {
+            return DEPOSIT_DTO_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, DepositDTO depositDTO) throws IOException {
+            writeNumbers(out, depositDTO.getId(), depositDTO.getUserId(), depositDTO.getVersion(), depositDTO.getAmount());
+            out.writeUTF(depositDTO.getBookingCode());
+            out.writeUTF(depositDTO.getCurrencyCode());
+            writeStatus(out, depositDTO.getStatus());
+            out.writeUTF(depositDTO.getGatewayTransactionNo());
+        }
+
+        @Override
+        public DepositDTO read(ObjectDataInput in) throws IOException {
+            int flags = in.readByte();
+            Long id = readNumber(in, flags, ID);
+            Long userId = readNumber(in, flags, USER_ID);
+            Long version = readNumber(in, flags, VERSION);
+            Long amount = readNumber(in, flags, AMOUNT);
+            String bookingCode = in.readUTF();
+            String currencyCode = in.readUTF();
+            DepositStatus status = readStatus(in);
+            return new DepositDTO(id, bookingCode, userId, currencyCode, version, status, amount, in.readUTF());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class CachedDepositDTOSerializer implements StreamSerializer<CachedDepositDTO> {
+
+        @Override
+        public int getTypeId() {
+            return CACHED_DEPOSIT_DTO_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, CachedDepositDTO cachedDepositDTO) throws IOException {
+            out.writeLong(cachedDepositDTO.getExpiresAt());
+            out.writeLong(cachedDepositDTO.getLoadMillis());
+            out.writeObject(cachedDepositDTO.getDeposit());
+        }
+
+        @Override
+        public CachedDepositDTO read(ObjectDataInput in) throws IOException {
+            long expiresAt = in.readLong();
+            long loadMillis = in.readLong();
+            return new CachedDepositDTO(in.readObject(), expiresAt, loadMillis);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class CacheTombstoneSerializer implements StreamSerializer<CacheTombstone> {
+
+        @Override
+        public int getTypeId() {
+            return CACHE_TOMBSTONE_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, CacheTombstone cacheTombstone) throws IOException {
+            out.writeLong(cacheTombstone.getToken());
+        }
+
+        @Override
+        public CacheTombstone read(ObjectDataInput in) throws IOException {
+            return new CacheTombstone(in.readLong());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static void writeNumbers(ObjectDataOutput out, Long id, Long userId, Long version, Long amount)
+        throws IOException {
+        int flags = (id == null ? 0 : ID) | (userId == null ? 0 : USER_ID) | (version == null ? 0 : VERSION) |
+            (amount == null ? 0 : AMOUNT);
+        out.writeByte(flags);
+        writeNumber(out, id);
+        writeNumber(out, userId);
+        writeNumber(out, version);
+        writeNumber(out, amount);
+    }
+
+    private static void writeNumber(ObjectDataOutput out, Long number) throws IOException {
+        if (number != null) {
+            out.writeLong(number);
+        }
+    }
+
+    private static Long readNumber(ObjectDataInput in, int flags, int flag) throws IOException {
+        return (flags & flag) == 0 ? null : in.readLong();
+    }
+
+    private static void writeStatus(ObjectDataOutput out, DepositStatus status) throws IOException {
+        out.writeUTF(status == null ? null : status.name());
+    }
+
+    private static DepositStatus readStatus(ObjectDataInput in) throws IOException {
+        String status = in.readUTF();
+        return status == null ? null : DepositStatus.valueOf(status);
+    }
+}
@@ -16,8 +16,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class ElasticsearchConfiguration {
 
     @Bean
-    public ElasticsearchTemplate elasticsearchTemplate(Client client, Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
-        return new ElasticsearchTemplate(client, new CustomEntityMapper(jackson2ObjectMapperBuilder.createXmlMapper(false).build()));
+    public EntityMapper elasticsearchEntityMapper(Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
+        return new CustomEntityMapper(jackson2ObjectMapperBuilder.createXmlMapper(false).build());
+    }
+
+    @Bean
+    public ElasticsearchTemplate elasticsearchTemplate(Client client, EntityMapper elasticsearchEntityMapper) {
+        return new ElasticsearchTemplate(client, elasticsearchEntityMapper);
     }
 
     public class CustomEntityMapper implements EntityMapper {
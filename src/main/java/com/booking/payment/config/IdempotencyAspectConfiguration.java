@@ -0,0 +1,20 @@
+package com.booking.payment.config;
+
+import com.booking.payment.aop.idempotency.IdempotencyAspect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.core.HazelcastInstance;
+
+import org.springframework.context.annotation.*;
+
+@Configuration
+@EnableAspectJAutoProxy
+public class IdempotencyAspectConfiguration {
+
+    @Bean
+    public IdempotencyAspect idempotencyAspect(HazelcastInstance hazelcastInstance, ObjectMapper objectMapper,
+                                               ApplicationProperties applicationProperties) {
+        return new IdempotencyAspect(hazelcastInstance.getMap(IdempotencyAspect.RESPONSES_MAP), objectMapper,
+            applicationProperties);
+    }
+}
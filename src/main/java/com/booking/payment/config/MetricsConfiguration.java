@@ -1,5 +1,7 @@
 package com.booking.payment.config;
 
+import com.booking.payment.service.napas.GatewayConcurrencyLimit;
+
 import io.github.jhipster.config.JHipsterProperties;
 import io.github.jhipster.config.metrics.SpectatorLogMetricWriter;
 
@@ -10,6 +12,7 @@ import org.springframework.boot.actuate.metrics.writer.MetricWriter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.netflix.metrics.spectator.SpectatorMetricReader;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.JvmAttributeGaugeSet;
 import com.codahale.metrics.MetricRegistry;
@@ -40,6 +43,8 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
     private static final String PROP_METRIC_REG_JVM_FILES = "jvm.files";
     private static final String PROP_METRIC_REG_JVM_BUFFERS = "jvm.buffers";
     private static final String PROP_METRIC_REG_JVM_ATTRIBUTE_SET = "jvm.attributes";
+    private static final String PROP_METRIC_REG_NAPAS_GATEWAY_LIMIT = "napas.gateway.limit";
+    private static final String PROP_METRIC_REG_NAPAS_GATEWAY_IN_FLIGHT = "napas.gateway.in-flight";
 
     private final Logger log = LoggerFactory.getLogger(MetricsConfiguration.class);
 
@@ -51,6 +56,8 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
 
     private HikariDataSource hikariDataSource;
 
+    private GatewayConcurrencyLimit gatewayConcurrencyLimit;
+
     public MetricsConfiguration(JHipsterProperties jHipsterProperties) {
         this.jHipsterProperties = jHipsterProperties;
     }
@@ -60,6 +67,11 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
         this.hikariDataSource = hikariDataSource;
     }
 
+    @Autowired(required = false)
+    public void setGatewayConcurrencyLimit(GatewayConcurrencyLimit gatewayConcurrencyLimit) {
+        this.gatewayConcurrencyLimit = gatewayConcurrencyLimit;
+    }
+
     @Override
     @Bean
     public MetricRegistry getMetricRegistry() {
@@ -85,6 +97,11 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
             log.debug("Monitoring the datasource");
             hikariDataSource.setMetricRegistry(metricRegistry);
         }
+        if (gatewayConcurrencyLimit != null) {
+            log.debug("Monitoring the concurrency limit of the NAPAS gateway");
+            metricRegistry.register(PROP_METRIC_REG_NAPAS_GATEWAY_LIMIT, (Gauge<Integer>) gatewayConcurrencyLimit::getLimit);
+            metricRegistry.register(PROP_METRIC_REG_NAPAS_GATEWAY_IN_FLIGHT, (Gauge<Integer>) gatewayConcurrencyLimit::getInFlight);
+        }
         if (jHipsterProperties.getMetrics().getJmx().isEnabled()) {
             log.debug("Initializing Metrics JMX reporting");
             JmxReporter jmxReporter = JmxReporter.forRegistry(metricRegistry).build();
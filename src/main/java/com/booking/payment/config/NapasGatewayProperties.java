@@ -5,6 +5,9 @@ package com.booking.payment.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Tuan Nguyen
  *
@@ -13,11 +16,20 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class NapasGatewayProperties {
 
 	private String vpcUrl;
+	private String queryUrl;
 	private String merchantId;
 	private String accessCode;
 	private String secureHash;
 	private String username;
 	private String password;
+	private String returnUrl;
+	private String version = "2";
+	private String locale = "vn";
+	private String currency = "VND";
+	private final Map<String, Merchant> merchants = new LinkedHashMap<>();
+	private final Client client = new Client();
+	private final Limit limit = new Limit();
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker();
 
 	public String getVpcUrl() {
 		return vpcUrl;
@@ -43,6 +55,26 @@ public class NapasGatewayProperties {
 		return password;
 	}
 
+	public String getQueryUrl() {
+		return queryUrl;
+	}
+
+	public String getReturnUrl() {
+		return returnUrl;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getLocale() {
+		return locale;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
 	public void setVpcUrl(String vpcUrl) {
 		this.vpcUrl = vpcUrl;
 	}
@@ -66,4 +98,275 @@ public class NapasGatewayProperties {
 	public void setPassword(String password) {
 		this.password = password;
 	}
+
+	public void setQueryUrl(String queryUrl) {
+		this.queryUrl = queryUrl;
+	}
+
+	public void setReturnUrl(String returnUrl) {
+		this.returnUrl = returnUrl;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public void setLocale(String locale) {
+		this.locale = locale;
+	}
+
+	public void setCurrency(String currency) {
+		this.currency = currency;
+	}
+
+	/**
+	 * The merchant accounts other than the default one above, by name, each used for the payments in its
+	 * currency and, if it has one, of its channel.
+	 */
+	public Map<String, Merchant> getMerchants() {
+		return merchants;
+	}
+
+	public Client getClient() {
+		return client;
+	}
+
+	public Limit getLimit() {
+		return limit;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * A merchant account, used for the payments in its currency, and of its channel (the business line of the
+	 * booking) if it has one.
+	 */
+	public static class Merchant {
+
+		private String merchantId;
+		private String accessCode;
+		private String secureHash;
+		private String username;
+		private String password;
+		private String currency;
+		private String channel;
+
+		public String getMerchantId() {
+			return merchantId;
+		}
+
+		public void setMerchantId(String merchantId) {
+			this.merchantId = merchantId;
+		}
+
+		public String getAccessCode() {
+			return accessCode;
+		}
+
+		public void setAccessCode(String accessCode) {
+			this.accessCode = accessCode;
+		}
+
+		public String getSecureHash() {
+			return secureHash;
+		}
+
+		public void setSecureHash(String secureHash) {
+			this.secureHash = secureHash;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getPassword() {
+			return password;
+		}
+
+		public void setPassword(String password) {
+			this.password = password;
+		}
+
+		public String getCurrency() {
+			return currency;
+		}
+
+		public void setCurrency(String currency) {
+			this.currency = currency;
+		}
+
+		public String getChannel() {
+			return channel;
+		}
+
+		public void setChannel(String channel) {
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * The connections and threads of the calls to the back-office API of the gateway, QueryDR and refund.
+	 */
+	public static class Client {
+
+		private int maxConnections = 20;
+		private int connectTimeout = 2000;
+		private int readTimeout = 10000;
+		private int connectionRequestTimeout = 1000;
+		private int keepAlive = 30000;
+		private int threads = 10;
+		private int queueSize = 50;
+
+		public int getMaxConnections() {
+			return maxConnections;
+		}
+
+		public void setMaxConnections(int maxConnections) {
+			this.maxConnections = maxConnections;
+		}
+
+		public int getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		public void setConnectTimeout(int connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public int getReadTimeout() {
+			return readTimeout;
+		}
+
+		public void setReadTimeout(int readTimeout) {
+			this.readTimeout = readTimeout;
+		}
+
+		public int getConnectionRequestTimeout() {
+			return connectionRequestTimeout;
+		}
+
+		public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+			this.connectionRequestTimeout = connectionRequestTimeout;
+		}
+
+		public int getKeepAlive() {
+			return keepAlive;
+		}
+
+		public void setKeepAlive(int keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getQueueSize() {
+			return queueSize;
+		}
+
+		public void setQueueSize(int queueSize) {
+			this.queueSize = queueSize;
+		}
+	}
+
+	/**
+	 * The adaptive limit of the calls to the gateway in flight: it grows by one while the calls are fast, and
+	 * shrinks by the backoff ratio when a call is slower than the latency tolerance times the usual latency,
+	 * times out or fails.
+	 */
+	public static class Limit {
+
+		private int initialLimit = 20;
+		private int minLimit = 2;
+		private int maxLimit = 60;
+		private double backoffRatio = 0.9;
+		private double latencyTolerance = 2.0;
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		public double getBackoffRatio() {
+			return backoffRatio;
+		}
+
+		public void setBackoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+		}
+
+		public double getLatencyTolerance() {
+			return latencyTolerance;
+		}
+
+		public void setLatencyTolerance(double latencyTolerance) {
+			this.latencyTolerance = latencyTolerance;
+		}
+	}
+
+	/**
+	 * The Hystrix circuit breaker of the calls to the gateway: it opens when the error percentage of the last
+	 * 10 seconds reaches the threshold, over at least the request volume threshold, and lets one call through
+	 * after the sleep window to close again.
+	 */
+	public static class CircuitBreaker {
+
+		private int requestVolumeThreshold = 20;
+		private int errorThresholdPercentage = 50;
+		private int sleepWindow = 5000;
+
+		public int getRequestVolumeThreshold() {
+			return requestVolumeThreshold;
+		}
+
+		public void setRequestVolumeThreshold(int requestVolumeThreshold) {
+			this.requestVolumeThreshold = requestVolumeThreshold;
+		}
+
+		public int getErrorThresholdPercentage() {
+			return errorThresholdPercentage;
+		}
+
+		public void setErrorThresholdPercentage(int errorThresholdPercentage) {
+			this.errorThresholdPercentage = errorThresholdPercentage;
+		}
+
+		public int getSleepWindow() {
+			return sleepWindow;
+		}
+
+		public void setSleepWindow(int sleepWindow) {
+			this.sleepWindow = sleepWindow;
+		}
+	}
 }
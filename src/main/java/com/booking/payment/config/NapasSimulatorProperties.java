@@ -0,0 +1,170 @@
+package com.booking.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Properties of the simulator of the NAPAS gateway, used by the "napas-simulator" profile.
+ * <p>
+ * Properties are configured in the application-napas-simulator.yml file.
+ *
+ * @see com.booking.payment.service.napas.NapasGatewaySimulator
+ */
+@ConfigurationProperties(prefix = "napas.simulator", ignoreUnknownFields = false)
+public class NapasSimulatorProperties {
+
+    private String ipnUrl;
+
+    private final Latency latency = new Latency();
+
+    private double declineRate = 0.1;
+
+    private String declineResponseCode = "1";
+
+    private double errorRate = 0.01;
+
+    private double timeoutRate = 0.005;
+
+    private long timeoutMillis = 60000;
+
+    private int ipnCount = 2;
+
+    private final Latency ipnDelay = new Latency(500, 5000);
+
+    private int threads = 8;
+
+    private long retentionMillis = 3600000;
+
+    public String getIpnUrl() {
+        return ipnUrl;
+    }
+
+    public void setIpnUrl(String ipnUrl) {
+        this.ipnUrl = ipnUrl;
+    }
+
+    public Latency getLatency() {
+        return latency;
+    }
+
+    public double getDeclineRate() {
+        return declineRate;
+    }
+
+    public void setDeclineRate(double declineRate) {
+        this.declineRate = declineRate;
+    }
+
+    public String getDeclineResponseCode() {
+        return declineResponseCode;
+    }
+
+    public void setDeclineResponseCode(String declineResponseCode) {
+        this.declineResponseCode = declineResponseCode;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    public void setTimeoutRate(double timeoutRate) {
+        this.timeoutRate = timeoutRate;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getIpnCount() {
+        return ipnCount;
+    }
+
+    public void setIpnCount(int ipnCount) {
+        this.ipnCount = ipnCount;
+    }
+
+    public Latency getIpnDelay() {
+        return ipnDelay;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    public void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * A log-normal distribution of delays, given by its median and its 99th percentile.
+     */
+    public static class Latency {
+
+        /**
+         * The 99th percentile of the standard normal distribution.
+         */
+        private static final double Z_99 = 2.3263;
+
+        private long medianMillis;
+
+        private long p99Millis;
+
+        public Latency() {
+            this(100, 1000);
+        }
+
+        public Latency(long medianMillis, long p99Millis) {
+            this.medianMillis = medianMillis;
+            this.p99Millis = p99Millis;
+        }
+
+        public long getMedianMillis() {
+            return medianMillis;
+        }
+
+        public void setMedianMillis(long medianMillis) {
+            this.medianMillis = medianMillis;
+        }
+
+        public long getP99Millis() {
+            return p99Millis;
+        }
+
+        public void setP99Millis(long p99Millis) {
+            this.p99Millis = p99Millis;
+        }
+
+        /**
+         * Draw a delay, always the median if the 99th percentile is not above it.
+         *
+         * @param standardNormal a value drawn from the standard normal distribution
+         * @return the delay in milliseconds
+         */
+        public long sample(double standardNormal) {
+            if (medianMillis <= 0 || p99Millis <= medianMillis) {
+                return Math.max(medianMillis, 0);
+            }
+            double sigma = Math.log((double) p99Millis / medianMillis) / Z_99;
+            return Math.round(medianMillis * Math.exp(sigma * standardNormal));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.booking.payment.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.hazelcast.core.DistributedObject;
+import com.hazelcast.core.DistributedObjectEvent;
+import com.hazelcast.core.DistributedObjectListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.monitor.NearCacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the statistics of the near caches of the Hazelcast maps to the MetricRegistry, as the
+ * "hazelcast.near-cache.[map].hits", "misses", "entries" and "evictions" metrics.
+ * <p>
+ * The maps are created on demand, as are the regions of the second level cache, so their metrics are registered
+ * when they are created. Hazelcast doesn't count the invalidations of a near cache, and counting them from the
+ * events of the map would take an entry listener on every member, each update sending one more event to every
+ * member on top of the invalidations: an invalidated entry is counted as a miss when it is read again instead.
+ */
+public class NearCacheMetrics implements DistributedObjectListener {
+
+    static final String PREFIX = "hazelcast.near-cache";
+
+    private final Logger log = LoggerFactory.getLogger(NearCacheMetrics.class);
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * The names of the maps whose metrics are registered.
+     */
+    private final Set<String> monitoredMaps = ConcurrentHashMap.newKeySet();
+
+    private String listenerId;
+
+    public NearCacheMetrics(HazelcastInstance hazelcastInstance, MetricRegistry metricRegistry) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerId = hazelcastInstance.addDistributedObjectListener(this);
+        for (DistributedObject distributedObject : hazelcastInstance.getDistributedObjects()) {
+            monitor(distributedObject);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!hazelcastInstance.getLifecycleService().isRunning()) {
+            return;
+        }
+        hazelcastInstance.removeDistributedObjectListener(listenerId);
+    }
+
+    @Override
+    public void distributedObjectCreated(DistributedObjectEvent event) {
+        monitor(event.getDistributedObject());
+    }
+
+    @Override
+    public void distributedObjectDestroyed(DistributedObjectEvent event) {
+        String name = String.valueOf(event.getObjectName());
+        if (monitoredMaps.remove(name)) {
+            String prefix = MetricRegistry.name(PREFIX, name) + ".";
+            metricRegistry.removeMatching((metricName, metric) -> metricName.startsWith(prefix));
+        }
+    }
+
+    private void monitor(DistributedObject distributedObject) {
+        if (!(distributedObject instanceof IMap)) {
+            return;
+        }
+        IMap<?, ?> map = (IMap<?, ?>) distributedObject;
+        String name = map.getName();
+        if (hazelcastInstance.getConfig().findMapConfig(name).getNearCacheConfig() == null || !monitoredMaps.add(name)) {
+            return;
+        }
+        log.debug("Monitoring the near cache of the {} map", name);
+        registerGauge(map, "hits", NearCacheStats::getHits);
+        registerGauge(map, "misses", NearCacheStats::getMisses);
+        registerGauge(map, "entries", NearCacheStats::getOwnedEntryCount);
+        registerGauge(map, "evictions", NearCacheStats::getEvictions);
+    }
+
+    private void registerGauge(IMap<?, ?> map, String metric, ToLongFunction<NearCacheStats> value) {
+        metricRegistry.register(MetricRegistry.name(PREFIX, map.getName(), metric), (Gauge<Long>) () -> {
+            NearCacheStats stats = map.getLocalMapStats().getNearCacheStats();
+            return stats == null ? 0L : value.applyAsLong(stats);
+        });
+    }
+}
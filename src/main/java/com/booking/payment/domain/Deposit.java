@@ -1,11 +1,16 @@
 package com.booking.payment.domain;
 
+import com.booking.payment.domain.enumeration.DepositStatus;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
 import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+import org.springframework.data.elasticsearch.annotations.Setting;
 import java.io.Serializable;
 import java.util.Objects;
 
@@ -16,15 +21,27 @@ import java.util.Objects;
 @Table(name = "deposit")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Document(indexName = "deposit")
+@Setting(settingPath = "config/elasticsearch/deposit-settings.json")
+@Mapping(mappingPath = "config/elasticsearch/deposit-mapping.json")
 public class Deposit implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /*
+     * Ids are allocated by blocks through a sequence (emulated by a table on MySQL), as identity columns
+     * prevent Hibernate from batching inserts.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "depositIdGenerator")
+    @GenericGenerator(name = "depositIdGenerator", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "deposit_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+        })
     private Long id;
 
-    @Column(name = "booking_code")
+    @Column(name = "booking_code", unique = true)
     private String bookingCode;
 
     @Column(name = "user_id")
@@ -33,6 +50,30 @@ public class Deposit implements Serializable {
     @Column(name = "currency_code")
     private String currencyCode;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /*
+     * Only set when the deposit is created; it then changes through the conditional updates of
+     * DepositRepositoryCustom#transition.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private DepositStatus status = DepositStatus.PENDING;
+
+    /*
+     * In minor units of the currency, such as cents, or dong for VND.
+     */
+    @Column(name = "amount")
+    private Long amount;
+
+    /*
+     * The number given to the payment by the gateway, set by DepositRepositoryCustom#transition.
+     */
+    @Column(name = "gateway_transaction_no", length = 64)
+    private String gatewayTransactionNo;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -80,6 +121,53 @@ public class Deposit implements Serializable {
     public void setCurrencyCode(String currencyCode) {
         this.currencyCode = currencyCode;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public DepositStatus getStatus() {
+        return status;
+    }
+
+    public Deposit status(DepositStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public void setStatus(DepositStatus status) {
+        this.status = status;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public Deposit amount(Long amount) {
+        this.amount = amount;
+        return this;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getGatewayTransactionNo() {
+        return gatewayTransactionNo;
+    }
+
+    public Deposit gatewayTransactionNo(String gatewayTransactionNo) {
+        this.gatewayTransactionNo = gatewayTransactionNo;
+        return this;
+    }
+
+    public void setGatewayTransactionNo(String gatewayTransactionNo) {
+        this.gatewayTransactionNo = gatewayTransactionNo;
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
@@ -109,6 +197,10 @@ public class Deposit implements Serializable {
             ", bookingCode='" + getBookingCode() + "'" +
             ", userId=" + getUserId() +
             ", currencyCode='" + getCurrencyCode() + "'" +
+            ", version=" + getVersion() +
+            ", status='" + getStatus() + "'" +
+            ", amount=" + getAmount() +
+            ", gatewayTransactionNo='" + getGatewayTransactionNo() + "'" +
             "}";
     }
 }
@@ -0,0 +1,116 @@
+package com.booking.payment.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A range of Deposit ids scanned by the full reindex, with its checkpoint.
+ * <p>
+ * The last indexed id is saved after each bulk request, so that an interrupted reindex resumes where it stopped.
+ */
+@Entity
+@Table(name = "reindex_range")
+public class ReindexRange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "range_start")
+    private Long rangeStart;
+
+    @NotNull
+    @Column(name = "range_end", nullable = false)
+    private Long rangeEnd;
+
+    @Column(name = "last_id")
+    private Long lastId;
+
+    @Column(name = "indexed_count", nullable = false)
+    private long indexedCount;
+
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+
+    public Long getRangeStart() {
+        return rangeStart;
+    }
+
+    public ReindexRange rangeStart(Long rangeStart) {
+        this.rangeStart = rangeStart;
+        return this;
+    }
+
+    public void setRangeStart(Long rangeStart) {
+        this.rangeStart = rangeStart;
+    }
+
+    public Long getRangeEnd() {
+        return rangeEnd;
+    }
+
+    public ReindexRange rangeEnd(Long rangeEnd) {
+        this.rangeEnd = rangeEnd;
+        return this;
+    }
+
+    public void setRangeEnd(Long rangeEnd) {
+        this.rangeEnd = rangeEnd;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ReindexRange reindexRange = (ReindexRange) o;
+        if (reindexRange.getRangeStart() == null || getRangeStart() == null) {
+            return false;
+        }
+        return Objects.equals(getRangeStart(), reindexRange.getRangeStart());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getRangeStart());
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexRange{" +
+            "rangeStart=" + getRangeStart() +
+            ", rangeEnd=" + getRangeEnd() +
+            ", lastId=" + getLastId() +
+            ", indexedCount=" + getIndexedCount() +
+            ", completed='" + isCompleted() + "'" +
+            "}";
+    }
+}
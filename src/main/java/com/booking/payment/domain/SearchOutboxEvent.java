@@ -0,0 +1,145 @@
+package com.booking.payment.domain;
+
+import com.booking.payment.domain.enumeration.SearchOperation;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A change of a Deposit that still has to be applied to the Elasticsearch index.
+ * <p>
+ * It is written in the same transaction as the change itself (transactional outbox), and deleted by the
+ * search indexer once Elasticsearch has acknowledged it.
+ */
+@Entity
+@Table(name = "search_outbox_event")
+public class SearchOutboxEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "searchOutboxEventIdGenerator")
+    @GenericGenerator(name = "searchOutboxEventIdGenerator", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "search_outbox_event_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+        })
+    private Long id;
+
+    @NotNull
+    @Column(name = "deposit_id", nullable = false)
+    private Long depositId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", length = 10, nullable = false)
+    private SearchOperation operation;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private Instant nextAttemptDate = createdDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDepositId() {
+        return depositId;
+    }
+
+    public SearchOutboxEvent depositId(Long depositId) {
+        this.depositId = depositId;
+        return this;
+    }
+
+    public void setDepositId(Long depositId) {
+        this.depositId = depositId;
+    }
+
+    public SearchOperation getOperation() {
+        return operation;
+    }
+
+    public SearchOutboxEvent operation(SearchOperation operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    public void setOperation(SearchOperation operation) {
+        this.operation = operation;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Instant nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchOutboxEvent searchOutboxEvent = (SearchOutboxEvent) o;
+        if (searchOutboxEvent.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), searchOutboxEvent.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOutboxEvent{" +
+            "id=" + getId() +
+            ", depositId=" + getDepositId() +
+            ", operation='" + getOperation() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", attempts=" + getAttempts() +
+            ", nextAttemptDate='" + getNextAttemptDate() + "'" +
+            "}";
+    }
+}
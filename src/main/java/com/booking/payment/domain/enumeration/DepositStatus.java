@@ -0,0 +1,28 @@
+package com.booking.payment.domain.enumeration;
+
+/**
+ * The DepositStatus enumeration: the lifecycle of the payment of a deposit.
+ * <p>
+ * A deposit is created PENDING. The gateway then authorizes its payment, or captures it at once (SUCCESS), or
+ * declines it (FAILED), and a captured payment can be refunded. FAILED and REFUNDED are final.
+ */
+public enum DepositStatus {
+    PENDING, AUTHORIZED, SUCCESS, FAILED, REFUNDED;
+
+    /**
+     * @param status a status
+     * @return true if a deposit in this status can move to the given status
+     */
+    public boolean canTransitionTo(DepositStatus status) {
+        switch (this) {
+            case PENDING:
+                return status == AUTHORIZED || status == SUCCESS || status == FAILED;
+            case AUTHORIZED:
+                return status == SUCCESS || status == FAILED;
+            case SUCCESS:
+                return status == REFUNDED;
+            default:
+                return false;
+        }
+    }
+}
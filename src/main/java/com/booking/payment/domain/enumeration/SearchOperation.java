@@ -0,0 +1,8 @@
+package com.booking.payment.domain.enumeration;
+
+/**
+ * The SearchOperation enumeration.
+ */
+public enum SearchOperation {
+    INDEX, DELETE
+}
@@ -1,9 +1,21 @@
 package com.booking.payment.repository;
 
 import com.booking.payment.domain.Deposit;
+import com.booking.payment.service.dto.DepositDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
 
 
 /**
@@ -11,6 +23,104 @@ import org.springframework.data.jpa.repository.*;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface DepositRepository extends JpaRepository<Deposit, Long> {
+public interface DepositRepository extends JpaRepository<Deposit, Long>, DepositRepositoryCustom {
+
+    int STREAM_FETCH_SIZE = 1000;
+
+    String DEPOSIT_BY_BOOKING_CODE_QUERY_CACHE = "com.booking.payment.domain.Deposit.byBookingCode";
+
+    String DEPOSITS_BY_USER_ID_QUERY_CACHE = "com.booking.payment.domain.Deposit.byUserId";
+
+    String DEPOSITS_BY_USER_CACHE = "depositsByUser";
+
+    /**
+     * Get a deposit by its booking code, through the unique index on booking_code.
+     * <p>
+     * The result is kept in the query cache, which Hibernate invalidates whenever the deposit table is written.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_CACHE_REGION, value = DEPOSIT_BY_BOOKING_CODE_QUERY_CACHE)
+    })
+    Optional<Deposit> findByBookingCode(String bookingCode);
+
+    /**
+     * Get a page of the deposits of a user, through the index on user_id.
+     * <p>
+     * The page, and its count, are kept in the query cache, which Hibernate invalidates whenever the deposit table
+     * is written.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_CACHE_REGION, value = DEPOSITS_BY_USER_ID_QUERY_CACHE)
+    })
+    Page<Deposit> findAllByUserId(Long userId, Pageable pageable);
+
+    /**
+     * Keyset pagination on the deposits of a user, projected to DTOs without loading the entities.
+     * <p>
+     * The query only reads the idx_deposit_user_id_id index, which covers all the projected columns.
+     */
+    @Query("select new com.booking.payment.service.dto.DepositDTO(" +
+        "deposit.id, deposit.bookingCode, deposit.userId, deposit.currencyCode, deposit.version, deposit.status, " +
+        "deposit.amount, deposit.gatewayTransactionNo) " +
+        "from Deposit deposit where deposit.userId = :userId and deposit.id > :afterId order by deposit.id")
+    Slice<DepositDTO> findAllDtosByUserIdAndIdGreaterThan(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                                          Pageable pageable);
+
+    /**
+     * Keyset pagination: get the deposits with an id strictly greater than the given one.
+     * <p>
+     * A {@link Slice} is returned so that no count query is issued; the pageable is expected
+     * to be sorted by id and to always request the first page.
+     */
+    Slice<Deposit> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    /**
+     * Keyset pagination inside an id range, for the reindex: get the deposits with an id strictly greater
+     * than the first given one, and lower than or equal to the second one.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    Slice<Deposit> findAllByIdGreaterThanAndIdLessThanEqual(Long afterId, Long maxId, Pageable pageable);
+
+    @Query("select min(deposit.id) from Deposit deposit")
+    Long findMinId();
+
+    @Query("select max(deposit.id) from Deposit deposit")
+    Long findMaxId();
+
+    /**
+     * Stream all the deposits in id order, for exports.
+     * <p>
+     * The rows are fetched by chunks of {@value #STREAM_FETCH_SIZE} through a forward-only cursor (this needs
+     * "useCursorFetch" on MySQL), they bypass the second level cache and are loaded read-only. The stream must be
+     * consumed inside a transaction, and callers should detach each entity once processed.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select deposit from Deposit deposit order by deposit.id")
+    Stream<Deposit> streamAllByOrderById();
 
+    /**
+     * Stream the deposits whose last payment was initiated within a time window in id order, for reconciliations,
+     * with the same cursor and hints as {@link #streamAllByOrderById()}.
+     * <p>
+     * The query is native, as the time of the last payment is only written by the custom queries, and reads the
+     * idx_deposit_payment_started_at index.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "select * from deposit where payment_started_at >= :startedSince and payment_started_at < :startedBefore " +
+        "order by id", nativeQuery = true)
+    Stream<Deposit> streamAllByPaymentStartedOrderById(@Param("startedSince") Timestamp startedSince,
+                                                       @Param("startedBefore") Timestamp startedBefore);
 }
@@ -0,0 +1,115 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.PendingPaymentDTO;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Custom queries for the Deposit entity, that can't be expressed as Spring Data derived queries.
+ *
+ * @see DepositRepositoryImpl
+ */
+public interface DepositRepositoryCustom {
+
+    /**
+     * Get a cheap estimate of the number of deposits.
+     * <p>
+     * On MySQL this reads the InnoDB table statistics instead of scanning the table,
+     * on other databases it falls back to an exact count.
+     *
+     * @return the estimated number of deposits
+     */
+    long approximateCount();
+
+    /**
+     * Move a deposit to a new status, if it still has the expected one, in a single conditional update.
+     * <p>
+     * The update is plain SQL: unlike a JPQL bulk update, it doesn't make Hibernate evict the whole Deposit region
+     * of the second level cache, so the caller has to evict the deposit itself.
+     *
+     * @param id the id of the deposit
+     * @param expectedStatus the status the deposit must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the deposit was updated, false if it doesn't exist or if its status was not the expected one
+     */
+    boolean transition(Long id, DepositStatus expectedStatus, DepositStatus status, String gatewayTransactionNo);
+
+    /**
+     * Move a deposit to a new status like {@link #transition(Long, DepositStatus, DepositStatus, String)}, but only
+     * if the given payment is still its last payment, so that the result of a superseded payment is never applied.
+     * <p>
+     * The deposits whose last payment was initiated before its merchant was recorded match any merchant.
+     *
+     * @param id the id of the deposit
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @param expectedStatus the status the deposit must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the deposit was updated, false if it doesn't exist, if its status was not the expected one or
+     * if the payment is not its last one
+     */
+    boolean transitionPayment(Long id, String merchantId, String merchTxnRef, DepositStatus expectedStatus,
+                              DepositStatus status, String gatewayTransactionNo);
+
+    /**
+     * Check that a payment is the last one initiated for a deposit, with the same merchant.
+     *
+     * @param id the id of the deposit
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return true if the payment is the last one of the deposit
+     */
+    boolean isCurrentPayment(Long id, String merchantId, String merchTxnRef);
+
+    /**
+     * Record the last payment initiated for a PENDING deposit, which is polled from the gateway if its callbacks
+     * never come.
+     * <p>
+     * The payment is kept in columns that the entity doesn't map, so neither the update nor the second level cache
+     * are involved.
+     *
+     * @param id the id of the deposit
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @param startedAt when the payment was initiated
+     * @return true if the deposit was updated, false if it doesn't exist or if it is no longer PENDING
+     */
+    boolean startPayment(Long id, String merchantId, String merchTxnRef, Instant startedAt);
+
+    /**
+     * Count the PENDING deposits whose last payment was initiated before a given time.
+     *
+     * @param startedBefore the time the payments must have been initiated before
+     * @return the number of deposits
+     */
+    long countStalePayments(Instant startedBefore);
+
+    /**
+     * Claim a batch of the PENDING deposits whose last payment was initiated before a given time, and that no node
+     * has claimed or whose lease is over, oldest payments first.
+     * <p>
+     * The batch is claimed by one conditional update, which sets a lease owned by the caller: concurrent callers,
+     * on the same or on other nodes, never claim the same deposits, and no row lock outlives the update.
+     *
+     * @param startedBefore the time the payments must have been initiated before
+     * @param owner the unique id of the claim
+     * @param leaseUntil when the claim expires, and the deposits can be claimed again
+     * @param limit the maximum number of deposits to claim
+     * @return the payments of the claimed deposits
+     */
+    List<PendingPaymentDTO> claimStalePayments(Instant startedBefore, String owner, Instant leaseUntil, int limit);
+
+    /**
+     * Get the ids of the deposits whose last payment was initiated since a given time, whatever their status,
+     * latest payments first.
+     *
+     * @param startedSince the time the payments must have been initiated since
+     * @param limit the maximum number of ids
+     * @return the ids of the deposits
+     */
+    List<Long> findRecentlyPaidIds(Instant startedSince, int limit);
+}
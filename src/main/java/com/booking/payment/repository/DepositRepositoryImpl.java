@@ -0,0 +1,140 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.PendingPaymentDTO;
+
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.vendor.Database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Implementation of the custom queries of {@link DepositRepository}.
+ */
+public class DepositRepositoryImpl implements DepositRepositoryCustom {
+
+    private static final String MYSQL_APPROXIMATE_COUNT =
+        "select table_rows from information_schema.tables where table_schema = database() and table_name = 'deposit'";
+
+    private static final String EXACT_COUNT = "select count(*) from deposit";
+
+    private static final String TRANSITION =
+        "update deposit set status = ?, gateway_transaction_no = coalesce(?, gateway_transaction_no), version = version + 1 " +
+        "where id = ? and status = ?";
+
+    private static final String TRANSITION_PAYMENT = TRANSITION +
+        " and merch_txn_ref = ? and (merchant_id = ? or merchant_id is null)";
+
+    private static final String COUNT_CURRENT_PAYMENT =
+        "select count(*) from deposit where id = ? and merch_txn_ref = ? and (merchant_id = ? or merchant_id is null)";
+
+    private static final String START_PAYMENT =
+        "update deposit set merchant_id = ?, merch_txn_ref = ?, payment_started_at = ?, poll_lease_owner = null, " +
+        "poll_lease_until = null " +
+        "where id = ? and status = 'PENDING'";
+
+    private static final String COUNT_STALE_PAYMENTS =
+        "select count(*) from deposit where status = 'PENDING' and payment_started_at < ?";
+
+    private static final String FIND_STALE_PAYMENTS =
+        "select id from deposit where status = 'PENDING' and payment_started_at < ? " +
+        "and (poll_lease_until is null or poll_lease_until < ?) order by payment_started_at limit ?";
+
+    private static final String FIND_RECENTLY_PAID =
+        "select id from deposit where payment_started_at >= ? order by payment_started_at desc limit ?";
+
+    private static final String CLAIM_STALE_PAYMENTS =
+        "update deposit set poll_lease_owner = ?, poll_lease_until = ? " +
+        "where id in (%s) and status = 'PENDING' and (poll_lease_until is null or poll_lease_until < ?)";
+
+    private static final String FIND_CLAIMED_PAYMENTS =
+        "select id, merchant_id, merch_txn_ref, payment_started_at, amount, currency_code from deposit " +
+        "where poll_lease_owner = ? and status = 'PENDING' order by payment_started_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean mysql;
+
+    public DepositRepositoryImpl(JdbcTemplate jdbcTemplate, JpaProperties jpaProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mysql = jpaProperties.getDatabase() == Database.MYSQL;
+    }
+
+    @Override
+    public long approximateCount() {
+        Long count = jdbcTemplate.queryForObject(mysql ? MYSQL_APPROXIMATE_COUNT : EXACT_COUNT, Long.class);
+        return count == null ? 0L : count;
+    }
+
+    @Override
+    public boolean transition(Long id, DepositStatus expectedStatus, DepositStatus status, String gatewayTransactionNo) {
+        return jdbcTemplate.update(TRANSITION, status.name(), gatewayTransactionNo, id, expectedStatus.name()) == 1;
+    }
+
+    @Override
+    public boolean transitionPayment(Long id, String merchantId, String merchTxnRef, DepositStatus expectedStatus,
+                                     DepositStatus status, String gatewayTransactionNo) {
+        return jdbcTemplate.update(TRANSITION_PAYMENT, status.name(), gatewayTransactionNo, id, expectedStatus.name(),
+            merchTxnRef, merchantId) == 1;
+    }
+
+    @Override
+    public boolean isCurrentPayment(Long id, String merchantId, String merchTxnRef) {
+        Long count = jdbcTemplate.queryForObject(COUNT_CURRENT_PAYMENT, Long.class, id, merchTxnRef, merchantId);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public boolean startPayment(Long id, String merchantId, String merchTxnRef, Instant startedAt) {
+        return jdbcTemplate.update(START_PAYMENT, merchantId, merchTxnRef, Timestamp.from(startedAt), id) == 1;
+    }
+
+    @Override
+    public long countStalePayments(Instant startedBefore) {
+        Long count = jdbcTemplate.queryForObject(COUNT_STALE_PAYMENTS, Long.class, Timestamp.from(startedBefore));
+        return count == null ? 0L : count;
+    }
+
+    @Override
+    public List<Long> findRecentlyPaidIds(Instant startedSince, int limit) {
+        return jdbcTemplate.queryForList(FIND_RECENTLY_PAID, Long.class, Timestamp.from(startedSince), limit);
+    }
+
+    @Override
+    public List<PendingPaymentDTO> claimStalePayments(Instant startedBefore, String owner, Instant leaseUntil, int limit) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Long> ids = jdbcTemplate.queryForList(FIND_STALE_PAYMENTS, Long.class, Timestamp.from(startedBefore), now, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // The candidates are read without locks: the lease conditions are checked again by the update, so the
+        // deposits claimed by another node in the meantime are left out, and only ours are read back
+        List<Object> arguments = new ArrayList<>(ids.size() + 3);
+        arguments.add(owner);
+        arguments.add(Timestamp.from(leaseUntil));
+        arguments.addAll(ids);
+        arguments.add(now);
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        if (jdbcTemplate.update(String.format(CLAIM_STALE_PAYMENTS, placeholders), arguments.toArray()) == 0) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query(FIND_CLAIMED_PAYMENTS, DepositRepositoryImpl::pendingPayment, owner);
+    }
+
+    private static PendingPaymentDTO pendingPayment(ResultSet resultSet, int rowNum) throws SQLException {
+        Long amount = resultSet.getLong("amount");
+        if (resultSet.wasNull()) {
+            amount = null;
+        }
+        return new PendingPaymentDTO(resultSet.getLong("id"), resultSet.getString("merchant_id"),
+            resultSet.getString("merch_txn_ref"), resultSet.getTimestamp("payment_started_at").toInstant(),
+            amount, resultSet.getString("currency_code"));
+    }
+}
@@ -0,0 +1,19 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.ReindexRange;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the ReindexRange entity.
+ */
+@Repository
+public interface ReindexRangeRepository extends JpaRepository<ReindexRange, Long> {
+
+    List<ReindexRange> findAllByCompletedFalseOrderByRangeStart();
+
+    @Query("select coalesce(sum(reindexRange.indexedCount), 0) from ReindexRange reindexRange")
+    long sumIndexedCount();
+}
@@ -0,0 +1,29 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.SearchOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the SearchOutboxEvent entity.
+ */
+@Repository
+public interface SearchOutboxEventRepository extends JpaRepository<SearchOutboxEvent, Long>, SearchOutboxEventRepositoryCustom {
+
+    /**
+     * Get the ids of the events due at a given date: never attempted, failed and waiting for their backoff, or
+     * claimed by a node whose lease is over.
+     * <p>
+     * A JPQL query, so that the events written earlier in the transaction are flushed before being claimed.
+     */
+    @Query("select event.id from SearchOutboxEvent event where event.nextAttemptDate <= :date order by event.id")
+    List<Long> findDueIds(@Param("date") Instant date, Pageable pageable);
+
+    @Query("select min(event.createdDate) from SearchOutboxEvent event")
+    Instant findOldestCreatedDate();
+}
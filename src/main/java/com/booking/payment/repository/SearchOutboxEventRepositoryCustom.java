@@ -0,0 +1,49 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.SearchOutboxEvent;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom queries for the SearchOutboxEvent entity, claiming the events so that each is applied by a single node.
+ * <p>
+ * A claimed event has an owner, and its next attempt date is the end of the lease of the owner: the event is due
+ * again, to any node, once the lease is over.
+ *
+ * @see SearchOutboxEventRepositoryImpl
+ */
+public interface SearchOutboxEventRepositoryCustom {
+
+    /**
+     * Claim the events among the given ones that are still due, in a single conditional update.
+     * <p>
+     * Concurrent callers, on the same or on other nodes, never claim the same events.
+     *
+     * @param ids the ids of the candidate events
+     * @param owner the unique id of the claim
+     * @param leaseUntil when the claim expires, and the events are due again
+     * @return the claimed events, ordered by id
+     */
+    List<SearchOutboxEvent> claim(Collection<Long> ids, String owner, Instant leaseUntil);
+
+    /**
+     * Delete the applied events, unless their lease is over and another node claimed them.
+     *
+     * @param ids the ids of the events
+     * @param owner the unique id of the claim
+     * @return the number of events deleted
+     */
+    int deleteClaimed(Collection<Long> ids, String owner);
+
+    /**
+     * Release a failed event for a later attempt, unless its lease is over and another node claimed it.
+     *
+     * @param id the id of the event
+     * @param owner the unique id of the claim
+     * @param nextAttemptDate when the event is due again
+     * @return true if the event was rescheduled
+     */
+    boolean reschedule(Long id, String owner, Instant nextAttemptDate);
+}
@@ -0,0 +1,89 @@
+package com.booking.payment.repository;
+
+import com.booking.payment.domain.SearchOutboxEvent;
+import com.booking.payment.domain.enumeration.SearchOperation;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Implementation of the custom queries of {@link SearchOutboxEventRepository}.
+ */
+public class SearchOutboxEventRepositoryImpl implements SearchOutboxEventRepositoryCustom {
+
+    private static final String CLAIM =
+        "update search_outbox_event set claim_owner = ?, next_attempt_date = ? where id in (%s) and next_attempt_date <= ?";
+
+    private static final String FIND_CLAIMED =
+        "select id, deposit_id, operation, created_date, attempts, next_attempt_date from search_outbox_event " +
+        "where claim_owner = ? order by id";
+
+    private static final String DELETE_CLAIMED =
+        "delete from search_outbox_event where id in (%s) and claim_owner = ?";
+
+    private static final String RESCHEDULE =
+        "update search_outbox_event set claim_owner = null, attempts = attempts + 1, next_attempt_date = ? " +
+        "where id = ? and claim_owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SearchOutboxEventRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<SearchOutboxEvent> claim(Collection<Long> ids, String owner, Instant leaseUntil) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // The due condition is checked again by the update, so the events claimed by another node since they were
+        // read are left out, and only ours are read back
+        List<Object> arguments = new ArrayList<>(ids.size() + 3);
+        arguments.add(owner);
+        arguments.add(Timestamp.from(leaseUntil));
+        arguments.addAll(ids);
+        arguments.add(Timestamp.from(Instant.now()));
+        if (jdbcTemplate.update(String.format(CLAIM, placeholders(ids)), arguments.toArray()) == 0) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query(FIND_CLAIMED, SearchOutboxEventRepositoryImpl::searchOutboxEvent, owner);
+    }
+
+    @Override
+    public int deleteClaimed(Collection<Long> ids, String owner) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object> arguments = new ArrayList<>(ids);
+        arguments.add(owner);
+        return jdbcTemplate.update(String.format(DELETE_CLAIMED, placeholders(ids)), arguments.toArray());
+    }
+
+    @Override
+    public boolean reschedule(Long id, String owner, Instant nextAttemptDate) {
+        return jdbcTemplate.update(RESCHEDULE, Timestamp.from(nextAttemptDate), id, owner) == 1;
+    }
+
+    private static String placeholders(Collection<Long> ids) {
+        return String.join(",", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private static SearchOutboxEvent searchOutboxEvent(ResultSet resultSet, int rowNum) throws SQLException {
+        SearchOutboxEvent event = new SearchOutboxEvent()
+            .depositId(resultSet.getLong("deposit_id"))
+            .operation(SearchOperation.valueOf(resultSet.getString("operation")));
+        event.setId(resultSet.getLong("id"));
+        event.setCreatedDate(resultSet.getTimestamp("created_date").toInstant());
+        event.setAttempts(resultSet.getInt("attempts"));
+        event.setNextAttemptDate(resultSet.getTimestamp("next_attempt_date").toInstant());
+        return event;
+    }
+}
@@ -6,5 +6,5 @@ import org.springframework.data.elasticsearch.repository.ElasticsearchRepository
 /**
  * Spring Data Elasticsearch repository for the Deposit entity.
  */
-public interface DepositSearchRepository extends ElasticsearchRepository<Deposit, Long> {
+public interface DepositSearchRepository extends ElasticsearchRepository<Deposit, Long>, DepositSearchRepositoryCustom {
 }
@@ -0,0 +1,35 @@
+package com.booking.payment.repository.search;
+
+import com.booking.payment.domain.Deposit;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Custom operations on the Deposit index, that are not provided by Spring Data Elasticsearch.
+ *
+ * @see DepositSearchRepositoryImpl
+ */
+public interface DepositSearchRepositoryCustom {
+
+    /**
+     * Index and delete deposits with a single bulk request.
+     * <p>
+     * The deposits are indexed with their version as the external version of their document, so that a deposit
+     * read before a change never overwrites the document of the change, whatever the order of the requests: such
+     * a stale deposit is skipped, and is not reported as failed. The deletions are given a version above any
+     * version of a deposit, so that a stale deposit doesn't recreate a deleted document either.
+     *
+     * @param toIndex the deposits to index
+     * @param toDelete the ids of the deposits to delete
+     * @return the ids of the deposits for which the operation failed
+     */
+    Set<Long> bulk(Collection<Deposit> toIndex, Collection<Long> toDelete);
+
+    /**
+     * Change the refresh interval of the index, "-1" disabling the periodic refresh.
+     *
+     * @param refreshInterval the new refresh interval, as an Elasticsearch time value
+     */
+    void updateRefreshInterval(String refreshInterval);
+}
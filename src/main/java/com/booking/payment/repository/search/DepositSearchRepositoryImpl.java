@@ -0,0 +1,94 @@
+package com.booking.payment.repository.search;
+
+import com.booking.payment.domain.Deposit;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Implementation of the custom operations of {@link DepositSearchRepository}, using the Elasticsearch client directly.
+ */
+public class DepositSearchRepositoryImpl implements DepositSearchRepositoryCustom {
+
+    /**
+     * The version of the deletions, above any version of a deposit, as the ids of the deposits are never reused.
+     * It leaves room for the versions incremented by the operations made without an external version.
+     */
+    private static final long DELETED_VERSION = Long.MAX_VALUE / 2;
+
+    private final Logger log = LoggerFactory.getLogger(DepositSearchRepositoryImpl.class);
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+
+    private final EntityMapper entityMapper;
+
+    public DepositSearchRepositoryImpl(ElasticsearchTemplate elasticsearchTemplate, EntityMapper elasticsearchEntityMapper) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.entityMapper = elasticsearchEntityMapper;
+    }
+
+    @Override
+    public Set<Long> bulk(Collection<Deposit> toIndex, Collection<Long> toDelete) {
+        if (toIndex.isEmpty() && toDelete.isEmpty()) {
+            return Collections.emptySet();
+        }
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(Deposit.class);
+        String indexName = persistentEntity.getIndexName();
+        String type = persistentEntity.getIndexType();
+        Client client = elasticsearchTemplate.getClient();
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (Deposit deposit : toIndex) {
+            try {
+                bulkRequest.add(client.prepareIndex(indexName, type, deposit.getId().toString())
+                    .setSource(entityMapper.mapToString(deposit))
+                    .setVersion(deposit.getVersion()).setVersionType(VersionType.EXTERNAL_GTE));
+            } catch (IOException e) {
+                throw new ElasticsearchException("Failed to map Deposit " + deposit.getId() + " to JSON", e);
+            }
+        }
+        for (Long id : toDelete) {
+            bulkRequest.add(client.prepareDelete(indexName, type, id.toString())
+                .setVersion(DELETED_VERSION).setVersionType(VersionType.EXTERNAL_GTE));
+        }
+        BulkResponse response = bulkRequest.get();
+        if (!response.hasFailures()) {
+            return Collections.emptySet();
+        }
+        Set<Long> failed = new HashSet<>();
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() == RestStatus.CONFLICT) {
+                log.debug("Elasticsearch already has a newer version of Deposit {}", item.getId());
+            } else if (item.isFailed()) {
+                log.warn("Elasticsearch {} of Deposit {} failed: {}", item.getOpType(), item.getId(), item.getFailureMessage());
+                failed.add(Long.valueOf(item.getId()));
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public void updateRefreshInterval(String refreshInterval) {
+        String indexName = elasticsearchTemplate.getPersistentEntityFor(Deposit.class).getIndexName();
+        log.debug("Setting the refresh interval of index {} to {}", indexName, refreshInterval);
+        elasticsearchTemplate.getClient().admin().indices().prepareUpdateSettings(indexName)
+            .setSettings(Settings.settingsBuilder().put("index.refresh_interval", refreshInterval))
+            .get();
+    }
+}
@@ -0,0 +1,174 @@
+package com.booking.payment.service;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.repository.DepositRepository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service preloading the deposits most likely to be read into the caches, when the application starts.
+ * <p>
+ * The deposits whose last payment was initiated within "application.cache-warm-up.window", latest first, are
+ * loaded by batches through {@link DepositService#preload(List)}, by "application.cache-warm-up.parallelism"
+ * workers on the "taskExecutor". Until the warm-up is done, or "application.cache-warm-up.timeout" is over, the
+ * service is reported OUT_OF_SERVICE by the health endpoint and so to Eureka, which keeps the requests away from
+ * a node whose caches are still cold.
+ */
+@Service
+public class DepositCacheWarmer implements HealthIndicator {
+
+    private final Logger log = LoggerFactory.getLogger(DepositCacheWarmer.class);
+
+    private final DepositRepository depositRepository;
+
+    private final DepositService depositService;
+
+    private final TaskExecutor taskExecutor;
+
+    private final ApplicationProperties.CacheWarmUp properties;
+
+    private final LongAdder loadedCount = new LongAdder();
+
+    private final LongAdder failedBatchCount = new LongAdder();
+
+    private CompletableFuture<Void> warmUp;
+
+    private volatile boolean started;
+
+    private volatile long startedNanos;
+
+    private volatile long finishedNanos;
+
+    private volatile boolean finished;
+
+    private volatile int selectedCount;
+
+    public DepositCacheWarmer(DepositRepository depositRepository, DepositService depositService,
+                              @Qualifier("taskExecutor") TaskExecutor taskExecutor, ApplicationProperties applicationProperties,
+                              MetricRegistry metricRegistry) {
+        this.depositRepository = depositRepository;
+        this.depositService = depositService;
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getCacheWarmUp();
+        metricRegistry.register(MetricRegistry.name(DepositCacheWarmer.class, "duration"), (Gauge<Long>) this::getDurationMillis);
+        metricRegistry.register(MetricRegistry.name(DepositCacheWarmer.class, "selected"), (Gauge<Integer>) () -> selectedCount);
+        metricRegistry.register(MetricRegistry.name(DepositCacheWarmer.class, "loaded"), (Gauge<Long>) loadedCount::sum);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.isEnabled()) {
+            start();
+        }
+    }
+
+    /**
+     * Start the warm-up in the background, unless it was already started.
+     *
+     * @return the warm-up, completed once all the batches are loaded or given up
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (warmUp != null) {
+            return warmUp;
+        }
+        startedNanos = System.nanoTime();
+        started = true;
+        Instant since = Instant.now().minusMillis(properties.getWindow());
+        warmUp = CompletableFuture
+            .supplyAsync(() -> depositRepository.findRecentlyPaidIds(since, properties.getMaxDeposits()), taskExecutor)
+            .thenCompose(this::preload)
+            .whenComplete((result, throwable) -> finish(throwable));
+        return warmUp;
+    }
+
+    private CompletableFuture<Void> preload(List<Long> ids) {
+        selectedCount = ids.size();
+        log.info("Warming up the caches with {} Deposits", ids.size());
+        Queue<List<Long>> batches = new ConcurrentLinkedQueue<>();
+        for (int start = 0; start < ids.size(); start += properties.getBatchSize()) {
+            batches.add(ids.subList(start, Math.min(ids.size(), start + properties.getBatchSize())));
+        }
+        int workerCount = Math.min(properties.getParallelism(), batches.size());
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> work(batches), taskExecutor);
+        }
+        return CompletableFuture.allOf(workers);
+    }
+
+    private void work(Queue<List<Long>> batches) {
+        List<Long> batch;
+        while (!isTimedOut() && (batch = batches.poll()) != null) {
+            try {
+                loadedCount.add(depositService.preload(batch));
+            } catch (RuntimeException e) {
+                failedBatchCount.increment();
+                log.warn("Could not preload {} Deposits from {}: {}", batch.size(), batch.get(0), e.toString());
+            }
+        }
+    }
+
+    private void finish(Throwable throwable) {
+        finishedNanos = System.nanoTime();
+        finished = true;
+        if (throwable != null) {
+            log.error("Cache warm-up failed after {} ms", getDurationMillis(), throwable);
+        } else if (isTimedOut()) {
+            log.warn("Cache warm-up timed out after {} ms, {} of {} Deposits loaded", getDurationMillis(),
+                loadedCount.sum(), selectedCount);
+        } else {
+            log.info("Cache warm-up done in {} ms, {} of {} Deposits loaded", getDurationMillis(), loadedCount.sum(),
+                selectedCount);
+        }
+    }
+
+    private boolean isTimedOut() {
+        long end = finished ? finishedNanos : System.nanoTime();
+        return end - startedNanos > TimeUnit.MILLISECONDS.toNanos(properties.getTimeout());
+    }
+
+    private long getDurationMillis() {
+        if (!started) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((finished ? finishedNanos : System.nanoTime()) - startedNanos);
+    }
+
+    /**
+     * Report the service OUT_OF_SERVICE while the caches are warming up, within the timeout.
+     */
+    @Override
+    public Health health() {
+        if (!properties.isEnabled()) {
+            return Health.up().withDetail("warmUp", "disabled").build();
+        }
+        boolean warming = !finished && !(started && isTimedOut());
+        Health.Builder builder = warming ? Health.status(Status.OUT_OF_SERVICE) : Health.up();
+        return builder
+            .withDetail("warmUp", warming ? "running" : isTimedOut() ? "timed out" : "done")
+            .withDetail("selected", selectedCount)
+            .withDetail("loaded", loadedCount.sum())
+            .withDetail("failedBatches", failedBatchCount.sum())
+            .withDetail("durationMillis", getDurationMillis())
+            .build();
+    }
+}
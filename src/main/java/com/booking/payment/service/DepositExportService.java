@@ -0,0 +1,222 @@
+package com.booking.payment.service;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.dto.DepositDTO;
+import com.booking.payment.service.mapper.DepositMapper;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting all the deposits, with a memory footprint that doesn't depend on the size of the table.
+ * <p>
+ * Deposits are read through a database cursor, mapped and written one at a time, and detached from the
+ * persistence context as soon as they are written. The CSV columns are the properties of the JSON documents, in the
+ * same order, so both formats export the same fields.
+ */
+@Service
+public class DepositExportService {
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(DepositExportService.class);
+
+    private final DepositRepository depositRepository;
+
+    private final DepositMapper depositMapper;
+
+    private final EntityManager entityManager;
+
+    private final ObjectWriter jsonWriter;
+
+    private final List<BeanPropertyDefinition> csvColumns;
+
+    private final Meter exportedRows;
+
+    private final Meter exportedBytes;
+
+    private final Timer exportDuration;
+
+    public DepositExportService(DepositRepository depositRepository, DepositMapper depositMapper,
+                                EntityManager entityManager, ObjectMapper objectMapper, MetricRegistry metricRegistry) {
+        this.depositRepository = depositRepository;
+        this.depositMapper = depositMapper;
+        this.entityManager = entityManager;
+        this.jsonWriter = objectMapper.writerFor(DepositDTO.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.csvColumns = objectMapper.getSerializationConfig()
+            .introspect(objectMapper.constructType(DepositDTO.class))
+            .findProperties().stream()
+            .filter(BeanPropertyDefinition::couldSerialize)
+            .collect(Collectors.toList());
+        this.exportedRows = metricRegistry.meter(MetricRegistry.name(DepositExportService.class, "rows"));
+        this.exportedBytes = metricRegistry.meter(MetricRegistry.name(DepositExportService.class, "bytes"));
+        this.exportDuration = metricRegistry.timer(MetricRegistry.name(DepositExportService.class, "duration"));
+    }
+
+    /**
+     * Write all the deposits, in id order, to the given output stream.
+     * <p>
+     * The output stream is flushed but not closed.
+     *
+     * @param format the export format
+     * @param outputStream the stream to write to
+     * @return the number of exported deposits
+     * @throws IOException if writing to the output stream fails
+     */
+    @Transactional(readOnly = true)
+    public long export(Format format, OutputStream outputStream) throws IOException {
+        log.debug("Request to export all Deposits as {}", format);
+        long rows = 0;
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        try (Timer.Context ignored = exportDuration.time();
+             Stream<Deposit> deposits = depositRepository.streamAllByOrderById()) {
+            RowWriter writer = format == Format.CSV
+                ? new CsvRowWriter(csvColumns, countingOutputStream)
+                : new NdjsonRowWriter(jsonWriter, countingOutputStream);
+            Iterator<Deposit> iterator = deposits.iterator();
+            while (iterator.hasNext()) {
+                Deposit deposit = iterator.next();
+                writer.write(depositMapper.toDto(deposit));
+                entityManager.detach(deposit);
+                exportedRows.mark();
+                rows++;
+            }
+            writer.flush();
+        } finally {
+            exportedBytes.mark(countingOutputStream.getByteCount());
+        }
+        log.debug("Exported {} Deposits ({} bytes)", rows, countingOutputStream.getByteCount());
+        return rows;
+    }
+
+    private interface RowWriter {
+
+        void write(DepositDTO depositDTO) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes one JSON document per line, through a single generator.
+     */
+    private static class NdjsonRowWriter implements RowWriter {
+
+        private final ObjectWriter objectWriter;
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(ObjectWriter objectWriter, OutputStream outputStream) throws IOException {
+            this.objectWriter = objectWriter;
+            this.generator = objectWriter.getFactory().createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(DepositDTO depositDTO) throws IOException {
+            objectWriter.writeValue(generator, depositDTO);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * Writes RFC 4180 CSV, with a header line naming the columns.
+     */
+    private static class CsvRowWriter implements RowWriter {
+
+        private final List<BeanPropertyDefinition> columns;
+
+        private final Writer writer;
+
+        CsvRowWriter(List<BeanPropertyDefinition> columns, OutputStream outputStream) throws IOException {
+            this.columns = columns;
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write(columns.stream().map(BeanPropertyDefinition::getName).collect(Collectors.joining(",")));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(DepositDTO depositDTO) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(columns.get(i).getAccessor().getValue(depositDTO));
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.booking.payment.service;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.dto.ReconciliationResultDTO;
+import com.booking.payment.service.napas.NapasAmounts;
+import com.booking.payment.service.napas.NapasCallbackService;
+import com.booking.payment.service.napas.SettlementFileReader;
+import com.booking.payment.service.napas.SettlementRecord;
+import com.booking.payment.service.napas.SettlementSorter;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Service reconciling the daily settlement files of the NAPAS gateway with the deposits.
+ * <p>
+ * The settlement file is streamed once, its records sorted by deposit id with a bounded external sort, and then
+ * merge joined with the deposits whose last payment was initiated during the day of the file, in
+ * "application.reconciliation.time-zone", streamed in id order through a database cursor. Neither side is ever
+ * held in memory, so files of millions of lines are reconciled with the memory of one sort run. The settlements
+ * of the deposits paid on another day, across midnight or retried, are looked up by id. The mismatches are
+ * written to a CSV report, next to the counts returned to the caller.
+ */
+@Service
+public class DepositReconciliationService {
+
+    public enum MismatchType {
+        /** The reference of the payment is not one of ours */
+        UNKNOWN_REFERENCE,
+        /** The payment is for a deposit which does not exist */
+        UNKNOWN_DEPOSIT,
+        /** The payment was approved but the deposit is not paid, or the other way around */
+        STATUS_MISMATCH,
+        /** The deposit was paid more than once */
+        DUPLICATE_SETTLEMENT,
+        /** The deposit is paid but the payment was not settled */
+        MISSING_SETTLEMENT,
+        /** The payment was settled for another amount than the amount of the deposit */
+        AMOUNT_MISMATCH
+    }
+
+    private static final String REPORT_HEADER =
+        "type,merchTxnRef,transactionNo,responseCode,amount,line,depositId,depositStatus,depositAmount,depositCurrencyCode";
+
+    private static final Pattern FILE_NAME_DATE = Pattern.compile("(?<![0-9])([0-9]{8})(?![0-9])");
+
+    private final Logger log = LoggerFactory.getLogger(DepositReconciliationService.class);
+
+    private final DepositRepository depositRepository;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationProperties.Reconciliation properties;
+
+    private final Meter reconciledLines;
+
+    private final Meter reconciledBytes;
+
+    private final Meter reconciledDeposits;
+
+    private final Meter mismatches;
+
+    private final Timer reconciliationDuration;
+
+    public DepositReconciliationService(DepositRepository depositRepository, EntityManager entityManager,
+                                        ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        this.depositRepository = depositRepository;
+        this.entityManager = entityManager;
+        this.properties = applicationProperties.getReconciliation();
+        this.reconciledLines = metricRegistry.meter(MetricRegistry.name(DepositReconciliationService.class, "lines"));
+        this.reconciledBytes = metricRegistry.meter(MetricRegistry.name(DepositReconciliationService.class, "bytes"));
+        this.reconciledDeposits = metricRegistry.meter(MetricRegistry.name(DepositReconciliationService.class, "deposits"));
+        this.mismatches = metricRegistry.meter(MetricRegistry.name(DepositReconciliationService.class, "mismatches"));
+        this.reconciliationDuration = metricRegistry.timer(MetricRegistry.name(DepositReconciliationService.class, "duration"));
+    }
+
+    /**
+     * Find a settlement file in the settlement directory.
+     *
+     * @param name the name of the file
+     * @return the settlement file, or empty if there is no such file in the settlement directory
+     */
+    public Optional<Path> findSettlementFile(String name) {
+        Path directory = Paths.get(properties.getSettlementDirectory()).toAbsolutePath().normalize();
+        Path file = directory.resolve(name).normalize();
+        if (!file.getParent().equals(directory) || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(file);
+    }
+
+    /**
+     * Get the day of a settlement file from its name, the first 8 digits in the yyyyMMdd format.
+     *
+     * @param name the name of the file
+     * @return the day of the settlement file, or empty if its name has no date
+     */
+    public Optional<LocalDate> findSettlementDate(String name) {
+        Matcher matcher = FILE_NAME_DATE.matcher(name);
+        while (matcher.find()) {
+            try {
+                return Optional.of(LocalDate.parse(matcher.group(1), DateTimeFormatter.BASIC_ISO_DATE));
+            } catch (DateTimeParseException e) {
+                log.debug("Ignoring {} in the name of the settlement file {}", matcher.group(1), name);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reconcile a settlement file with the deposits, on the task executor.
+     *
+     * @param settlementFile the settlement file
+     * @param settlementDate the day of the settlement file, during which its payments were initiated
+     * @return the future result of the reconciliation
+     */
+    @Async
+    @Transactional(readOnly = true)
+    public CompletableFuture<ReconciliationResultDTO> reconcile(Path settlementFile, LocalDate settlementDate) {
+        log.debug("Request to reconcile the settlement file {} of {}", settlementFile, settlementDate);
+        CompletableFuture<ReconciliationResultDTO> result = new CompletableFuture<>();
+        try {
+            result.complete(reconcileNow(settlementFile, settlementDate));
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not reconcile the settlement file {}", settlementFile, e);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private ReconciliationResultDTO reconcileNow(Path settlementFile, LocalDate settlementDate) throws IOException {
+        long start = System.nanoTime();
+        Path reportDirectory = Files.createDirectories(Paths.get(properties.getReportDirectory()));
+        String fileName = settlementFile.getFileName().toString();
+        Path reportFile = reportDirectory.resolve(fileName.replaceFirst("\\.[^.]*$", "") + ".mismatches.csv");
+        ReconciliationResultDTO result = new ReconciliationResultDTO();
+        result.setSettlementFile(fileName);
+        result.setReportFile(reportFile.getFileName().toString());
+
+        try (Timer.Context ignored = reconciliationDuration.time();
+             SettlementFileReader reader = new SettlementFileReader(settlementFile, properties.getBufferSize(), properties.getDelimiter());
+             SettlementSorter sorter = new SettlementSorter(properties.getRunSize());
+             MismatchReport report = new MismatchReport(reportFile, result)) {
+            sortSettlements(reader, sorter, report, result);
+            Iterator<SettlementRecord> settlements = sorter.sorted();
+            log.debug("Sorted the settlement file {} in {} spilled runs", fileName, sorter.getSpilledRunCount());
+            ZoneId timeZone = ZoneId.of(properties.getTimeZone());
+            Timestamp startedSince = Timestamp.from(settlementDate.atStartOfDay(timeZone).toInstant());
+            Timestamp startedBefore = Timestamp.from(settlementDate.plusDays(1).atStartOfDay(timeZone).toInstant());
+            try (Stream<Deposit> deposits = depositRepository.streamAllByPaymentStartedOrderById(startedSince, startedBefore)) {
+                mergeJoin(settlements, deposits.iterator(), report, result);
+            }
+        }
+
+        result.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        result.setLinesPerSecond(result.getLineCount() * 1000.0 / Math.max(1, result.getDurationMillis()));
+        log.info("Reconciled the settlement file {}: {}", fileName, result);
+        return result;
+    }
+
+    /**
+     * Read the settlement file and feed its records to the sorter.
+     */
+    private void sortSettlements(SettlementFileReader reader, SettlementSorter sorter, MismatchReport report,
+                                 ReconciliationResultDTO result) throws IOException {
+        List<String> header = reader.next();
+        if (header == null) {
+            return;
+        }
+        int referenceColumn = column(header, properties.getReferenceColumn(), true);
+        int responseCodeColumn = column(header, properties.getResponseCodeColumn(), true);
+        int transactionNoColumn = column(header, properties.getTransactionNoColumn(), false);
+        int amountColumn = column(header, properties.getAmountColumn(), false);
+        long bytesRead = reader.getBytesRead();
+        for (List<String> fields = reader.next(); fields != null; fields = reader.next()) {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            reconciledLines.mark();
+            reconciledBytes.mark(reader.getBytesRead() - bytesRead);
+            bytesRead = reader.getBytesRead();
+            result.setLineCount(result.getLineCount() + 1);
+            String merchTxnRef = field(fields, referenceColumn);
+            Long depositId = NapasCallbackService.depositId(merchTxnRef);
+            SettlementRecord record = new SettlementRecord(depositId == null ? -1 : depositId, reader.getRecordNumber(),
+                merchTxnRef == null ? "" : merchTxnRef, field(fields, transactionNoColumn), field(fields, responseCodeColumn),
+                amount(field(fields, amountColumn)));
+            if (depositId == null) {
+                report.write(MismatchType.UNKNOWN_REFERENCE, record, null);
+                continue;
+            }
+            sorter.add(record);
+        }
+    }
+
+    /**
+     * Join the settlements and the deposits, both in deposit id order. The settlements without a deposit of the
+     * day are joined with their deposit read by id, if it exists.
+     */
+    private void mergeJoin(Iterator<SettlementRecord> settlements, Iterator<Deposit> deposits, MismatchReport report,
+                           ReconciliationResultDTO result) throws IOException {
+        SettlementRecord settlement = next(settlements);
+        Deposit deposit = deposits.hasNext() ? deposits.next() : null;
+        while (deposit != null || settlement != null) {
+            if (deposit != null && (settlement == null || deposit.getId() <= settlement.getDepositId())) {
+                settlement = join(deposit, settlement, settlements, report, result);
+                deposit = deposits.hasNext() ? deposits.next() : null;
+                continue;
+            }
+            Deposit otherDay = depositRepository.findOne(settlement.getDepositId());
+            if (otherDay != null) {
+                settlement = join(otherDay, settlement, settlements, report, result);
+                continue;
+            }
+            long depositId = settlement.getDepositId();
+            for (; settlement != null && settlement.getDepositId() == depositId; settlement = next(settlements)) {
+                report.write(MismatchType.UNKNOWN_DEPOSIT, settlement, null);
+            }
+        }
+    }
+
+    /**
+     * Join a deposit with its settlements, if any, starting at the given one.
+     *
+     * @return the first settlement of the next deposits
+     */
+    private SettlementRecord join(Deposit deposit, SettlementRecord settlement, Iterator<SettlementRecord> settlements,
+                                  MismatchReport report, ReconciliationResultDTO result) throws IOException {
+        reconciledDeposits.mark();
+        result.setDepositCount(result.getDepositCount() + 1);
+        // A refunded deposit was paid first
+        boolean paid = deposit.getStatus() == DepositStatus.SUCCESS || deposit.getStatus() == DepositStatus.REFUNDED;
+        boolean settled = false;
+        boolean approved = false;
+        boolean mismatched = false;
+        for (; settlement != null && settlement.getDepositId() == deposit.getId(); settlement = next(settlements)) {
+            settled = true;
+            if (!settlement.isApproved()) {
+                continue;
+            }
+            if (approved) {
+                report.write(MismatchType.DUPLICATE_SETTLEMENT, settlement, deposit);
+                mismatched = true;
+            } else if (!paid) {
+                report.write(MismatchType.STATUS_MISMATCH, settlement, deposit);
+                mismatched = true;
+            } else if (settlement.getAmount() != null &&
+                !NapasAmounts.isAmountOf(settlement.getAmount(), deposit.getCurrencyCode(), deposit.getAmount())) {
+                report.write(MismatchType.AMOUNT_MISMATCH, settlement, deposit);
+                mismatched = true;
+            }
+            approved = true;
+        }
+        if (paid && !approved) {
+            report.write(settled ? MismatchType.STATUS_MISMATCH : MismatchType.MISSING_SETTLEMENT, null, deposit);
+        } else if ((paid || settled) && !mismatched) {
+            result.setMatchedCount(result.getMatchedCount() + 1);
+        }
+        entityManager.detach(deposit);
+        return settlement;
+    }
+
+    private static SettlementRecord next(Iterator<SettlementRecord> settlements) {
+        return settlements.hasNext() ? settlements.next() : null;
+    }
+
+    private static int column(List<String> header, String name, boolean required) {
+        int index = header.indexOf(name);
+        if (index < 0 && required) {
+            throw new IllegalArgumentException("The settlement file has no " + name + " column");
+        }
+        return index;
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private static Long amount(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The CSV report of the mismatches, with a header line.
+     */
+    private final class MismatchReport implements Closeable {
+
+        private final Writer writer;
+
+        private final ReconciliationResultDTO result;
+
+        MismatchReport(Path reportFile, ReconciliationResultDTO result) throws IOException {
+            this.writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8);
+            this.result = result;
+            writer.write(REPORT_HEADER);
+            writer.write("\r\n");
+        }
+
+        void write(MismatchType type, SettlementRecord settlement, Deposit deposit) throws IOException {
+            mismatches.mark();
+            result.setMismatchCount(result.getMismatchCount() + 1);
+            result.getMismatchCounts().merge(type, 1L, Long::sum);
+            writeValue(type);
+            writer.write(',');
+            if (settlement != null) {
+                writeValue(settlement.getMerchTxnRef());
+                writer.write(',');
+                writeValue(settlement.getTransactionNo());
+                writer.write(',');
+                writeValue(settlement.getResponseCode());
+                writer.write(',');
+                writeValue(settlement.getAmount());
+                writer.write(',');
+                writeValue(settlement.getLine());
+            } else {
+                writer.write(",,,,");
+            }
+            writer.write(',');
+            if (deposit != null) {
+                writeValue(deposit.getId());
+                writer.write(',');
+                writeValue(deposit.getStatus());
+                writer.write(',');
+                writeValue(deposit.getAmount());
+                writer.write(',');
+                writeValue(deposit.getCurrencyCode());
+            } else {
+                writer.write(",,,");
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.booking.payment.service;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.ReindexRange;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.ReindexRangeRepository;
+import com.booking.payment.repository.search.DepositSearchRepository;
+import com.booking.payment.service.dto.ReindexStatusDTO;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service rebuilding the Deposit index from the database.
+ * <p>
+ * The deposit ids are split into ranges of "application.reindex.range-size", which are scanned in parallel by
+ * "application.reindex.parallelism" workers and pushed to Elasticsearch with bulk requests, the periodic refresh
+ * of the index being disabled during the load. Each range is checkpointed in the reindex_range table after every
+ * bulk request, so a reindex that failed or was interrupted by a restart resumes where it stopped.
+ * <p>
+ * Changes made while the reindex runs are applied by the {@link DepositSearchIndexer}. Both index the deposits with
+ * their version as the external version of Elasticsearch, so a batch read before a change can't overwrite the
+ * document indexed for the change, and the index is consistent once both are done.
+ */
+@Service
+public class DepositReindexService {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final Logger log = LoggerFactory.getLogger(DepositReindexService.class);
+
+    private final DepositRepository depositRepository;
+
+    private final ReindexRangeRepository reindexRangeRepository;
+
+    private final DepositSearchRepository depositSearchRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ApplicationProperties.Reindex properties;
+
+    private final Meter indexedDeposits;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+
+    private final LongAdder indexedCount = new LongAdder();
+
+    private final AtomicInteger completedRangeCount = new AtomicInteger();
+
+    private volatile boolean aborted;
+
+    private volatile Instant startedDate;
+
+    private volatile Instant finishedDate;
+
+    private volatile int rangeCount;
+
+    private volatile long totalCount;
+
+    private volatile long resumedCount;
+
+    private volatile String error;
+
+    public DepositReindexService(DepositRepository depositRepository, ReindexRangeRepository reindexRangeRepository,
+                                 DepositSearchRepository depositSearchRepository, PlatformTransactionManager transactionManager,
+                                 ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        this.depositRepository = depositRepository;
+        this.reindexRangeRepository = reindexRangeRepository;
+        this.depositSearchRepository = depositSearchRepository;
+        // Checkpoints are committed on their own, whatever the transaction of the caller
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getReindex();
+        this.indexedDeposits = metricRegistry.meter(MetricRegistry.name(DepositReindexService.class, "indexed"));
+    }
+
+    /**
+     * Start a reindex in the background, resuming the previous one if it did not complete.
+     *
+     * @param restart true to discard the checkpoints of the previous reindex and start from scratch
+     * @return false if a reindex is already running
+     */
+    public boolean start(boolean restart) {
+        State current = state.get();
+        if (current == State.RUNNING || !state.compareAndSet(current, State.RUNNING)) {
+            return false;
+        }
+        aborted = false;
+        startedDate = Instant.now();
+        finishedDate = null;
+        error = null;
+        indexedCount.reset();
+        completedRangeCount.set(0);
+        try {
+            List<ReindexRange> ranges = transactionTemplate.execute(status -> planRanges(restart));
+            rangeCount = ranges.size();
+            resumedCount = reindexRangeRepository.sumIndexedCount();
+            totalCount = depositRepository.approximateCount();
+            log.info("Reindexing about {} Deposits in {} ranges, {} already indexed", totalCount, rangeCount, resumedCount);
+            depositSearchRepository.updateRefreshInterval("-1");
+
+            Queue<ReindexRange> queue = new ConcurrentLinkedQueue<>(ranges);
+            int workerCount = Math.max(1, Math.min(properties.getParallelism(), ranges.size()));
+            ExecutorService workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("deposit-reindex-"));
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                futures[i] = CompletableFuture.runAsync(() -> work(queue), workers);
+            }
+            CompletableFuture.allOf(futures).whenComplete((result, throwable) -> {
+                workers.shutdown();
+                finish(throwable);
+            });
+        } catch (RuntimeException e) {
+            finish(e);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Get the progress of the current, or of the last, reindex.
+     *
+     * @return the status of the reindex
+     */
+    public ReindexStatusDTO getStatus() {
+        ReindexStatusDTO status = new ReindexStatusDTO();
+        State currentState = state.get();
+        status.setState(currentState);
+        status.setStartedDate(startedDate);
+        status.setFinishedDate(finishedDate);
+        status.setRangeCount(rangeCount);
+        status.setCompletedRangeCount(completedRangeCount.get());
+        status.setTotalCount(totalCount);
+        status.setError(error);
+        if (startedDate == null) {
+            return status;
+        }
+        long indexed = indexedCount.sum();
+        status.setIndexedCount(resumedCount + indexed);
+        long elapsedMillis = Duration.between(startedDate, finishedDate == null ? Instant.now() : finishedDate).toMillis();
+        if (elapsedMillis > 0) {
+            status.setDocsPerSecond(indexed * 1000.0 / elapsedMillis);
+        }
+        if (currentState == State.RUNNING && status.getDocsPerSecond() > 0) {
+            long remaining = Math.max(0, totalCount - status.getIndexedCount());
+            status.setEtaSeconds((long) Math.ceil(remaining / status.getDocsPerSecond()));
+        }
+        return status;
+    }
+
+    /**
+     * Get the ranges left by an unfinished reindex, or split the deposit ids into new ranges.
+     */
+    private List<ReindexRange> planRanges(boolean restart) {
+        if (!restart) {
+            List<ReindexRange> pending = reindexRangeRepository.findAllByCompletedFalseOrderByRangeStart();
+            if (!pending.isEmpty()) {
+                log.info("Resuming the previous reindex, {} ranges left", pending.size());
+                return pending;
+            }
+        }
+        reindexRangeRepository.deleteAllInBatch();
+        Long minId = depositRepository.findMinId();
+        Long maxId = depositRepository.findMaxId();
+        if (minId == null) {
+            return Collections.emptyList();
+        }
+        List<ReindexRange> ranges = new ArrayList<>();
+        long rangeSize = properties.getRangeSize();
+        for (long start = minId; start <= maxId; start += rangeSize) {
+            ranges.add(new ReindexRange().rangeStart(start).rangeEnd(Math.min(maxId, start + rangeSize - 1)));
+            if (maxId - start < rangeSize) {
+                break;
+            }
+        }
+        return reindexRangeRepository.save(ranges);
+    }
+
+    private void work(Queue<ReindexRange> queue) {
+        ReindexRange range;
+        while (!aborted && (range = queue.poll()) != null) {
+            try {
+                reindex(range);
+            } catch (RuntimeException e) {
+                aborted = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Scan a range by keyset pagination, from its checkpoint, with one bulk request per batch.
+     */
+    private void reindex(ReindexRange range) {
+        long afterId = range.getLastId() != null ? range.getLastId() : range.getRangeStart() - 1;
+        int batchSize = properties.getBatchSize();
+        while (!aborted) {
+            long after = afterId;
+            List<Deposit> deposits = readOnlyTransactionTemplate.execute(status ->
+                depositRepository.findAllByIdGreaterThanAndIdLessThanEqual(after, range.getRangeEnd(),
+                    new PageRequest(0, batchSize, Sort.Direction.ASC, "id")).getContent());
+            if (!deposits.isEmpty()) {
+                Set<Long> failed = depositSearchRepository.bulk(deposits, Collections.emptyList());
+                if (!failed.isEmpty()) {
+                    throw new IllegalStateException("Elasticsearch rejected " + failed.size() + " Deposits of the range starting at " +
+                        range.getRangeStart());
+                }
+                afterId = deposits.get(deposits.size() - 1).getId();
+                range.setLastId(afterId);
+                range.setIndexedCount(range.getIndexedCount() + deposits.size());
+                indexedCount.add(deposits.size());
+                indexedDeposits.mark(deposits.size());
+            }
+            range.setCompleted(deposits.size() < batchSize);
+            transactionTemplate.execute(status -> reindexRangeRepository.save(range));
+            if (range.isCompleted()) {
+                completedRangeCount.incrementAndGet();
+                log.debug("Reindexed the range {}", range);
+                return;
+            }
+        }
+    }
+
+    private void finish(Throwable throwable) {
+        try {
+            depositSearchRepository.updateRefreshInterval(properties.getRefreshInterval());
+        } catch (RuntimeException e) {
+            log.warn("Could not restore the refresh interval of the Deposit index: {}", e.getMessage());
+        }
+        finishedDate = Instant.now();
+        if (throwable == null) {
+            log.info("Reindexed {} Deposits in {}", indexedCount.sum(), Duration.between(startedDate, finishedDate));
+            state.set(State.COMPLETED);
+        } else {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            log.error("Reindex failed, it will resume from its checkpoints when restarted", cause);
+            error = cause.getMessage();
+            state.set(State.FAILED);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.booking.payment.service;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.SearchOutboxEvent;
+import com.booking.payment.domain.enumeration.SearchOperation;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.SearchOutboxEventRepository;
+import com.booking.payment.repository.search.DepositSearchRepository;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Service applying the search outbox (see {@link SearchOutboxEvent}) to the Elasticsearch index.
+ * <p>
+ * The outbox is polled on a fixed delay and drained on the "taskExecutor", by batches sent as one bulk request each.
+ * Each node claims its own batches with a lease of "application.search-indexer.lease", so several nodes share the
+ * work without applying the same events, and the events of a node that stopped are applied by another one once
+ * the lease is over. Events that fail are retried with an exponential backoff; they are never dropped.
+ */
+@Service
+public class DepositSearchIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(DepositSearchIndexer.class);
+
+    private final SearchOutboxEventRepository searchOutboxEventRepository;
+
+    private final DepositRepository depositRepository;
+
+    private final DepositSearchRepository depositSearchRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TaskExecutor taskExecutor;
+
+    private final ApplicationProperties.SearchIndexer properties;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final Meter indexedEvents;
+
+    private final Meter failedEvents;
+
+    public DepositSearchIndexer(SearchOutboxEventRepository searchOutboxEventRepository, DepositRepository depositRepository,
+                                DepositSearchRepository depositSearchRepository, PlatformTransactionManager transactionManager,
+                                @Qualifier("taskExecutor") TaskExecutor taskExecutor, ApplicationProperties applicationProperties,
+                                MetricRegistry metricRegistry) {
+        this.searchOutboxEventRepository = searchOutboxEventRepository;
+        this.depositRepository = depositRepository;
+        this.depositSearchRepository = depositSearchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getSearchIndexer();
+        this.indexedEvents = metricRegistry.meter(MetricRegistry.name(DepositSearchIndexer.class, "indexed"));
+        this.failedEvents = metricRegistry.meter(MetricRegistry.name(DepositSearchIndexer.class, "failed"));
+        metricRegistry.register(MetricRegistry.name(DepositSearchIndexer.class, "lag"), new CachedGauge<Long>(5, TimeUnit.SECONDS) {
+            @Override
+            protected Long loadValue() {
+                Instant oldest = searchOutboxEventRepository.findOldestCreatedDate();
+                return oldest == null ? 0L : Duration.between(oldest, Instant.now()).toMillis();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(DepositSearchIndexer.class, "pending"), new CachedGauge<Long>(5, TimeUnit.SECONDS) {
+            @Override
+            protected Long loadValue() {
+                return searchOutboxEventRepository.count();
+            }
+        });
+    }
+
+    /**
+     * Start draining the outbox on the task executor, unless it is already being drained.
+     */
+    @Scheduled(fixedDelayString = "${application.search-indexer.poll-delay:1000}")
+    public void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    while (drain() == properties.getBatchSize()) {
+                        log.debug("Search outbox batch full, draining the next one");
+                    }
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            draining.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Apply one batch of due outbox events to the Elasticsearch index.
+     * <p>
+     * The events of a batch are claimed in a first transaction, sent to Elasticsearch outside of any transaction,
+     * and removed (or rescheduled, for failed ones) in a second transaction, each by a conditional statement which
+     * leaves them alone if the lease is over and another node claimed them in the meantime.
+     *
+     * @return the number of events in the batch
+     */
+    public int drain() {
+        Instant now = Instant.now();
+        String owner = UUID.randomUUID().toString();
+        List<SearchOutboxEvent> events = transactionTemplate.execute(status -> searchOutboxEventRepository.claim(
+            searchOutboxEventRepository.findDueIds(now, new PageRequest(0, properties.getBatchSize())), owner,
+            now.plusMillis(properties.getLease())));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Only the latest operation of each deposit needs to be applied
+        Map<Long, SearchOperation> operations = new LinkedHashMap<>();
+        events.forEach(event -> operations.put(event.getDepositId(), event.getOperation()));
+        List<Long> idsToIndex = operations.entrySet().stream()
+            .filter(entry -> entry.getValue() == SearchOperation.INDEX)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        List<Deposit> toIndex = transactionTemplate.execute(status -> depositRepository.findAll(idsToIndex));
+        Set<Long> indexedIds = toIndex.stream().map(Deposit::getId).collect(Collectors.toSet());
+        // Deposits deleted since the event was written are deleted from the index too
+        List<Long> toDelete = operations.keySet().stream()
+            .filter(id -> !indexedIds.contains(id))
+            .collect(Collectors.toList());
+
+        Set<Long> failedIds;
+        try {
+            failedIds = depositSearchRepository.bulk(toIndex, toDelete);
+        } catch (RuntimeException e) {
+            log.warn("Elasticsearch bulk request of {} Deposits failed: {}", operations.size(), e.getMessage());
+            failedIds = operations.keySet();
+        }
+
+        Set<Long> failed = failedIds;
+        List<Long> applied = new ArrayList<>(events.size());
+        List<SearchOutboxEvent> rescheduled = new ArrayList<>();
+        for (SearchOutboxEvent event : events) {
+            if (failed.contains(event.getDepositId())) {
+                rescheduled.add(event);
+            } else {
+                applied.add(event.getId());
+            }
+        }
+        Instant failedAt = Instant.now();
+        transactionTemplate.execute(status -> {
+            searchOutboxEventRepository.deleteClaimed(applied, owner);
+            rescheduled.forEach(event -> searchOutboxEventRepository.reschedule(event.getId(), owner,
+                failedAt.plusMillis(backoff(event.getAttempts() + 1))));
+            return null;
+        });
+        indexedEvents.mark(applied.size());
+        failedEvents.mark(rescheduled.size());
+        log.debug("Applied {} search outbox events, rescheduled {}", applied.size(), rescheduled.size());
+        return events.size();
+    }
+
+    /**
+     * Exponential backoff with full jitter, in milliseconds.
+     */
+    private long backoff(int attempts) {
+        long ceiling = properties.getInitialBackoff() << Math.min(attempts - 1, 20);
+        ceiling = Math.min(properties.getMaxBackoff(), ceiling);
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+}
@@ -1,13 +1,25 @@
 package com.booking.payment.service;
 
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.BulkItemResultDTO;
 import com.booking.payment.service.dto.DepositDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service Interface for managing Deposit.
  */
 public interface DepositService {
 
+    /**
+     * The cache of the deposits read by {@link #findOne(Long)}.
+     */
+    String DEPOSIT_DTOS_CACHE = "depositDtos";
+
     /**
      * Save a deposit.
      *
@@ -17,11 +29,77 @@ public interface DepositService {
     DepositDTO save(DepositDTO depositDTO);
 
     /**
-     * Get all the deposits.
+     * Save new deposits in bulk, by chunks sharing one transaction and one JDBC batch.
      *
-     * @return the list of entities
+     * @param depositDTOs the entities to save, which must not have an id
+     * @return the result of each entity, in the same order
      */
-    List<DepositDTO> findAll();
+    List<BulkItemResultDTO> saveAll(List<DepositDTO> depositDTOs);
+
+    /**
+     * Move a deposit to a new status, if it still has the expected one.
+     *
+     * @param id the id of the entity
+     * @param expectedStatus the status the entity must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the entity was updated, false if it doesn't exist or if its status was not the expected one
+     * @throws IllegalArgumentException if the lifecycle of the deposits doesn't allow the transition
+     */
+    boolean transition(Long id, DepositStatus expectedStatus, DepositStatus status, String gatewayTransactionNo);
+
+    /**
+     * Complete a payment of a deposit, moving it to a new status if it still has the expected one and if the payment
+     * is still its last one.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @param expectedStatus the status the entity must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the entity was updated, false if it doesn't exist, if its status was not the expected one or if
+     * the payment was superseded
+     * @throws IllegalArgumentException if the lifecycle of the deposits doesn't allow the transition
+     */
+    boolean completePayment(Long id, String merchantId, String merchTxnRef, DepositStatus expectedStatus,
+                            DepositStatus status, String gatewayTransactionNo);
+
+    /**
+     * Check that a payment is the last one initiated for a deposit, with the same merchant.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return true if the payment is the last one of the entity
+     */
+    boolean isCurrentPayment(Long id, String merchantId, String merchTxnRef);
+
+    /**
+     * Record a payment initiated for a PENDING deposit, so that it can be polled from the gateway.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return true if the payment was recorded, false if the entity doesn't exist or is no longer PENDING
+     */
+    boolean startPayment(Long id, String merchantId, String merchTxnRef);
+
+    /**
+     * Get a slice of the deposits, ordered by id, starting right after the given id.
+     *
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @return the slice of entities
+     */
+    Slice<DepositDTO> findAllAfter(Long afterId, int size);
+
+    /**
+     * Get a cheap estimate of the number of deposits.
+     *
+     * @return the estimated number of entities
+     */
+    long countApproximately();
 
     /**
      * Get the "id" deposit.
@@ -31,6 +109,41 @@ public interface DepositService {
      */
     DepositDTO findOne(Long id);
 
+    /**
+     * Load deposits into the caches read by findOne, ahead of the requests for them.
+     *
+     * @param ids the ids of the entities
+     * @return the number of entities loaded
+     */
+    int preload(List<Long> ids);
+
+    /**
+     * Get the deposit with the given booking code.
+     *
+     * @param bookingCode the booking code of the entity
+     * @return the entity, if any
+     */
+    Optional<DepositDTO> findOneByBookingCode(String bookingCode);
+
+    /**
+     * Get a page of the deposits of a user.
+     *
+     * @param userId the id of the user
+     * @param pageable the pagination information
+     * @return the page of entities
+     */
+    Page<DepositDTO> findAllByUserId(Long userId, Pageable pageable);
+
+    /**
+     * Get a slice of the deposits of a user, ordered by id, starting right after the given id.
+     *
+     * @param userId the id of the user
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @return the slice of entities
+     */
+    Slice<DepositDTO> findAllByUserIdAfter(Long userId, Long afterId, int size);
+
     /**
      * Delete the "id" deposit.
      *
@@ -39,11 +152,36 @@ public interface DepositService {
     void delete(Long id);
 
     /**
-     * Search for the deposit corresponding to the query.
+     * Search for a page of the deposits corresponding to the query.
+     *
+     * @param query the query of the search
+     * @param pageable the pagination information
+     * @param fields the fields to fetch from the index, or null to fetch all of them
+     * @return the page of entities
+     */
+    Page<DepositDTO> search(String query, Pageable pageable, String[] fields);
+
+    /**
+     * Search for the deposits corresponding to the query, ordered by id, starting right after the given id.
+     * <p>
+     * Unlike {@link #search(String, Pageable, String[])}, the cost of a slice doesn't depend on its depth.
      *
      * @param query the query of the search
-     * 
-     * @return the list of entities
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @param fields the fields to fetch from the index, or null to fetch all of them
+     * @return the slice of entities
+     */
+    Slice<DepositDTO> searchAfter(String query, Long afterId, int size, String[] fields);
+
+    /**
+     * Get a page of the deposits matching all the given exact values, null values being ignored.
+     *
+     * @param bookingCode the booking code of the deposits
+     * @param userId the user id of the deposits
+     * @param currencyCode the currency code of the deposits
+     * @param pageable the pagination information
+     * @return the page of entities
      */
-    List<DepositDTO> search(String query);
+    Page<DepositDTO> filter(String bookingCode, Long userId, String currencyCode, Pageable pageable);
 }
@@ -0,0 +1,75 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the result of one item of a bulk request.
+ */
+public class BulkItemResultDTO implements Serializable {
+
+    private int index;
+
+    private int status;
+
+    private Long id;
+
+    private String error;
+
+    public static BulkItemResultDTO created(int index, Long id) {
+        BulkItemResultDTO result = new BulkItemResultDTO();
+        result.setIndex(index);
+        result.setStatus(201);
+        result.setId(id);
+        return result;
+    }
+
+    public static BulkItemResultDTO failed(int index, int status, String error) {
+        BulkItemResultDTO result = new BulkItemResultDTO();
+        result.setIndex(index);
+        result.setStatus(status);
+        result.setError(error);
+        return result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkItemResultDTO{" +
+            "index=" + getIndex() +
+            ", status=" + getStatus() +
+            ", id=" + getId() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
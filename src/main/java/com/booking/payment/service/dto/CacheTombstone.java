@@ -0,0 +1,46 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * The entry left in a cache in place of an invalidated value, so that a value loaded before the invalidation
+ * can't be cached over it.
+ */
+public class CacheTombstone implements Serializable {
+
+    private final long token;
+
+    public CacheTombstone(long token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the random number telling this invalidation apart from the other ones of the same key
+     */
+    public long getToken() {
+        return token;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return token == ((CacheTombstone) o).token;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(token);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheTombstone{" +
+            "token=" + token +
+            "}";
+    }
+}
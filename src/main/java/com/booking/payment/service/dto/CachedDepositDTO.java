@@ -0,0 +1,76 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A deposit cached by DepositService#findOne, or the absence of a deposit with the id.
+ */
+public class CachedDepositDTO implements Serializable {
+
+    private final DepositDTO deposit;
+
+    private final long expiresAt;
+
+    private final long loadMillis;
+
+    public CachedDepositDTO(DepositDTO deposit, long expiresAt, long loadMillis) {
+        this.deposit = deposit;
+        this.expiresAt = expiresAt;
+        this.loadMillis = loadMillis;
+    }
+
+    /**
+     * @return the deposit, or null if there is no deposit with the id
+     */
+    public DepositDTO getDeposit() {
+        return deposit;
+    }
+
+    /**
+     * @return the time, in milliseconds since the epoch, after which the entry must be loaded again
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @return how long loading the entry took, in milliseconds
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Entries are equal when they were loaded with the same version of the deposit at the same time, so that a
+     * Hazelcast map holding them as objects can replace one by comparison.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CachedDepositDTO cachedDepositDTO = (CachedDepositDTO) o;
+        return expiresAt == cachedDepositDTO.expiresAt && loadMillis == cachedDepositDTO.loadMillis &&
+            (deposit == null ? cachedDepositDTO.deposit == null : cachedDepositDTO.deposit != null &&
+                Objects.equals(deposit.getId(), cachedDepositDTO.deposit.getId()) &&
+                Objects.equals(deposit.getVersion(), cachedDepositDTO.deposit.getVersion()));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deposit, expiresAt);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedDepositDTO{" +
+            "deposit=" + deposit +
+            ", expiresAt=" + expiresAt +
+            ", loadMillis=" + loadMillis +
+            "}";
+    }
+}
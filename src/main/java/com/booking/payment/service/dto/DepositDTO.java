@@ -1,5 +1,6 @@
 package com.booking.payment.service.dto;
 
+import com.booking.payment.domain.enumeration.DepositStatus;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -17,6 +18,33 @@ public class DepositDTO implements Serializable {
 
     private String currencyCode;
 
+    private Long version;
+
+    private DepositStatus status;
+
+    private Long amount;
+
+    private String gatewayTransactionNo;
+
+    public DepositDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * Constructor used by the projection queries of DepositRepository.
+     */
+    public DepositDTO(Long id, String bookingCode, Long userId, String currencyCode, Long version, DepositStatus status,
+                      Long amount, String gatewayTransactionNo) {
+        this.id = id;
+        this.bookingCode = bookingCode;
+        this.userId = userId;
+        this.currencyCode = currencyCode;
+        this.version = version;
+        this.status = status;
+        this.amount = amount;
+        this.gatewayTransactionNo = gatewayTransactionNo;
+    }
+
     public Long getId() {
         return id;
     }
@@ -49,6 +77,38 @@ public class DepositDTO implements Serializable {
         this.currencyCode = currencyCode;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public DepositStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(DepositStatus status) {
+        this.status = status;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getGatewayTransactionNo() {
+        return gatewayTransactionNo;
+    }
+
+    public void setGatewayTransactionNo(String gatewayTransactionNo) {
+        this.gatewayTransactionNo = gatewayTransactionNo;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -77,6 +137,10 @@ public class DepositDTO implements Serializable {
             ", bookingCode='" + getBookingCode() + "'" +
             ", userId=" + getUserId() +
             ", currencyCode='" + getCurrencyCode() + "'" +
+            ", version=" + getVersion() +
+            ", status='" + getStatus() + "'" +
+            ", amount=" + getAmount() +
+            ", gatewayTransactionNo='" + getGatewayTransactionNo() + "'" +
             "}";
     }
 }
@@ -0,0 +1,84 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for a transaction, as reported by the back-office API of the payment gateway.
+ */
+public class GatewayTransactionDTO implements Serializable {
+
+    private String merchTxnRef;
+
+    /**
+     * Whether the gateway knows the transaction, only set by the queries.
+     */
+    private Boolean exists;
+
+    private String responseCode;
+
+    private String transactionNo;
+
+    private Long amount;
+
+    private String message;
+
+    public String getMerchTxnRef() {
+        return merchTxnRef;
+    }
+
+    public void setMerchTxnRef(String merchTxnRef) {
+        this.merchTxnRef = merchTxnRef;
+    }
+
+    public Boolean getExists() {
+        return exists;
+    }
+
+    public void setExists(Boolean exists) {
+        this.exists = exists;
+    }
+
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+    public void setResponseCode(String responseCode) {
+        this.responseCode = responseCode;
+    }
+
+    public String getTransactionNo() {
+        return transactionNo;
+    }
+
+    public void setTransactionNo(String transactionNo) {
+        this.transactionNo = transactionNo;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayTransactionDTO{" +
+            "merchTxnRef='" + getMerchTxnRef() + "'" +
+            ", exists=" + getExists() +
+            ", responseCode='" + getResponseCode() + "'" +
+            ", transactionNo='" + getTransactionNo() + "'" +
+            ", amount=" + getAmount() +
+            ", message='" + getMessage() + "'" +
+            "}";
+    }
+}
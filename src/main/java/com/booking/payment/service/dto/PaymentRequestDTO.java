@@ -0,0 +1,61 @@
+package com.booking.payment.service.dto;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+
+/**
+ * A DTO for the initiation of the payment of a deposit.
+ */
+public class PaymentRequestDTO implements Serializable {
+
+    @NotNull
+    private Long depositId;
+
+    /**
+     * The amount, in hundredths of the currency unit, if the client checks it: the amount paid is the amount of
+     * the deposit.
+     */
+    @Min(1)
+    private Long amount;
+
+    /**
+     * The business line of the booking, which selects the merchant account of the payment with its currency.
+     */
+    @Size(max = 50)
+    private String channel;
+
+    public Long getDepositId() {
+        return depositId;
+    }
+
+    public void setDepositId(Long depositId) {
+        this.depositId = depositId;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentRequestDTO{" +
+            "depositId=" + getDepositId() +
+            ", amount=" + getAmount() +
+            ", channel='" + getChannel() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,57 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the signed URL of the payment page of the gateway.
+ */
+public class PaymentUrlDTO implements Serializable {
+
+    private Long depositId;
+
+    private String merchTxnRef;
+
+    private String url;
+
+    public PaymentUrlDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public PaymentUrlDTO(Long depositId, String merchTxnRef, String url) {
+        this.depositId = depositId;
+        this.merchTxnRef = merchTxnRef;
+        this.url = url;
+    }
+
+    public Long getDepositId() {
+        return depositId;
+    }
+
+    public void setDepositId(Long depositId) {
+        this.depositId = depositId;
+    }
+
+    public String getMerchTxnRef() {
+        return merchTxnRef;
+    }
+
+    public void setMerchTxnRef(String merchTxnRef) {
+        this.merchTxnRef = merchTxnRef;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentUrlDTO{" +
+            "depositId=" + getDepositId() +
+            ", merchTxnRef='" + getMerchTxnRef() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,99 @@
+package com.booking.payment.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO for the last payment of a PENDING deposit, claimed to be polled from the gateway.
+ */
+public class PendingPaymentDTO implements Serializable {
+
+    private Long depositId;
+
+    private String merchantId;
+
+    private String merchTxnRef;
+
+    private Instant startedAt;
+
+    private Long amount;
+
+    private String currencyCode;
+
+    public PendingPaymentDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public PendingPaymentDTO(Long depositId, String merchantId, String merchTxnRef, Instant startedAt, Long amount,
+                             String currencyCode) {
+        this.depositId = depositId;
+        this.merchantId = merchantId;
+        this.merchTxnRef = merchTxnRef;
+        this.startedAt = startedAt;
+        this.amount = amount;
+        this.currencyCode = currencyCode;
+    }
+
+    public Long getDepositId() {
+        return depositId;
+    }
+
+    public void setDepositId(Long depositId) {
+        this.depositId = depositId;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public void setMerchantId(String merchantId) {
+        this.merchantId = merchantId;
+    }
+
+    public String getMerchTxnRef() {
+        return merchTxnRef;
+    }
+
+    public void setMerchTxnRef(String merchTxnRef) {
+        this.merchTxnRef = merchTxnRef;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    /**
+     * @return the amount of the deposit, in minor units of its currency
+     */
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public void setCurrencyCode(String currencyCode) {
+        this.currencyCode = currencyCode;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingPaymentDTO{" +
+            "depositId=" + getDepositId() +
+            ", merchantId='" + getMerchantId() + "'" +
+            ", merchTxnRef='" + getMerchTxnRef() + "'" +
+            ", startedAt='" + getStartedAt() + "'" +
+            ", amount=" + getAmount() +
+            ", currencyCode='" + getCurrencyCode() + "'" +
+            "}";
+    }
+}
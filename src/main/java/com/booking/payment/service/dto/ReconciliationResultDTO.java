@@ -0,0 +1,118 @@
+package com.booking.payment.service.dto;
+
+import com.booking.payment.service.DepositReconciliationService;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A DTO for the result of the reconciliation of a settlement file with the deposits.
+ */
+public class ReconciliationResultDTO implements Serializable {
+
+    private String settlementFile;
+
+    private String reportFile;
+
+    private long lineCount;
+
+    private long depositCount;
+
+    private long matchedCount;
+
+    private long mismatchCount;
+
+    private Map<DepositReconciliationService.MismatchType, Long> mismatchCounts =
+        new EnumMap<>(DepositReconciliationService.MismatchType.class);
+
+    private long durationMillis;
+
+    private double linesPerSecond;
+
+    public String getSettlementFile() {
+        return settlementFile;
+    }
+
+    public void setSettlementFile(String settlementFile) {
+        this.settlementFile = settlementFile;
+    }
+
+    public String getReportFile() {
+        return reportFile;
+    }
+
+    public void setReportFile(String reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(long lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public long getDepositCount() {
+        return depositCount;
+    }
+
+    public void setDepositCount(long depositCount) {
+        this.depositCount = depositCount;
+    }
+
+    public long getMatchedCount() {
+        return matchedCount;
+    }
+
+    public void setMatchedCount(long matchedCount) {
+        this.matchedCount = matchedCount;
+    }
+
+    public long getMismatchCount() {
+        return mismatchCount;
+    }
+
+    public void setMismatchCount(long mismatchCount) {
+        this.mismatchCount = mismatchCount;
+    }
+
+    public Map<DepositReconciliationService.MismatchType, Long> getMismatchCounts() {
+        return mismatchCounts;
+    }
+
+    public void setMismatchCounts(Map<DepositReconciliationService.MismatchType, Long> mismatchCounts) {
+        this.mismatchCounts = mismatchCounts;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public void setLinesPerSecond(double linesPerSecond) {
+        this.linesPerSecond = linesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconciliationResultDTO{" +
+            "settlementFile='" + settlementFile + "'" +
+            ", reportFile='" + reportFile + "'" +
+            ", lineCount=" + lineCount +
+            ", depositCount=" + depositCount +
+            ", matchedCount=" + matchedCount +
+            ", mismatchCount=" + mismatchCount +
+            ", mismatchCounts=" + mismatchCounts +
+            ", durationMillis=" + durationMillis +
+            "}";
+    }
+}
@@ -0,0 +1,128 @@
+package com.booking.payment.service.dto;
+
+import com.booking.payment.service.DepositReindexService;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO for the progress of the full reindex of the deposits.
+ */
+public class ReindexStatusDTO implements Serializable {
+
+    private DepositReindexService.State state;
+
+    private Instant startedDate;
+
+    private Instant finishedDate;
+
+    private int rangeCount;
+
+    private int completedRangeCount;
+
+    private long totalCount;
+
+    private long indexedCount;
+
+    private double docsPerSecond;
+
+    private Long etaSeconds;
+
+    private String error;
+
+    public DepositReindexService.State getState() {
+        return state;
+    }
+
+    public void setState(DepositReindexService.State state) {
+        this.state = state;
+    }
+
+    public Instant getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(Instant startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public Instant getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(Instant finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    public void setRangeCount(int rangeCount) {
+        this.rangeCount = rangeCount;
+    }
+
+    public int getCompletedRangeCount() {
+        return completedRangeCount;
+    }
+
+    public void setCompletedRangeCount(int completedRangeCount) {
+        this.completedRangeCount = completedRangeCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public double getDocsPerSecond() {
+        return docsPerSecond;
+    }
+
+    public void setDocsPerSecond(double docsPerSecond) {
+        this.docsPerSecond = docsPerSecond;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexStatusDTO{" +
+            "state='" + getState() + "'" +
+            ", startedDate='" + getStartedDate() + "'" +
+            ", finishedDate='" + getFinishedDate() + "'" +
+            ", rangeCount=" + getRangeCount() +
+            ", completedRangeCount=" + getCompletedRangeCount() +
+            ", totalCount=" + getTotalCount() +
+            ", indexedCount=" + getIndexedCount() +
+            ", docsPerSecond=" + getDocsPerSecond() +
+            ", etaSeconds=" + getEtaSeconds() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
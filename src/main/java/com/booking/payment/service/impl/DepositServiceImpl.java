@@ -1,20 +1,65 @@
 package com.booking.payment.service.impl;
 
+import com.booking.payment.config.ApplicationProperties;
 import com.booking.payment.service.DepositService;
 import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.SearchOutboxEvent;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.domain.enumeration.SearchOperation;
 import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.SearchOutboxEventRepository;
 import com.booking.payment.repository.search.DepositSearchRepository;
+import com.booking.payment.service.dto.BulkItemResultDTO;
+import com.booking.payment.service.dto.CachedDepositDTO;
 import com.booking.payment.service.dto.DepositDTO;
 import com.booking.payment.service.mapper.DepositMapper;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.SearchQuery;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.LinkedList;
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
@@ -27,60 +72,522 @@ public class DepositServiceImpl implements DepositService {
 
     private final Logger log = LoggerFactory.getLogger(DepositServiceImpl.class);
 
+    /**
+     * Number of deposits kept in the cache for the first page of each user.
+     */
+    private static final int CACHED_USER_DEPOSITS = 100;
+
+    /**
+     * The unique constraint of the booking codes, see the liquibase changelog of the deposit indexes.
+     */
+    private static final String BOOKING_CODE_CONSTRAINT = "ux_deposit_booking_code";
+
     private final DepositRepository depositRepository;
 
     private final DepositMapper depositMapper;
 
     private final DepositSearchRepository depositSearchRepository;
 
-    public DepositServiceImpl(DepositRepository depositRepository, DepositMapper depositMapper, DepositSearchRepository depositSearchRepository) {
+    private final SearchOutboxEventRepository searchOutboxEventRepository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final GuardedCache depositsByUserCache;
+
+    private final GuardedCache depositCache;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * The loads of the deposits missing from the cache in progress, by id.
+     */
+    private final ConcurrentMap<Long, CompletableFuture<CachedDepositDTO>> depositLoads = new ConcurrentHashMap<>();
+
+    private final Meter cacheHits;
+
+    private final Meter cacheMisses;
+
+    private final Meter cacheEarlyRefreshes;
+
+    public DepositServiceImpl(DepositRepository depositRepository, DepositMapper depositMapper, DepositSearchRepository depositSearchRepository,
+                              SearchOutboxEventRepository searchOutboxEventRepository, EntityManager entityManager,
+                              PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                              CacheManager cacheManager, MetricRegistry metricRegistry) {
         this.depositRepository = depositRepository;
         this.depositMapper = depositMapper;
         this.depositSearchRepository = depositSearchRepository;
+        this.searchOutboxEventRepository = searchOutboxEventRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The chunks of a bulk save never join a transaction of the caller
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.applicationProperties = applicationProperties;
+        // Deposits loaded before a commit are never cached after the invalidation which follows the commit
+        this.depositsByUserCache = new GuardedCache(cacheManager.getCache(DepositRepository.DEPOSITS_BY_USER_CACHE));
+        this.depositCache = new GuardedCache(cacheManager.getCache(DEPOSIT_DTOS_CACHE));
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.cacheHits = metricRegistry.meter(MetricRegistry.name(DepositServiceImpl.class, "cache", "hits"));
+        this.cacheMisses = metricRegistry.meter(MetricRegistry.name(DepositServiceImpl.class, "cache", "misses"));
+        this.cacheEarlyRefreshes = metricRegistry.meter(MetricRegistry.name(DepositServiceImpl.class, "cache", "early-refreshes"));
     }
 
     /**
      * Save a deposit.
+     * <p>
+     * An update is checked against the version of the deposit, unless the depositDTO has no version, in which case
+     * the current one is used. The amount and the currency of an existing deposit can't change, as its payments are
+     * signed for them, and its status and gateway transaction are kept, as they only change by transitions. The
+     * deposit is indexed asynchronously, by the search indexer, once the transaction has been committed.
      *
      * @param depositDTO the entity to save
-     * @return the persisted entity
+     * @return the persisted entity, with its new version
+     * @throws BadRequestAlertException if the amount or the currency of an existing deposit differ from its own
      */
     @Override
     public DepositDTO save(DepositDTO depositDTO) {
         log.debug("Request to save Deposit : {}", depositDTO);
         Deposit deposit = depositMapper.toEntity(depositDTO);
-        deposit = depositRepository.save(deposit);
+        if (deposit.getId() != null) {
+            Deposit existingDeposit = depositRepository.findOne(deposit.getId());
+            if (existingDeposit != null) {
+                evictUserDeposits(existingDeposit.getUserId());
+                if (deposit.getVersion() == null) {
+                    deposit.setVersion(existingDeposit.getVersion());
+                }
+                if (!Objects.equals(deposit.getAmount(), existingDeposit.getAmount()) ||
+                    !Objects.equals(deposit.getCurrencyCode(), existingDeposit.getCurrencyCode())) {
+                    throw new BadRequestAlertException("The amount and the currency of a deposit can't change", "deposit",
+                        "amountimmutable");
+                }
+                deposit.setStatus(existingDeposit.getStatus());
+                deposit.setGatewayTransactionNo(existingDeposit.getGatewayTransactionNo());
+            }
+        }
+        // Flushed, so that the version returned is the incremented one
+        deposit = depositRepository.saveAndFlush(deposit);
+        evictUserDeposits(deposit.getUserId());
+        // Also drops the absence of a new deposit cached when it was read before being created
+        depositCache.invalidate(deposit.getId());
         DepositDTO result = depositMapper.toDto(deposit);
-        depositSearchRepository.save(deposit);
+        searchOutboxEventRepository.save(new SearchOutboxEvent().depositId(deposit.getId()).operation(SearchOperation.INDEX));
         return result;
     }
 
     /**
-     * Get all the deposits.
+     * Save new deposits in bulk.
+     * <p>
+     * Deposits are saved by chunks of "application.bulk.chunk-size", each chunk in its own transaction, even when
+     * the caller has one. When a chunk fails, its deposits are retried one by one, so that a single invalid deposit
+     * doesn't fail the whole chunk.
      *
-     * @return the list of entities
+     * @param depositDTOs the entities to save, which must not have an id
+     * @return the result of each entity, in the same order
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BulkItemResultDTO> saveAll(List<DepositDTO> depositDTOs) {
+        log.debug("Request to save {} Deposits in bulk", depositDTOs.size());
+        int chunkSize = applicationProperties.getBulk().getChunkSize();
+        List<BulkItemResultDTO> results = new ArrayList<>(Collections.nCopies(depositDTOs.size(), null));
+        List<Integer> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < depositDTOs.size(); i++) {
+            DepositDTO depositDTO = depositDTOs.get(i);
+            if (depositDTO == null || depositDTO.getId() != null) {
+                results.set(i, BulkItemResultDTO.failed(i, 400, "idexists"));
+                continue;
+            }
+            chunk.add(i);
+            if (chunk.size() == chunkSize) {
+                saveChunk(depositDTOs, chunk, results);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(depositDTOs, chunk, results);
+        }
+        return results;
+    }
+
+    private void saveChunk(List<DepositDTO> depositDTOs, List<Integer> indexes, List<BulkItemResultDTO> results) {
+        List<DepositDTO> chunk = new ArrayList<>(indexes.size());
+        indexes.forEach(index -> chunk.add(depositDTOs.get(index)));
+        try {
+            List<Deposit> deposits = transactionTemplate.execute(status -> persist(chunk));
+            for (int i = 0; i < indexes.size(); i++) {
+                results.set(indexes.get(i), BulkItemResultDTO.created(indexes.get(i), deposits.get(i).getId()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not save a chunk of {} Deposits, retrying them one by one: {}", chunk.size(), e.getMessage());
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                List<DepositDTO> single = Collections.singletonList(chunk.get(i));
+                try {
+                    List<Deposit> deposits = transactionTemplate.execute(status -> persist(single));
+                    results.set(index, BulkItemResultDTO.created(index, deposits.get(0).getId()));
+                } catch (RuntimeException itemException) {
+                    log.warn("Could not save Deposit {} of bulk request: {}", index, itemException.getMessage());
+                    results.set(index, failure(index, itemException));
+                }
+            }
+        }
+    }
+
+    /**
+     * The result of a deposit of a bulk request that could not be saved: a duplicate booking code is the error of
+     * the deposit, any other constraint conflicts with the deposits already saved.
+     */
+    private static BulkItemResultDTO failure(int index, RuntimeException exception) {
+        int violationIndex = ExceptionUtils.indexOfType(exception, ConstraintViolationException.class);
+        if (violationIndex < 0) {
+            return BulkItemResultDTO.failed(index, 500, "persistencefailed");
+        }
+        String constraintName = ((ConstraintViolationException) ExceptionUtils.getThrowableList(exception).get(violationIndex))
+            .getConstraintName();
+        if (constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(BOOKING_CODE_CONSTRAINT)) {
+            return BulkItemResultDTO.failed(index, 400, "bookingcodeexists");
+        }
+        return BulkItemResultDTO.failed(index, 409, "constraintviolation");
+    }
+
+    /**
+     * Move a deposit to a new status, if it still has the expected one.
+     * <p>
+     * The status is changed by a single conditional update, so concurrent callbacks of the same payment can't
+     * both apply, and no row lock is held beyond that statement. The deposit is read beforehand, usually from the
+     * second level cache, to skip the update when its status is already a different one and to know which user's
+     * deposits to evict.
+     *
+     * @param id the id of the entity
+     * @param expectedStatus the status the entity must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the entity was updated, false if it doesn't exist or if its status was not the expected one
+     * @throws IllegalArgumentException if the lifecycle of the deposits doesn't allow the transition
+     */
+    @Override
+    public boolean transition(Long id, DepositStatus expectedStatus, DepositStatus status, String gatewayTransactionNo) {
+        log.debug("Request to move Deposit {} from {} to {}", id, expectedStatus, status);
+        return transition(id, expectedStatus, status,
+            () -> depositRepository.transition(id, expectedStatus, status, gatewayTransactionNo));
+    }
+
+    /**
+     * Complete a payment of a deposit, moving it to a new status if it still has the expected one and if the payment
+     * is still its last one.
+     * <p>
+     * The payment is checked by the same conditional update as the status, so the result of a payment superseded by
+     * a newer one is never applied, even when the newer one is initiated concurrently.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @param expectedStatus the status the entity must have
+     * @param status the new status
+     * @param gatewayTransactionNo the number given to the payment by the gateway, or null to keep the current one
+     * @return true if the entity was updated, false if it doesn't exist, if its status was not the expected one or if
+     * the payment was superseded
+     * @throws IllegalArgumentException if the lifecycle of the deposits doesn't allow the transition
+     */
+    @Override
+    public boolean completePayment(Long id, String merchantId, String merchTxnRef, DepositStatus expectedStatus,
+                                   DepositStatus status, String gatewayTransactionNo) {
+        log.debug("Request to move Deposit {} from {} to {} by the payment {}", id, expectedStatus, status, merchTxnRef);
+        return transition(id, expectedStatus, status, () ->
+            depositRepository.transitionPayment(id, merchantId, merchTxnRef, expectedStatus, status, gatewayTransactionNo));
+    }
+
+    private boolean transition(Long id, DepositStatus expectedStatus, DepositStatus status, BooleanSupplier update) {
+        if (!expectedStatus.canTransitionTo(status)) {
+            throw new IllegalArgumentException("A deposit can't move from " + expectedStatus + " to " + status);
+        }
+        Deposit deposit = depositRepository.findOne(id);
+        if (deposit == null || deposit.getStatus() != expectedStatus || !update.getAsBoolean()) {
+            return false;
+        }
+        // The loaded deposit is stale now
+        entityManager.detach(deposit);
+        evictDeposit(id);
+        depositCache.invalidate(id);
+        evictUserDeposits(deposit.getUserId());
+        searchOutboxEventRepository.save(new SearchOutboxEvent().depositId(id).operation(SearchOperation.INDEX));
+        return true;
+    }
+
+    /**
+     * Check that a payment is the last one initiated for a deposit, with the same merchant.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return true if the payment is the last one of the entity
      */
     @Override
     @Transactional(readOnly = true)
-    public List<DepositDTO> findAll() {
-        log.debug("Request to get all Deposits");
-        return depositRepository.findAll().stream()
-            .map(depositMapper::toDto)
-            .collect(Collectors.toCollection(LinkedList::new));
+    public boolean isCurrentPayment(Long id, String merchantId, String merchTxnRef) {
+        return depositRepository.isCurrentPayment(id, merchantId, merchTxnRef);
+    }
+
+    /**
+     * Record a payment initiated for a PENDING deposit, so that it can be polled from the gateway.
+     *
+     * @param id the id of the entity
+     * @param merchantId the id of the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return true if the payment was recorded, false if the entity doesn't exist or is no longer PENDING
+     */
+    @Override
+    public boolean startPayment(Long id, String merchantId, String merchTxnRef) {
+        log.debug("Request to start the payment {} of Deposit {} with the merchant {}", merchTxnRef, id, merchantId);
+        return depositRepository.startPayment(id, merchantId, merchTxnRef, Instant.now());
+    }
+
+    /**
+     * Evict a deposit updated by SQL from the second level cache, right away and again once the transaction has
+     * committed, so that it isn't cached back with its previous state in the meantime.
+     */
+    private void evictDeposit(Long id) {
+        javax.persistence.Cache secondLevelCache = entityManager.getEntityManagerFactory().getCache();
+        secondLevelCache.evict(Deposit.class, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    secondLevelCache.evict(Deposit.class, id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Persist new deposits and their search outbox events as JDBC batches.
+     */
+    private List<Deposit> persist(List<DepositDTO> depositDTOs) {
+        List<Deposit> deposits = depositMapper.toEntity(depositDTOs);
+        deposits.forEach(entityManager::persist);
+        deposits.forEach(deposit ->
+            entityManager.persist(new SearchOutboxEvent().depositId(deposit.getId()).operation(SearchOperation.INDEX)));
+        deposits.stream().map(Deposit::getUserId).distinct().forEach(this::evictUserDeposits);
+        deposits.forEach(deposit -> depositCache.invalidate(deposit.getId()));
+        entityManager.flush();
+        entityManager.clear();
+        return deposits;
+    }
+
+    /**
+     * Get a slice of the deposits, ordered by id, starting right after the given id.
+     *
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @return the slice of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<DepositDTO> findAllAfter(Long afterId, int size) {
+        log.debug("Request to get a slice of Deposits after id {}", afterId);
+        return depositRepository.findAllByIdGreaterThan(afterId == null ? Long.MIN_VALUE : afterId,
+            new PageRequest(0, size, Sort.Direction.ASC, "id"))
+            .map(depositMapper::toDto);
+    }
+
+    /**
+     * Get a cheap estimate of the number of deposits.
+     *
+     * @return the estimated number of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long countApproximately() {
+        log.debug("Request to count Deposits approximately");
+        return depositRepository.approximateCount();
     }
 
     /**
      * Get one deposit by id.
+     * <p>
+     * Outside of a transaction, the deposit is read from the "depositDtos" cache, without any transaction, entity or
+     * mapping, and unknown ids are cached as well for a short time. Concurrent misses of the same id wait for a
+     * single load. An entry is loaded again a bit before it expires, with a probability growing as it nears its
+     * expiry and with the time its load took, so that a hot deposit is refreshed by one request rather than
+     * missed by all the requests at once. A load is cached only if the entry was not invalidated in the meantime,
+     * so that a load which read the deposit before a transition doesn't cache its previous state after the
+     * transition is committed. Within a transaction, the deposit is read as the transaction sees it.
      *
      * @param id the id of the entity
      * @return the entity
      */
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public DepositDTO findOne(Long id) {
         log.debug("Request to get Deposit : {}", id);
-        Deposit deposit = depositRepository.findOne(id);
-        return depositMapper.toDto(deposit);
+        if (!applicationProperties.getDepositCache().isEnabled() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return depositMapper.toDto(depositRepository.findOne(id));
+        }
+        Object entry = depositCache.getEntry(id);
+        CachedDepositDTO cached = GuardedCache.valueOf(entry, CachedDepositDTO.class);
+        long now = System.currentTimeMillis();
+        if (cached == null || cached.getExpiresAt() <= now) {
+            cacheMisses.mark();
+            return loadDeposit(id, entry, null).getDeposit();
+        }
+        if (refreshEarly(cached, now)) {
+            cacheEarlyRefreshes.mark();
+            return loadDeposit(id, entry, cached).getDeposit();
+        }
+        cacheHits.mark();
+        return cached.getDeposit();
+    }
+
+    /**
+     * Whether to load an entry before it expires, following the "XFetch" probabilistic early expiration: the
+     * entry is loaded again once now - loadMillis * beta * ln(random) reaches its expiry.
+     */
+    private boolean refreshEarly(CachedDepositDTO cached, long now) {
+        double beta = applicationProperties.getDepositCache().getEarlyRefreshBeta();
+        double random = ThreadLocalRandom.current().nextDouble();
+        return now - Math.max(1, cached.getLoadMillis()) * beta * Math.log(random) >= cached.getExpiresAt();
+    }
+
+    /**
+     * Load a deposit into the cache, unless it is already being loaded, in which case the current entry is
+     * returned if it has not expired, else the load in progress is awaited. The load replaces the entry read
+     * before it only if it is still there.
+     */
+    private CachedDepositDTO loadDeposit(Long id, Object entry, CachedDepositDTO current) {
+        CompletableFuture<CachedDepositDTO> load = new CompletableFuture<>();
+        CompletableFuture<CachedDepositDTO> inProgress = depositLoads.putIfAbsent(id, load);
+        if (inProgress != null) {
+            if (current != null) {
+                return current;
+            }
+            try {
+                return inProgress.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            DepositDTO deposit = readOnlyTransactionTemplate.execute(status -> depositMapper.toDto(depositRepository.findOne(id)));
+            long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            ApplicationProperties.DepositCache properties = applicationProperties.getDepositCache();
+            long timeToLive = TimeUnit.SECONDS.toMillis(deposit == null ?
+                properties.getNegativeTimeToLiveSeconds() : properties.getTimeToLiveSeconds());
+            CachedDepositDTO cached = new CachedDepositDTO(deposit, System.currentTimeMillis() + timeToLive, loadMillis);
+            depositCache.put(id, entry, cached);
+            load.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            depositLoads.remove(id, load);
+        }
+    }
+
+    /**
+     * Load deposits into the second level cache of the entities and into the cache of findOne. The expiries of the
+     * entries are spread over the second half of their time to live, so that the deposits loaded together are not
+     * all missed together; the entries already cached are kept, and so are the entries invalidated while the
+     * deposits were read.
+     *
+     * @param ids the ids of the entities
+     * @return the number of entities loaded
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public int preload(List<Long> ids) {
+        log.debug("Request to preload {} Deposits", ids.size());
+        Map<Long, Object> entries = new HashMap<>();
+        if (applicationProperties.getDepositCache().isEnabled()) {
+            ids.forEach(id -> entries.put(id, depositCache.getEntry(id)));
+        }
+        long start = System.nanoTime();
+        List<Deposit> deposits = readOnlyTransactionTemplate.execute(status -> depositRepository.findAll(ids));
+        if (applicationProperties.getDepositCache().isEnabled()) {
+            long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / Math.max(1, deposits.size());
+            long timeToLive = TimeUnit.SECONDS.toMillis(applicationProperties.getDepositCache().getTimeToLiveSeconds());
+            long now = System.currentTimeMillis();
+            for (Deposit deposit : deposits) {
+                Object entry = entries.get(deposit.getId());
+                if (entry instanceof CachedDepositDTO) {
+                    continue;
+                }
+                long expiresAt = now + timeToLive / 2 + ThreadLocalRandom.current().nextLong(timeToLive / 2 + 1);
+                depositCache.put(deposit.getId(), entry, new CachedDepositDTO(depositMapper.toDto(deposit), expiresAt, loadMillis));
+            }
+        }
+        return deposits.size();
+    }
+
+    /**
+     * Get the deposit with the given booking code.
+     *
+     * @param bookingCode the booking code of the entity
+     * @return the entity, if any
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<DepositDTO> findOneByBookingCode(String bookingCode) {
+        log.debug("Request to get Deposit by booking code : {}", bookingCode);
+        return depositRepository.findByBookingCode(bookingCode).map(depositMapper::toDto);
+    }
+
+    /**
+     * Get a page of the deposits of a user.
+     *
+     * @param userId the id of the user
+     * @param pageable the pagination information
+     * @return the page of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DepositDTO> findAllByUserId(Long userId, Pageable pageable) {
+        log.debug("Request to get a page of the Deposits of user {}", userId);
+        return depositRepository.findAllByUserId(userId, pageable).map(depositMapper::toDto);
+    }
+
+    /**
+     * Get a slice of the deposits of a user, ordered by id, starting right after the given id.
+     * <p>
+     * Deposits are projected to DTOs straight from the database. The first {@value #CACHED_USER_DEPOSITS} deposits
+     * of each user are cached, so first pages of up to that size are served from the cache. They are cached only
+     * if the deposits of the user were not invalidated while they were read.
+     *
+     * @param userId the id of the user
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @return the slice of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public Slice<DepositDTO> findAllByUserIdAfter(Long userId, Long afterId, int size) {
+        log.debug("Request to get a slice of the Deposits of user {} after id {}", userId, afterId);
+        if (afterId != null || size > CACHED_USER_DEPOSITS) {
+            return depositRepository.findAllDtosByUserIdAndIdGreaterThan(userId, afterId == null ? Long.MIN_VALUE : afterId,
+                new PageRequest(0, size));
+        }
+        Object entry = depositsByUserCache.getEntry(userId);
+        ArrayList<DepositDTO> firstDeposits = GuardedCache.valueOf(entry, ArrayList.class);
+        if (firstDeposits == null) {
+            // One more deposit than cached tells whether there are more
+            firstDeposits = new ArrayList<>(depositRepository.findAllDtosByUserIdAndIdGreaterThan(userId, Long.MIN_VALUE,
+                new PageRequest(0, CACHED_USER_DEPOSITS + 1)).getContent());
+            depositsByUserCache.put(userId, entry, firstDeposits);
+        }
+        return new SliceImpl<>(new ArrayList<>(firstDeposits.subList(0, Math.min(size, firstDeposits.size()))),
+            new PageRequest(0, size), firstDeposits.size() > size);
+    }
+
+    private void evictUserDeposits(Long userId) {
+        if (userId != null) {
+            depositsByUserCache.invalidate(userId);
+        }
     }
 
     /**
@@ -91,23 +598,108 @@ public class DepositServiceImpl implements DepositService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Deposit : {}", id);
+        Deposit deposit = depositRepository.findOne(id);
+        if (deposit != null) {
+            evictUserDeposits(deposit.getUserId());
+        }
         depositRepository.delete(id);
-        depositSearchRepository.delete(id);
+        depositCache.invalidate(id);
+        searchOutboxEventRepository.save(new SearchOutboxEvent().depositId(id).operation(SearchOperation.DELETE));
+    }
+
+    /**
+     * Search for a page of the deposits corresponding to the query.
+     *
+     * @param query the query of the search
+     * @param pageable the pagination information
+     * @param fields the fields to fetch from the index, or null to fetch all of them
+     * @return the page of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DepositDTO> search(String query, Pageable pageable, String[] fields) {
+        log.debug("Request to search for a page of Deposits for query {}", query);
+        NativeSearchQueryBuilder searchQuery = new NativeSearchQueryBuilder()
+            .withQuery(queryStringQuery(query))
+            .withPageable(pageable);
+        if (fields != null) {
+            searchQuery.withSourceFilter(sourceFilter(fields));
+        }
+        return depositSearchRepository.search(searchQuery.build()).map(depositMapper::toDto);
     }
 
     /**
-     * Search for the deposit corresponding to the query.
+     * Search for the deposits corresponding to the query, ordered by id, starting right after the given id.
+     * <p>
+     * Elasticsearch 2.x has no "search_after", so the slice is filtered on the id range instead of skipping
+     * the previous hits.
      *
      * @param query the query of the search
-     * @return the list of entities
+     * @param afterId the id of the last deposit of the previous slice, or null to get the first slice
+     * @param size the maximum number of deposits in the slice
+     * @param fields the fields to fetch from the index, or null to fetch all of them
+     * @return the slice of entities
      */
     @Override
     @Transactional(readOnly = true)
-    public List<DepositDTO> search(String query) {
-        log.debug("Request to search Deposits for query {}", query);
-        return StreamSupport
-            .stream(depositSearchRepository.search(queryStringQuery(query)).spliterator(), false)
-            .map(depositMapper::toDto)
-            .collect(Collectors.toList());
+    public Slice<DepositDTO> searchAfter(String query, Long afterId, int size, String[] fields) {
+        log.debug("Request to search for a slice of Deposits for query {} after id {}", query, afterId);
+        BoolQueryBuilder boolQuery = boolQuery().must(queryStringQuery(query));
+        if (afterId != null) {
+            boolQuery.filter(rangeQuery("id").gt(afterId));
+        }
+        NativeSearchQueryBuilder searchQuery = new NativeSearchQueryBuilder()
+            .withQuery(boolQuery)
+            .withSort(SortBuilders.fieldSort("id").order(SortOrder.ASC))
+            .withPageable(new PageRequest(0, size));
+        if (fields != null) {
+            searchQuery.withSourceFilter(sourceFilter(fields));
+        }
+        return depositSearchRepository.search(searchQuery.build()).map(depositMapper::toDto);
+    }
+
+    /**
+     * Get a page of the deposits matching all the given exact values, null values being ignored.
+     * <p>
+     * The values are matched by term queries in filter context, which are not scored and which Elasticsearch can
+     * cache; without a sort, the deposits are ordered by id.
+     *
+     * @param bookingCode the booking code of the deposits
+     * @param userId the user id of the deposits
+     * @param currencyCode the currency code of the deposits
+     * @param pageable the pagination information
+     * @return the page of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DepositDTO> filter(String bookingCode, Long userId, String currencyCode, Pageable pageable) {
+        log.debug("Request to filter Deposits by bookingCode {}, userId {} and currencyCode {}", bookingCode, userId, currencyCode);
+        BoolQueryBuilder filter = boolQuery();
+        if (bookingCode != null) {
+            filter.filter(termQuery("bookingCode", bookingCode));
+        }
+        if (userId != null) {
+            filter.filter(termQuery("userId", userId));
+        }
+        if (currencyCode != null) {
+            filter.filter(termQuery("currencyCode", currencyCode));
+        }
+        if (pageable.getSort() == null) {
+            pageable = new PageRequest(pageable.getPageNumber(), pageable.getPageSize(), Sort.Direction.ASC, "id");
+        }
+        SearchQuery searchQuery = new NativeSearchQueryBuilder()
+            .withQuery(constantScoreQuery(filter))
+            .withPageable(pageable)
+            .build();
+        return depositSearchRepository.search(searchQuery).map(depositMapper::toDto);
+    }
+
+    /**
+     * Fetch only the given fields from the index, and always the id which is needed to map the hits.
+     */
+    private FetchSourceFilter sourceFilter(String[] fields) {
+        String[] includes = Arrays.copyOf(fields, fields.length + 1);
+        includes[fields.length] = "id";
+        return new FetchSourceFilter(includes, null);
     }
 }
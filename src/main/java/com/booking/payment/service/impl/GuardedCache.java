@@ -0,0 +1,87 @@
+package com.booking.payment.service.impl;
+
+import com.booking.payment.service.dto.CacheTombstone;
+
+import org.springframework.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A cache whose values, loaded from the database, never overwrite a later invalidation.
+ * <p>
+ * An invalidation replaces the entry with a {@link CacheTombstone} rather than removing it, once the transaction
+ * has committed. A loader reads the entry before reading the database, and stores its value only if the entry is
+ * still the one it read, by an atomic putIfAbsent or replace on the native map of the cache: a load which read the
+ * database before a commit and stores its value after the invalidation of that commit fails, instead of keeping
+ * the previous state cached for the whole time to live.
+ */
+final class GuardedCache {
+
+    private final ConcurrentMap<Object, Object> entries;
+
+    @SuppressWarnings("unchecked")
+    GuardedCache(Cache cache) {
+        if (!(cache.getNativeCache() instanceof ConcurrentMap)) {
+            throw new IllegalArgumentException("The cache " + cache.getName() + " has no concurrent map");
+        }
+        this.entries = (ConcurrentMap<Object, Object>) cache.getNativeCache();
+    }
+
+    /**
+     * Get the entry of a key, to be given back to {@link #put(Object, Object, Object)} once its value is loaded.
+     *
+     * @param key the key
+     * @return the value, the tombstone, or null if the key has no entry
+     */
+    Object getEntry(Object key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Get the value of an entry.
+     *
+     * @param entry the entry
+     * @param type the type of the values
+     * @return the value, or null if the entry is missing or invalidated
+     */
+    static <T> T valueOf(Object entry, Class<T> type) {
+        return type.isInstance(entry) ? type.cast(entry) : null;
+    }
+
+    /**
+     * Store a value, unless the entry of its key changed since it was read.
+     *
+     * @param key the key
+     * @param entry the entry read before loading the value
+     * @param value the value
+     * @return true if the value was stored
+     */
+    boolean put(Object key, Object entry, Object value) {
+        return entry == null ? entries.putIfAbsent(key, value) == null : entries.replace(key, entry, value);
+    }
+
+    /**
+     * Invalidate the entry of a key, once the current transaction has committed if there is one, else right away.
+     *
+     * @param key the key
+     */
+    void invalidate(Object key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    bury(key);
+                }
+            });
+        } else {
+            bury(key);
+        }
+    }
+
+    private void bury(Object key) {
+        entries.put(key, new CacheTombstone(ThreadLocalRandom.current().nextLong()));
+    }
+}
@@ -11,7 +11,13 @@ import org.mapstruct.*;
 @Mapper(componentModel = "spring", uses = {})
 public interface DepositMapper extends EntityMapper<DepositDTO, Deposit> {
 
-
+    /**
+     * The status and the gateway transaction of a deposit are not set by its clients, but by the gateway callbacks.
+     */
+    @Override
+    @Mapping(target = "status", ignore = true)
+    @Mapping(target = "gatewayTransactionNo", ignore = true)
+    Deposit toEntity(DepositDTO depositDTO);
 
     default Deposit fromId(Long id) {
         if (id == null) {
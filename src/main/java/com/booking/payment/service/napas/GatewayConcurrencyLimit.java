@@ -0,0 +1,116 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adaptive limit of the calls to the NAPAS gateway in flight, following the AIMD algorithm.
+ * <p>
+ * While the calls are about as fast as usual the limit grows by one per call, as long as the limit is actually
+ * used; when a call is slower than the latency tolerance times the usual latency, times out or fails, it is
+ * multiplied by the backoff ratio. A slowing gateway so quickly gets fewer concurrent calls, and the calls beyond
+ * the limit are refused right away instead of waiting on it.
+ * <p>
+ * The usual latency is the lowest latency seen, which slowly drifts up towards the latencies of the calls so
+ * that a lasting change of the gateway eventually becomes the new usual latency.
+ */
+@Component
+public class GatewayConcurrencyLimit {
+
+    /**
+     * The weight of each call in the drift of the usual latency.
+     */
+    private static final double BASELINE_DRIFT = 0.001;
+
+    private final Logger log = LoggerFactory.getLogger(GatewayConcurrencyLimit.class);
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double latencyTolerance;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double baselineNanos = Double.NaN;
+
+    public GatewayConcurrencyLimit(NapasGatewayProperties properties) {
+        NapasGatewayProperties.Limit limitProperties = properties.getLimit();
+        this.minLimit = limitProperties.getMinLimit();
+        this.maxLimit = limitProperties.getMaxLimit();
+        this.backoffRatio = limitProperties.getBackoffRatio();
+        this.latencyTolerance = limitProperties.getLatencyTolerance();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, limitProperties.getInitialLimit()));
+    }
+
+    /**
+     * Take a slot for a call, if the limit allows it.
+     *
+     * @return true if the call can be sent, and must then be reported to one of the on* methods
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Release the slot of a call that completed.
+     *
+     * @param latencyNanos the latency of the call
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        boolean saturated = inFlight * 2 >= limit;
+        inFlight--;
+        if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+        }
+        if (latencyNanos > baselineNanos * latencyTolerance) {
+            decrease();
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    /**
+     * Release the slot of a call that timed out or failed, which is taken as a sign of overload.
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        decrease();
+    }
+
+    /**
+     * Release the slot of a call that never reached the gateway, which says nothing of its latency.
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease() {
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) limit < (int) previous) {
+            log.debug("Concurrency limit of the NAPAS gateway decreased to {}", (int) limit);
+        }
+    }
+}
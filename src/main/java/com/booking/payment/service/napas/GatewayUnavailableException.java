@@ -0,0 +1,18 @@
+package com.booking.payment.service.napas;
+
+/**
+ * Thrown when a call to the NAPAS gateway is refused without being sent, because the concurrency limit of the
+ * gateway is reached, its circuit breaker is open or its thread pool is full.
+ */
+public class GatewayUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+
+    public GatewayUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,60 @@
+package com.booking.payment.service.napas;
+
+import java.util.Currency;
+
+/**
+ * Conversion of the amounts of the deposits, in minor units of their currency, to the hundredths of the currency
+ * unit in which the NAPAS gateway takes and reports them: a deposit of 150000 VND, a currency without minor unit,
+ * is paid as a vpc_Amount of 15000000.
+ */
+public final class NapasAmounts {
+
+    private NapasAmounts() {
+    }
+
+    /**
+     * Convert the amount of a deposit to the amount of the gateway.
+     *
+     * @param currencyCode the ISO 4217 code of the currency of the deposit
+     * @param amount the amount, in minor units of the currency
+     * @return the amount, in hundredths of the currency unit
+     * @throws IllegalArgumentException if the currency is unknown, or has more than two decimals
+     */
+    public static long toGatewayAmount(String currencyCode, long amount) {
+        int fractionDigits = currency(currencyCode).getDefaultFractionDigits();
+        if (fractionDigits < 0 || fractionDigits > 2) {
+            throw new IllegalArgumentException("The NAPAS gateway takes no amount in " + currencyCode);
+        }
+        return fractionDigits == 2 ? amount : Math.multiplyExact(amount, fractionDigits == 1 ? 10L : 100L);
+    }
+
+    /**
+     * Check that an amount reported by the gateway is the amount of a deposit.
+     *
+     * @param gatewayAmount the amount reported, in hundredths of the currency unit, if any
+     * @param currencyCode the ISO 4217 code of the currency of the deposit
+     * @param amount the amount of the deposit, in minor units of the currency, if any
+     * @return false if the amounts differ, or either is unknown
+     */
+    public static boolean isAmountOf(Long gatewayAmount, String currencyCode, Long amount) {
+        if (gatewayAmount == null || amount == null) {
+            return false;
+        }
+        try {
+            return gatewayAmount == toGatewayAmount(currencyCode, amount);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static Currency currency(String currencyCode) {
+        if (currencyCode == null) {
+            throw new IllegalArgumentException("The currency is missing");
+        }
+        try {
+            return Currency.getInstance(currencyCode);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown currency " + currencyCode, e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.DepositService;
+import com.booking.payment.service.dto.DepositDTO;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service handling the return URL and IPN callbacks of the NAPAS gateway, which complete the payments of the
+ * deposits.
+ * <p>
+ * The same payment is usually reported twice, by the browser of the customer and by the IPN, and may be reported
+ * again when the gateway retries: only the first callback moves the deposit out of PENDING, the others leave it
+ * as it is. A callback for another amount than the amount of the deposit is rejected, and leaves the deposit as
+ * it is too. So is a callback of a payment superseded by a later one, or of another merchant than the one of the
+ * payment: the result of an abandoned payment must not complete the deposit while the customer is paying again.
+ */
+@Service
+@Transactional
+public class NapasCallbackService {
+
+    private final Logger log = LoggerFactory.getLogger(NapasCallbackService.class);
+
+    private final DepositService depositService;
+
+    private final NapasMerchantRoutes merchantRoutes;
+
+    public NapasCallbackService(DepositService depositService, NapasMerchantRoutes merchantRoutes) {
+        this.depositService = depositService;
+        this.merchantRoutes = merchantRoutes;
+    }
+
+    /**
+     * Check that the parameters of a callback are signed by the gateway, for the merchant they name.
+     *
+     * @param parameters the parameters of the callback request
+     * @return true if the parameters are authentic
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public boolean verify(Map<String, String[]> parameters) {
+        if (!merchantRoutes.isConfigured()) {
+            throw new IllegalStateException("The NAPAS gateway is not configured");
+        }
+        NapasMerchant merchant = merchantRoutes.getMerchant(
+            NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_MERCHANT));
+        return merchant != null && merchant.getVerifier().verify(parameters);
+    }
+
+    /**
+     * Complete the payment of a deposit with the result of a verified callback.
+     *
+     * @param parameters the parameters of the callback request
+     * @return the deposit, in its final status, or as it is if the payment is not its last one, or empty if the
+     * callback is not for an existing deposit
+     * @throws BadRequestAlertException if the amount paid is not the amount of the deposit
+     */
+    public Optional<DepositDTO> complete(Map<String, String[]> parameters) {
+        String merchTxnRef = NapasCallbackVerifier.parameter(parameters, NapasCallbackVerifier.VPC_MERCH_TXN_REF);
+        Long depositId = depositId(merchTxnRef);
+        if (depositId == null) {
+            log.warn("Ignoring the NAPAS callback of unknown payment {}", merchTxnRef);
+            return Optional.empty();
+        }
+        DepositDTO deposit = depositService.findOne(depositId);
+        if (deposit == null) {
+            return Optional.empty();
+        }
+        String merchantId = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_MERCHANT);
+        if (!depositService.isCurrentPayment(depositId, merchantId, merchTxnRef)) {
+            log.warn("Ignoring the NAPAS callback of payment {} of merchant {}, not the last payment of Deposit {}",
+                merchTxnRef, merchantId, depositId);
+            return Optional.of(deposit);
+        }
+        String amount = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_AMOUNT);
+        if (!NapasAmounts.isAmountOf(parseAmount(amount), deposit.getCurrencyCode(), deposit.getAmount())) {
+            log.error("Rejected the NAPAS callback of payment {} for {}, Deposit {} is of {} {}", merchTxnRef, amount,
+                depositId, deposit.getAmount(), deposit.getCurrencyCode());
+            throw new BadRequestAlertException("The amount paid differs from the amount of the deposit", "payment",
+                "amountmismatch");
+        }
+        String responseCode = NapasCallbackVerifier.parameter(parameters, NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE);
+        String transactionNo = NapasCallbackVerifier.parameter(parameters, NapasCallbackVerifier.VPC_TRANSACTION_NO);
+        DepositStatus status = NapasCallbackVerifier.APPROVED.equals(responseCode) ? DepositStatus.SUCCESS : DepositStatus.FAILED;
+        DepositStatus currentStatus = deposit.getStatus();
+        // An authorized payment is completed like a pending one, by the result of its capture
+        if ((currentStatus == DepositStatus.PENDING || currentStatus == DepositStatus.AUTHORIZED) &&
+            depositService.completePayment(depositId, merchantId, merchTxnRef, currentStatus, status, transactionNo)) {
+            log.info("Payment {} of Deposit {} completed with response code {}", merchTxnRef, depositId, responseCode);
+            return Optional.ofNullable(depositService.findOne(depositId));
+        }
+        log.debug("Payment {} of Deposit {} already completed", merchTxnRef, depositId);
+        return Optional.of(deposit);
+    }
+
+    private static Long parseAmount(String amount) {
+        try {
+            return amount == null ? null : Long.valueOf(amount);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the id of a deposit from the reference of one of its payments, "depositId-millis".
+     */
+    public static Long depositId(String merchTxnRef) {
+        if (merchTxnRef == null) {
+            return null;
+        }
+        long id = 0;
+        int i = 0;
+        for (; i < merchTxnRef.length() && merchTxnRef.charAt(i) != '-'; i++) {
+            char c = merchTxnRef.charAt(i);
+            if (c < '0' || c > '9' || i >= 18) {
+                return null;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return i == 0 ? null : id;
+    }
+}
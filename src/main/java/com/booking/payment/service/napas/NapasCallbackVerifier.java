@@ -0,0 +1,110 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Verifier of the secure hash of the return URL and IPN callbacks of the NAPAS gateway.
+ * <p>
+ * The hash covers the non empty "vpc_" and "user_" parameters, except the hash itself and its type. Their names
+ * are sorted in an array reused by each thread, and the canonical string is written in a reused buffer, so that
+ * a verification allocates nothing per parameter.
+ */
+public final class NapasCallbackVerifier {
+
+    public static final String VPC_MERCH_TXN_REF = NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF;
+
+    public static final String VPC_TXN_RESPONSE_CODE = "vpc_TxnResponseCode";
+
+    public static final String VPC_TRANSACTION_NO = "vpc_TransactionNo";
+
+    /**
+     * The vpc_TxnResponseCode of an approved transaction.
+     */
+    public static final String APPROVED = "0";
+
+    private final String merchantId;
+
+    private final VpcSecureHash secureHash;
+
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    public NapasCallbackVerifier(NapasGatewayProperties properties) {
+        this(properties.getMerchantId(), new VpcSecureHash(properties.getSecureHash()));
+    }
+
+    public NapasCallbackVerifier(String merchantId, VpcSecureHash secureHash) {
+        this.merchantId = merchantId;
+        this.secureHash = secureHash;
+    }
+
+    /**
+     * Check that the parameters of a callback are signed by the gateway, for this merchant.
+     *
+     * @param parameters the parameters of the callback request
+     * @return true if the parameters are authentic
+     */
+    public boolean verify(Map<String, String[]> parameters) {
+        if (!merchantId.equals(parameter(parameters, NapasPaymentUrlBuilder.VPC_MERCHANT))) {
+            return false;
+        }
+        State current = state.get();
+        String[] names = current.names;
+        int count = 0;
+        for (Map.Entry<String, String[]> entry : parameters.entrySet()) {
+            String name = entry.getKey();
+            if (isSigned(name) && !isEmpty(entry.getValue())) {
+                if (count == names.length) {
+                    names = current.names = Arrays.copyOf(names, count * 2);
+                }
+                names[count++] = name;
+            }
+        }
+        // Sorting that few names is an insertion sort, in place
+        Arrays.sort(names, 0, count);
+        StringBuilder canonical = current.canonical;
+        canonical.setLength(0);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                canonical.append('&');
+            }
+            canonical.append(names[i]).append('=').append(parameters.get(names[i])[0]);
+        }
+        // The names of the request are not kept by the thread
+        Arrays.fill(names, 0, count, null);
+        return secureHash.verify(canonical, parameter(parameters, NapasPaymentUrlBuilder.VPC_SECURE_HASH));
+    }
+
+    /**
+     * Get the first value of a parameter.
+     *
+     * @param parameters the parameters of a callback request
+     * @param name the name of the parameter
+     * @return the value, or null if there is none
+     */
+    public static String parameter(Map<String, String[]> parameters, String name) {
+        String[] values = parameters.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    private static boolean isSigned(String name) {
+        return (name.startsWith("vpc_") || name.startsWith("user_")) &&
+            !name.equals(NapasPaymentUrlBuilder.VPC_SECURE_HASH) && !name.equals(NapasPaymentUrlBuilder.VPC_SECURE_HASH_TYPE);
+    }
+
+    private static boolean isEmpty(String[] values) {
+        return values == null || values.length == 0 || values[0] == null || values[0].isEmpty();
+    }
+
+    /**
+     * The buffers of a thread.
+     */
+    private static final class State {
+
+        private String[] names = new String[32];
+
+        private final StringBuilder canonical = new StringBuilder(1024);
+    }
+}
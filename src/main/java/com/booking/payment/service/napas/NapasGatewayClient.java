@@ -0,0 +1,359 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.service.dto.GatewayTransactionDTO;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.HystrixThreadPoolMetrics;
+import com.netflix.hystrix.HystrixThreadPoolProperties;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Client of the back-office API of the NAPAS gateway, to query the result of a payment (QueryDR) and to refund it.
+ * <p>
+ * Calls go through a pool of keep-alive connections, each with its own connect and read timeouts, and run as
+ * Hystrix commands on the dedicated "NapasGateway" thread pool: the results are {@link CompletableFuture}s, so the
+ * callers, like the Undertow workers, are never blocked by the gateway, and a slow gateway can only saturate its
+ * own pool. The connection pool, the thread pool and the latency of the calls are reported as metrics.
+ * <p>
+ * In front of the pool, the {@link GatewayConcurrencyLimit} adapts the number of calls in flight to the latency
+ * of the gateway, and the circuit breaker of the commands stops the calls while the gateway keeps failing: the
+ * calls they refuse fail right away with a {@link GatewayUnavailableException}.
+ */
+@Component
+public class NapasGatewayClient {
+
+    public static final String COMMAND_QUERY_DR = "queryDR";
+
+    public static final String COMMAND_REFUND = "refund";
+
+    static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("NapasGateway");
+
+    static final HystrixThreadPoolKey THREAD_POOL_KEY = HystrixThreadPoolKey.Factory.asKey("NapasGateway");
+
+    private final Logger log = LoggerFactory.getLogger(NapasGatewayClient.class);
+
+    private final NapasGatewayProperties properties;
+
+    private final NapasMerchantRoutes merchantRoutes;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpClient httpClient;
+
+    private final RequestConfig requestConfig;
+
+    private final HystrixCommand.Setter queryDrSetter;
+
+    private final HystrixCommand.Setter refundSetter;
+
+    private final Timer queryDrTimer;
+
+    private final Timer refundTimer;
+
+    private final GatewayConcurrencyLimit concurrencyLimit;
+
+    private final Meter unavailableCalls;
+
+    public NapasGatewayClient(NapasGatewayProperties properties, NapasMerchantRoutes merchantRoutes,
+                              GatewayConcurrencyLimit concurrencyLimit, MetricRegistry metricRegistry) {
+        this.properties = properties;
+        this.merchantRoutes = merchantRoutes;
+        this.concurrencyLimit = concurrencyLimit;
+        NapasGatewayProperties.Client client = properties.getClient();
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        // All the calls go to the same host
+        connectionManager.setMaxTotal(client.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(client.getMaxConnections());
+        connectionManager.setValidateAfterInactivity(client.getKeepAlive() / 2);
+        long keepAlive = client.getKeepAlive();
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy((response, context) -> {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+            .disableCookieManagement()
+            .build();
+        this.requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(client.getConnectionRequestTimeout())
+            .setConnectTimeout(client.getConnectTimeout())
+            .setSocketTimeout(client.getReadTimeout())
+            .build();
+
+        this.queryDrSetter = setter("NapasQueryDR", client, properties.getCircuitBreaker());
+        this.refundSetter = setter("NapasRefund", client, properties.getCircuitBreaker());
+        this.queryDrTimer = metricRegistry.timer(MetricRegistry.name(NapasGatewayClient.class, COMMAND_QUERY_DR));
+        this.refundTimer = metricRegistry.timer(MetricRegistry.name(NapasGatewayClient.class, COMMAND_REFUND));
+        this.unavailableCalls = metricRegistry.meter(MetricRegistry.name(NapasGatewayClient.class, "unavailable"));
+        registerGauges(metricRegistry);
+    }
+
+    /**
+     * Query the gateway for the result of a payment of the default merchant.
+     *
+     * @param merchTxnRef the reference of the payment
+     * @return the future transaction, failed with an IllegalStateException if the gateway isn't configured,
+     * with a GatewayUnavailableException if the call was refused, or with a HystrixRuntimeException if the gateway
+     * could not be queried
+     */
+    public CompletableFuture<GatewayTransactionDTO> queryDR(String merchTxnRef) {
+        return queryDR(merchantRoutes.getDefaultMerchant(), merchTxnRef);
+    }
+
+    /**
+     * Query the gateway for the result of a payment.
+     *
+     * @param merchant the merchant of the payment
+     * @param merchTxnRef the reference of the payment
+     * @return the future transaction, failed with an IllegalStateException if the gateway isn't configured,
+     * with a GatewayUnavailableException if the call was refused, or with a HystrixRuntimeException if the gateway
+     * could not be queried
+     */
+    public CompletableFuture<GatewayTransactionDTO> queryDR(NapasMerchant merchant, String merchTxnRef) {
+        log.debug("Request to query the NAPAS transaction {}", merchTxnRef);
+        List<NameValuePair> parameters = new ArrayList<>();
+        parameters.add(new BasicNameValuePair("vpc_Command", COMMAND_QUERY_DR));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF, merchTxnRef));
+        return execute(merchant, queryDrSetter, queryDrTimer, parameters);
+    }
+
+    /**
+     * Refund a payment of the default merchant, entirely or partially.
+     *
+     * @param merchTxnRef the reference of the refund, unique for the merchant
+     * @param transactionNo the number given by the gateway to the payment
+     * @param amount the amount to refund, in hundredths of the currency unit
+     * @return the future refund transaction, failed with an IllegalStateException if the gateway isn't
+     * configured, with a GatewayUnavailableException if the call was refused, or with a HystrixRuntimeException if
+     * the refund could not be sent
+     */
+    public CompletableFuture<GatewayTransactionDTO> refund(String merchTxnRef, String transactionNo, long amount) {
+        return refund(merchantRoutes.getDefaultMerchant(), merchTxnRef, transactionNo, amount);
+    }
+
+    /**
+     * Refund a payment, entirely or partially.
+     *
+     * @param merchant the merchant of the payment
+     * @param merchTxnRef the reference of the refund, unique for the merchant
+     * @param transactionNo the number given by the gateway to the payment
+     * @param amount the amount to refund, in hundredths of the currency unit
+     * @return the future refund transaction, failed with an IllegalStateException if the gateway isn't
+     * configured, with a GatewayUnavailableException if the call was refused, or with a HystrixRuntimeException if
+     * the refund could not be sent
+     */
+    public CompletableFuture<GatewayTransactionDTO> refund(NapasMerchant merchant, String merchTxnRef, String transactionNo,
+                                                           long amount) {
+        log.debug("Request to refund {} of the NAPAS transaction {}", amount, transactionNo);
+        List<NameValuePair> parameters = new ArrayList<>();
+        parameters.add(new BasicNameValuePair("vpc_Command", COMMAND_REFUND));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF, merchTxnRef));
+        parameters.add(new BasicNameValuePair("vpc_TransNo", transactionNo));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_AMOUNT, String.valueOf(amount)));
+        return execute(merchant, refundSetter, refundTimer, parameters);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private CompletableFuture<GatewayTransactionDTO> execute(NapasMerchant merchant, HystrixCommand.Setter setter, Timer timer,
+                                                             List<NameValuePair> parameters) {
+        CompletableFuture<GatewayTransactionDTO> result = new CompletableFuture<>();
+        if (merchant == null || properties.getQueryUrl() == null) {
+            result.completeExceptionally(new IllegalStateException("The NAPAS gateway is not configured"));
+            return result;
+        }
+        HttpPost post = new HttpPost(properties.getQueryUrl());
+        post.setConfig(requestConfig);
+        post.setEntity(new UrlEncodedFormEntity(sign(merchant, parameters), StandardCharsets.UTF_8));
+
+        if (!concurrencyLimit.tryAcquire()) {
+            unavailableCalls.mark();
+            result.completeExceptionally(new GatewayUnavailableException("The concurrency limit of the NAPAS gateway is reached"));
+            return result;
+        }
+        long start = System.nanoTime();
+        new GatewayCommand(setter, timer, post)
+            .toObservable()
+            .subscribe(transaction -> {
+                concurrencyLimit.onSuccess(System.nanoTime() - start);
+                result.complete(transaction);
+            }, error -> result.completeExceptionally(onError(error)));
+        return result;
+    }
+
+    /**
+     * Release the slot of a failed call, and tell the calls that never reached the gateway from the others.
+     */
+    private Throwable onError(Throwable error) {
+        if (error instanceof HystrixRuntimeException) {
+            HystrixRuntimeException.FailureType failureType = ((HystrixRuntimeException) error).getFailureType();
+            if (failureType == HystrixRuntimeException.FailureType.SHORTCIRCUIT ||
+                failureType == HystrixRuntimeException.FailureType.REJECTED_THREAD_EXECUTION ||
+                failureType == HystrixRuntimeException.FailureType.REJECTED_SEMAPHORE_EXECUTION) {
+                concurrencyLimit.onIgnored();
+                unavailableCalls.mark();
+                return new GatewayUnavailableException(failureType == HystrixRuntimeException.FailureType.SHORTCIRCUIT ?
+                    "The circuit breaker of the NAPAS gateway is open" : "The thread pool of the NAPAS gateway is full", error);
+            }
+        }
+        concurrencyLimit.onDropped();
+        return error;
+    }
+
+    /**
+     * Add the credentials of the merchant, and the secure hash of all the parameters.
+     */
+    private List<NameValuePair> sign(NapasMerchant merchant, List<NameValuePair> parameters) {
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_VERSION, properties.getVersion()));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_ACCESS_CODE, merchant.getAccessCode()));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_MERCHANT, merchant.getMerchantId()));
+        parameters.add(new BasicNameValuePair("vpc_User", merchant.getUsername()));
+        parameters.add(new BasicNameValuePair("vpc_Password", merchant.getPassword()));
+        parameters.sort(Comparator.comparing(NameValuePair::getName));
+        StringBuilder canonical = new StringBuilder(256);
+        for (NameValuePair parameter : parameters) {
+            if (parameter.getValue() == null || parameter.getValue().isEmpty()) {
+                continue;
+            }
+            if (canonical.length() > 0) {
+                canonical.append('&');
+            }
+            canonical.append(parameter.getName()).append('=').append(parameter.getValue());
+        }
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_SECURE_HASH,
+            merchant.getSecureHash().appendHash(canonical, new StringBuilder(64)).toString()));
+        parameters.add(new BasicNameValuePair(NapasPaymentUrlBuilder.VPC_SECURE_HASH_TYPE, VpcSecureHash.TYPE));
+        return parameters;
+    }
+
+    private static GatewayTransactionDTO toTransaction(String body) {
+        Map<String, String> values = new HashMap<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(body, StandardCharsets.UTF_8)) {
+            values.put(pair.getName(), pair.getValue());
+        }
+        GatewayTransactionDTO transaction = new GatewayTransactionDTO();
+        transaction.setMerchTxnRef(values.get(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF));
+        if (values.containsKey("vpc_DRExists")) {
+            transaction.setExists("Y".equals(values.get("vpc_DRExists")));
+        }
+        transaction.setResponseCode(values.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE));
+        transaction.setTransactionNo(values.get(NapasCallbackVerifier.VPC_TRANSACTION_NO));
+        String amount = values.get(NapasPaymentUrlBuilder.VPC_AMOUNT);
+        if (amount != null && !amount.isEmpty()) {
+            transaction.setAmount(Long.valueOf(amount));
+        }
+        transaction.setMessage(values.get("vpc_Message"));
+        return transaction;
+    }
+
+    private static HystrixCommand.Setter setter(String commandKey, NapasGatewayProperties.Client client,
+                                                NapasGatewayProperties.CircuitBreaker circuitBreaker) {
+        return HystrixCommand.Setter.withGroupKey(GROUP_KEY)
+            .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey))
+            .andThreadPoolKey(THREAD_POOL_KEY)
+            .andThreadPoolPropertiesDefaults(HystrixThreadPoolProperties.Setter()
+                .withCoreSize(client.getThreads())
+                .withMaxQueueSize(client.getQueueSize())
+                .withQueueSizeRejectionThreshold(client.getQueueSize()))
+            .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                // The timeouts of the HTTP client come first, Hystrix only stops the calls that outlive all of them
+                .withExecutionTimeoutInMilliseconds(client.getConnectionRequestTimeout() + client.getConnectTimeout() +
+                    client.getReadTimeout() + 500)
+                .withCircuitBreakerRequestVolumeThreshold(circuitBreaker.getRequestVolumeThreshold())
+                .withCircuitBreakerErrorThresholdPercentage(circuitBreaker.getErrorThresholdPercentage())
+                .withCircuitBreakerSleepWindowInMilliseconds(circuitBreaker.getSleepWindow()));
+    }
+
+    private void registerGauges(MetricRegistry metricRegistry) {
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "connections", "leased"),
+            (Gauge<Integer>) () -> connectionManager.getTotalStats().getLeased());
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "connections", "available"),
+            (Gauge<Integer>) () -> connectionManager.getTotalStats().getAvailable());
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "connections", "pending"),
+            (Gauge<Integer>) () -> connectionManager.getTotalStats().getPending());
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "threads", "active"),
+            (Gauge<Integer>) () -> threadPoolMetric(HystrixThreadPoolMetrics::getCurrentActiveCount));
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "threads", "queued"),
+            (Gauge<Integer>) () -> threadPoolMetric(HystrixThreadPoolMetrics::getCurrentQueueSize));
+        metricRegistry.register(MetricRegistry.name(NapasGatewayClient.class, "threads", "rejected"),
+            (Gauge<Long>) () -> {
+                HystrixThreadPoolMetrics metrics = HystrixThreadPoolMetrics.getInstance(THREAD_POOL_KEY);
+                return metrics == null ? 0L : metrics.getRollingCountThreadsRejected();
+            });
+    }
+
+    /**
+     * The thread pool metrics only exist once a command has run.
+     */
+    private static int threadPoolMetric(Function<HystrixThreadPoolMetrics, Number> metric) {
+        HystrixThreadPoolMetrics metrics = HystrixThreadPoolMetrics.getInstance(THREAD_POOL_KEY);
+        return metrics == null ? 0 : metric.apply(metrics).intValue();
+    }
+
+    /**
+     * A call to the gateway, on the Hystrix thread pool of the gateway.
+     */
+    private final class GatewayCommand extends HystrixCommand<GatewayTransactionDTO> {
+
+        private final Timer timer;
+
+        private final HttpPost post;
+
+        GatewayCommand(Setter setter, Timer timer, HttpPost post) {
+            super(setter);
+            this.timer = timer;
+            this.post = post;
+        }
+
+        @Override
+        protected GatewayTransactionDTO run() throws Exception {
+            try (Timer.Context ignored = timer.time(); CloseableHttpResponse response = httpClient.execute(post)) {
+                // The body is always consumed, so that the connection goes back to the pool
+                String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                int status = response.getStatusLine().getStatusCode();
+                if (status != 200) {
+                    throw new IOException("The NAPAS gateway answered " + status + " to " + getCommandKey().name());
+                }
+                return toTransaction(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.Constants;
+import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.config.NapasSimulatorProperties;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A local simulator of the NAPAS gateway, to load test the whole payment flow on one box, without the sandbox.
+ * <p>
+ * It implements the payment page (vpcpay.do), which redirects at once to the return URL with the signed result of
+ * the payment, the back-office API (vpcdps.do) with the QueryDR and refund commands, and the IPN callbacks, sent
+ * several times like the gateway does when it retries. All the requests and responses are signed with the secure
+ * secret of the merchant, as the real gateway does.
+ * <p>
+ * The latency of the responses and of the callbacks follows log-normal distributions, and a share of the requests
+ * can be declined, answered with an error, or answered too late for the timeouts of the client. The responses are
+ * delayed on a scheduler rather than on the request threads, so a slow simulated gateway does not slow down the
+ * rest of the application. The transactions are kept in memory, for a limited time.
+ */
+@Service
+@Profile(Constants.SPRING_PROFILE_NAPAS_SIMULATOR)
+public class NapasGatewaySimulator {
+
+    static final String VPC_DR_EXISTS = "vpc_DRExists";
+    static final String VPC_MESSAGE = "vpc_Message";
+    static final String VPC_PASSWORD = "vpc_Password";
+    static final String VPC_TRANS_NO = "vpc_TransNo";
+    static final String VPC_USER = "vpc_User";
+
+    private static final MediaType FORM_UTF8 = MediaType.valueOf("application/x-www-form-urlencoded;charset=UTF-8");
+
+    private final Logger log = LoggerFactory.getLogger(NapasGatewaySimulator.class);
+
+    private final NapasGatewayProperties gatewayProperties;
+
+    private final NapasSimulatorProperties properties;
+
+    private final NapasCallbackVerifier verifier;
+
+    private final VpcSecureHash secureHash;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final CloseableHttpClient httpClient;
+
+    private final ConcurrentMap<String, Transaction> transactionsByReference = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Transaction> transactionsByNumber = new ConcurrentHashMap<>();
+
+    private final AtomicLong transactionNumbers = new AtomicLong(1000000);
+
+    private final Meter approved;
+
+    private final Meter declined;
+
+    private final Meter errors;
+
+    private final Meter timeouts;
+
+    private final Meter ipnSent;
+
+    private final Meter ipnFailed;
+
+    public NapasGatewaySimulator(NapasGatewayProperties gatewayProperties, NapasSimulatorProperties properties,
+                                 MetricRegistry metricRegistry) {
+        this.gatewayProperties = gatewayProperties;
+        this.properties = properties;
+        this.verifier = new NapasCallbackVerifier(gatewayProperties);
+        this.secureHash = new VpcSecureHash(gatewayProperties.getSecureHash());
+        this.scheduler = Executors.newScheduledThreadPool(properties.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "napas-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClients.custom()
+            .setMaxConnTotal(properties.getThreads())
+            .setMaxConnPerRoute(properties.getThreads())
+            .disableCookieManagement()
+            .build();
+        this.approved = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "approved"));
+        this.declined = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "declined"));
+        this.errors = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "errors"));
+        this.timeouts = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "timeouts"));
+        this.ipnSent = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "ipn", "sent"));
+        this.ipnFailed = metricRegistry.meter(MetricRegistry.name(NapasGatewaySimulator.class, "ipn", "failed"));
+        long retention = properties.getRetentionMillis();
+        scheduler.scheduleWithFixedDelay(this::purge, retention, Math.min(retention, 60000), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Simulate the payment page: pay, then redirect to the return URL with the signed result, and send the IPN
+     * callbacks.
+     *
+     * @param parameters the parameters of the vpcpay.do request
+     * @return the future response, a redirect to the return URL, or a 400 (Bad Request) if the request is not
+     * signed, or a 503 (Service Unavailable) for the simulated errors
+     */
+    public CompletableFuture<ResponseEntity<Void>> pay(Map<String, String[]> parameters) {
+        String merchTxnRef = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF);
+        String amount = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_AMOUNT);
+        String returnUrl = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_RETURN_URL);
+        String orderInfo = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_ORDER_INFO);
+        if (!verifier.verify(parameters) || merchTxnRef == null || returnUrl == null || !isAmount(amount) ||
+            !NapasPaymentUrlBuilder.COMMAND_PAY.equals(NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_COMMAND))) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return respond(() -> {
+            // A payment page opened twice pays once
+            Transaction transaction = transactionsByReference.computeIfAbsent(merchTxnRef,
+                reference -> newTransaction(reference, Long.parseLong(amount), !isDeclined()));
+            SortedMap<String, String> result = transaction.toResult(NapasPaymentUrlBuilder.COMMAND_PAY);
+            result.put(NapasPaymentUrlBuilder.VPC_ORDER_INFO, orderInfo);
+            String query = signedQuery(result);
+            sendIpn(query);
+            return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(returnUrl + (returnUrl.indexOf('?') < 0 ? '?' : '&') + query))
+                .build();
+        });
+    }
+
+    /**
+     * Simulate the back-office API, with the QueryDR and refund commands.
+     *
+     * @param parameters the parameters of the vpcdps.do request
+     * @return the future response, with the signed result as a form in body, or a 400 (Bad Request) if the
+     * request is not signed or not supported, or a 503 (Service Unavailable) for the simulated errors
+     */
+    public CompletableFuture<ResponseEntity<String>> query(Map<String, String[]> parameters) {
+        String command = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_COMMAND);
+        String merchTxnRef = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF);
+        if (!verifier.verify(parameters) || merchTxnRef == null ||
+            !gatewayProperties.getUsername().equals(NapasCallbackVerifier.parameter(parameters, VPC_USER)) ||
+            !gatewayProperties.getPassword().equals(NapasCallbackVerifier.parameter(parameters, VPC_PASSWORD))) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        Supplier<SortedMap<String, String>> result;
+        if (NapasGatewayClient.COMMAND_QUERY_DR.equals(command)) {
+            result = () -> queryDR(merchTxnRef);
+        } else if (NapasGatewayClient.COMMAND_REFUND.equals(command)) {
+            String transactionNo = NapasCallbackVerifier.parameter(parameters, VPC_TRANS_NO);
+            String amount = NapasCallbackVerifier.parameter(parameters, NapasPaymentUrlBuilder.VPC_AMOUNT);
+            if (transactionNo == null || !isAmount(amount)) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+            }
+            result = () -> refund(merchTxnRef, transactionNo, Long.parseLong(amount));
+        } else {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return respond(() -> ResponseEntity.ok().contentType(FORM_UTF8).body(signedQuery(result.get())));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        httpClient.close();
+    }
+
+    private SortedMap<String, String> queryDR(String merchTxnRef) {
+        Transaction transaction = transactionsByReference.get(merchTxnRef);
+        SortedMap<String, String> result;
+        if (transaction == null) {
+            result = new TreeMap<>();
+            result.put(NapasPaymentUrlBuilder.VPC_COMMAND, NapasGatewayClient.COMMAND_QUERY_DR);
+            result.put(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF, merchTxnRef);
+            result.put(NapasPaymentUrlBuilder.VPC_MERCHANT, gatewayProperties.getMerchantId());
+        } else {
+            result = transaction.toResult(NapasGatewayClient.COMMAND_QUERY_DR);
+        }
+        result.put(VPC_DR_EXISTS, transaction == null ? "N" : "Y");
+        return result;
+    }
+
+    private SortedMap<String, String> refund(String merchTxnRef, String transactionNo, long amount) {
+        Transaction payment = transactionsByNumber.get(transactionNo);
+        Transaction refund = transactionsByReference.computeIfAbsent(merchTxnRef, reference ->
+            newTransaction(reference, amount, payment != null && payment.refund(amount)));
+        return refund.toResult(NapasGatewayClient.COMMAND_REFUND);
+    }
+
+    private Transaction newTransaction(String merchTxnRef, long amount, boolean approve) {
+        (approve ? approved : declined).mark();
+        Transaction transaction = new Transaction(merchTxnRef, String.valueOf(transactionNumbers.incrementAndGet()),
+            amount, approve ? NapasCallbackVerifier.APPROVED : properties.getDeclineResponseCode());
+        transactionsByNumber.put(transaction.transactionNo, transaction);
+        return transaction;
+    }
+
+    /**
+     * Complete a response after a simulated latency, or with a simulated error, or too late for the client.
+     */
+    private <T> CompletableFuture<ResponseEntity<T>> respond(Supplier<ResponseEntity<T>> response) {
+        CompletableFuture<ResponseEntity<T>> result = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double draw = random.nextDouble();
+        long delay = properties.getLatency().sample(random.nextGaussian());
+        Runnable completion;
+        if (draw < properties.getErrorRate()) {
+            errors.mark();
+            completion = () -> result.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        } else {
+            if (draw < properties.getErrorRate() + properties.getTimeoutRate()) {
+                timeouts.mark();
+                delay = properties.getTimeoutMillis();
+            }
+            completion = () -> {
+                try {
+                    result.complete(response.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            };
+        }
+        if (delay > 0) {
+            scheduler.schedule(completion, delay, TimeUnit.MILLISECONDS);
+        } else {
+            completion.run();
+        }
+        return result;
+    }
+
+    /**
+     * Post the result of a payment to the IPN URL, as many times as configured, each after its own delay.
+     */
+    private void sendIpn(String query) {
+        if (properties.getIpnUrl() == null) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < properties.getIpnCount(); i++) {
+            scheduler.schedule(() -> postIpn(query), properties.getIpnDelay().sample(random.nextGaussian()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void postIpn(String query) {
+        HttpPost post = new HttpPost(properties.getIpnUrl());
+        post.setEntity(new StringEntity(query, ContentType.APPLICATION_FORM_URLENCODED));
+        try (CloseableHttpResponse response = httpClient.execute(post)) {
+            EntityUtils.consume(response.getEntity());
+            if (response.getStatusLine().getStatusCode() >= 400) {
+                log.debug("The IPN was answered {}", response.getStatusLine().getStatusCode());
+                ipnFailed.mark();
+            } else {
+                ipnSent.mark();
+            }
+        } catch (IOException e) {
+            log.debug("Could not send the IPN: {}", e.toString());
+            ipnFailed.mark();
+        }
+    }
+
+    private boolean isDeclined() {
+        return ThreadLocalRandom.current().nextDouble() < properties.getDeclineRate();
+    }
+
+    private static boolean isAmount(String amount) {
+        if (amount == null || amount.isEmpty() || amount.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < amount.length(); i++) {
+            if (amount.charAt(i) < '0' || amount.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The query string of sorted parameters, followed by their secure hash.
+     */
+    private String signedQuery(SortedMap<String, String> parameters) {
+        StringBuilder canonical = new StringBuilder(512);
+        StringBuilder query = new StringBuilder(1024);
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (parameter.getValue() == null || parameter.getValue().isEmpty()) {
+                continue;
+            }
+            if (canonical.length() > 0) {
+                canonical.append('&');
+                query.append('&');
+            }
+            canonical.append(parameter.getKey()).append('=').append(parameter.getValue());
+            query.append(parameter.getKey()).append('=');
+            NapasPaymentUrlBuilder.percentEncode(parameter.getValue(), query);
+        }
+        query.append('&').append(NapasPaymentUrlBuilder.VPC_SECURE_HASH).append('=');
+        secureHash.appendHash(canonical, query);
+        query.append('&').append(NapasPaymentUrlBuilder.VPC_SECURE_HASH_TYPE).append('=').append(VpcSecureHash.TYPE);
+        return query.toString();
+    }
+
+    private void purge() {
+        long oldest = System.currentTimeMillis() - properties.getRetentionMillis();
+        transactionsByReference.values().removeIf(transaction -> transaction.createdAt < oldest);
+        transactionsByNumber.values().removeIf(transaction -> transaction.createdAt < oldest);
+    }
+
+    /**
+     * A payment or a refund.
+     */
+    private final class Transaction {
+
+        private final String merchTxnRef;
+
+        private final String transactionNo;
+
+        private final long amount;
+
+        private final String responseCode;
+
+        private final long createdAt = System.currentTimeMillis();
+
+        private final AtomicLong refunded = new AtomicLong();
+
+        Transaction(String merchTxnRef, String transactionNo, long amount, String responseCode) {
+            this.merchTxnRef = merchTxnRef;
+            this.transactionNo = transactionNo;
+            this.amount = amount;
+            this.responseCode = responseCode;
+        }
+
+        /**
+         * Refund a part of an approved payment, if it was not already refunded.
+         */
+        boolean refund(long refundAmount) {
+            if (!NapasCallbackVerifier.APPROVED.equals(responseCode)) {
+                return false;
+            }
+            long previous;
+            do {
+                previous = refunded.get();
+                if (previous + refundAmount > amount) {
+                    return false;
+                }
+            } while (!refunded.compareAndSet(previous, previous + refundAmount));
+            return true;
+        }
+
+        SortedMap<String, String> toResult(String command) {
+            boolean isApproved = NapasCallbackVerifier.APPROVED.equals(responseCode);
+            SortedMap<String, String> result = new TreeMap<>();
+            result.put(NapasPaymentUrlBuilder.VPC_AMOUNT, String.valueOf(amount));
+            result.put(NapasPaymentUrlBuilder.VPC_COMMAND, command);
+            result.put(NapasPaymentUrlBuilder.VPC_CURRENCY, gatewayProperties.getCurrency());
+            result.put(NapasPaymentUrlBuilder.VPC_LOCALE, gatewayProperties.getLocale());
+            result.put(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF, merchTxnRef);
+            result.put(NapasPaymentUrlBuilder.VPC_MERCHANT, gatewayProperties.getMerchantId());
+            result.put(VPC_MESSAGE, isApproved ? "Approved" : "Declined");
+            result.put(NapasCallbackVerifier.VPC_TRANSACTION_NO, transactionNo);
+            result.put(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE, responseCode);
+            result.put(NapasPaymentUrlBuilder.VPC_VERSION, gatewayProperties.getVersion());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+/**
+ * A merchant account of the NAPAS gateway, resolved from its properties: its secure secret is decoded, and its
+ * URL builder and callback verifier are ready to be used by any thread.
+ */
+public final class NapasMerchant {
+
+    private final String name;
+
+    private final String merchantId;
+
+    private final String accessCode;
+
+    private final String username;
+
+    private final String password;
+
+    private final String currency;
+
+    private final String channel;
+
+    private final VpcSecureHash secureHash;
+
+    private final NapasPaymentUrlBuilder urlBuilder;
+
+    private final NapasCallbackVerifier verifier;
+
+    NapasMerchant(String name, NapasGatewayProperties properties, NapasGatewayProperties.Merchant merchant) {
+        this(name, properties, merchant.getMerchantId(), merchant.getAccessCode(), merchant.getSecureHash(),
+            merchant.getUsername(), merchant.getPassword(), merchant.getCurrency(), merchant.getChannel());
+    }
+
+    NapasMerchant(String name, NapasGatewayProperties properties, String merchantId, String accessCode, String secureHash,
+                  String username, String password, String currency, String channel) {
+        if (merchantId == null || merchantId.isEmpty()) {
+            throw new IllegalArgumentException("The NAPAS merchant " + name + " has no merchant id");
+        }
+        if (currency == null || currency.isEmpty()) {
+            throw new IllegalArgumentException("The NAPAS merchant " + name + " has no currency");
+        }
+        this.name = name;
+        this.merchantId = merchantId;
+        this.accessCode = accessCode;
+        this.username = username;
+        this.password = password;
+        this.currency = currency;
+        this.channel = channel == null || channel.isEmpty() ? null : channel;
+        this.secureHash = new VpcSecureHash(secureHash);
+        this.urlBuilder = new NapasPaymentUrlBuilder(properties, merchantId, accessCode, currency, this.secureHash);
+        this.verifier = new NapasCallbackVerifier(merchantId, this.secureHash);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public String getAccessCode() {
+        return accessCode;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return the channel of the payments of this merchant, or null if it takes the payments of any channel
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    public VpcSecureHash getSecureHash() {
+        return secureHash;
+    }
+
+    public NapasPaymentUrlBuilder getUrlBuilder() {
+        return urlBuilder;
+    }
+
+    public NapasCallbackVerifier getVerifier() {
+        return verifier;
+    }
+
+    @Override
+    public String toString() {
+        return "NapasMerchant{" +
+            "name='" + name + "'" +
+            ", merchantId='" + merchantId + "'" +
+            ", currency='" + currency + "'" +
+            ", channel='" + channel + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,159 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routing table of the payments to the merchant accounts of the NAPAS gateway, by currency and channel.
+ * <p>
+ * The napas.gateway properties are resolved once into immutable maps, so routing a payment is at most three
+ * hash lookups, without any property binding or key decoding. When the configuration is refreshed, a new table
+ * is built from the rebound properties and swapped in at once: a payment is always routed by one consistent
+ * table, and an invalid configuration leaves the previous table in place.
+ */
+@Component
+public class NapasMerchantRoutes {
+
+    /**
+     * The name of the merchant of the top level napas.gateway properties, used when no other merchant matches.
+     */
+    public static final String DEFAULT_MERCHANT = "default";
+
+    private final Logger log = LoggerFactory.getLogger(NapasMerchantRoutes.class);
+
+    private final NapasGatewayProperties properties;
+
+    private volatile Routes routes;
+
+    public NapasMerchantRoutes(NapasGatewayProperties properties) {
+        this.properties = properties;
+        this.routes = new Routes(properties);
+    }
+
+    /**
+     * Rebuild the table from the properties rebound by the refresh.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void refresh() {
+        try {
+            routes = new Routes(properties);
+            log.info("Reloaded the NAPAS merchants: {}", routes.byMerchantId.values());
+        } catch (RuntimeException e) {
+            log.error("Invalid NAPAS merchants, the previous ones are kept: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the merchant of a payment: the merchant of its currency and channel, else the merchant of its currency
+     * without channel, else the default merchant.
+     *
+     * @param currency the currency of the payment
+     * @param channel the channel of the payment, or null
+     * @return the merchant, or null if none is configured
+     */
+    public NapasMerchant route(String currency, String channel) {
+        Routes current = routes;
+        if (channel != null) {
+            Map<String, NapasMerchant> byChannel = current.byCurrencyAndChannel.get(currency);
+            NapasMerchant merchant = byChannel == null ? null : byChannel.get(channel);
+            if (merchant != null) {
+                return merchant;
+            }
+        }
+        NapasMerchant merchant = current.byCurrency.get(currency);
+        return merchant == null ? current.defaultMerchant : merchant;
+    }
+
+    /**
+     * Get a merchant by the id given to it by the gateway, as in the vpc_Merchant of the callbacks.
+     *
+     * @param merchantId the id of the merchant
+     * @return the merchant, or null if it isn't configured
+     */
+    public NapasMerchant getMerchant(String merchantId) {
+        return merchantId == null ? null : routes.byMerchantId.get(merchantId);
+    }
+
+    /**
+     * @return the merchant of the top level napas.gateway properties, or null if it isn't configured
+     */
+    public NapasMerchant getDefaultMerchant() {
+        return routes.defaultMerchant;
+    }
+
+    /**
+     * @return true if at least one merchant is configured
+     */
+    public boolean isConfigured() {
+        return !routes.byMerchantId.isEmpty();
+    }
+
+    /**
+     * An immutable routing table.
+     */
+    private static final class Routes {
+
+        private final Map<String, Map<String, NapasMerchant>> byCurrencyAndChannel;
+
+        private final Map<String, NapasMerchant> byCurrency;
+
+        private final Map<String, NapasMerchant> byMerchantId;
+
+        private final NapasMerchant defaultMerchant;
+
+        Routes(NapasGatewayProperties properties) {
+            Map<String, Map<String, NapasMerchant>> byCurrencyAndChannel = new HashMap<>();
+            Map<String, NapasMerchant> byCurrency = new HashMap<>();
+            Map<String, NapasMerchant> byMerchantId = new HashMap<>();
+            Map<String, String> secureHashes = new HashMap<>();
+            for (Map.Entry<String, NapasGatewayProperties.Merchant> entry : properties.getMerchants().entrySet()) {
+                NapasMerchant merchant = new NapasMerchant(entry.getKey(), properties, entry.getValue());
+                NapasMerchant previous = merchant.getChannel() == null ?
+                    byCurrency.putIfAbsent(merchant.getCurrency(), merchant) :
+                    byCurrencyAndChannel.computeIfAbsent(merchant.getCurrency(), currency -> new HashMap<>())
+                        .putIfAbsent(merchant.getChannel(), merchant);
+                if (previous != null) {
+                    throw new IllegalStateException("The NAPAS merchants " + previous.getName() + " and " +
+                        merchant.getName() + " have the same currency and channel");
+                }
+                addMerchantId(byMerchantId, secureHashes, merchant, entry.getValue().getSecureHash());
+            }
+            if (properties.getSecureHash() == null) {
+                this.defaultMerchant = null;
+            } else {
+                this.defaultMerchant = new NapasMerchant(DEFAULT_MERCHANT, properties, properties.getMerchantId(),
+                    properties.getAccessCode(), properties.getSecureHash(), properties.getUsername(), properties.getPassword(),
+                    properties.getCurrency(), null);
+                addMerchantId(byMerchantId, secureHashes, defaultMerchant, properties.getSecureHash());
+            }
+            byCurrencyAndChannel.replaceAll((currency, byChannel) -> Collections.unmodifiableMap(byChannel));
+            this.byCurrencyAndChannel = Collections.unmodifiableMap(byCurrencyAndChannel);
+            this.byCurrency = Collections.unmodifiableMap(byCurrency);
+            this.byMerchantId = Collections.unmodifiableMap(byMerchantId);
+        }
+
+        /**
+         * Index a merchant by its merchant id. Merchants sharing a merchant id, on different routes, must share its
+         * secure secret too, as the callbacks of that id are verified with a single one of them.
+         */
+        private static void addMerchantId(Map<String, NapasMerchant> byMerchantId, Map<String, String> secureHashes,
+                                          NapasMerchant merchant, String secureHash) {
+            NapasMerchant previous = byMerchantId.putIfAbsent(merchant.getMerchantId(), merchant);
+            if (previous != null && !secureHash.equalsIgnoreCase(secureHashes.get(merchant.getMerchantId()))) {
+                throw new IllegalStateException("The NAPAS merchants " + previous.getName() + " and " +
+                    merchant.getName() + " have the same merchant id " + merchant.getMerchantId() +
+                    " but different secure secrets");
+            }
+            secureHashes.putIfAbsent(merchant.getMerchantId(), secureHash);
+        }
+    }
+}
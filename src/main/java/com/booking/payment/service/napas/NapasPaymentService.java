@@ -0,0 +1,101 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.DepositService;
+import com.booking.payment.service.dto.DepositDTO;
+import com.booking.payment.service.dto.PaymentRequestDTO;
+import com.booking.payment.service.dto.PaymentUrlDTO;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import com.booking.payment.web.rest.errors.DepositNotPendingException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service initiating the payments of the deposits through the NAPAS gateway.
+ * <p>
+ * The URL of the payment page is built and signed here, so the secure secret of the merchant never leaves the
+ * server. Each payment goes to the merchant of the currency of its deposit and of its channel, for the amount of
+ * the deposit: the amount of the request, if any, is only checked against it.
+ */
+@Service
+public class NapasPaymentService {
+
+    private static final String ENTITY_NAME = "payment";
+
+    private final Logger log = LoggerFactory.getLogger(NapasPaymentService.class);
+
+    private final DepositService depositService;
+
+    private final NapasMerchantRoutes merchantRoutes;
+
+    public NapasPaymentService(DepositService depositService, NapasMerchantRoutes merchantRoutes) {
+        this.depositService = depositService;
+        this.merchantRoutes = merchantRoutes;
+        if (!merchantRoutes.isConfigured()) {
+            log.warn("The NAPAS gateway is not configured, the payments of the deposits can't be initiated");
+        }
+    }
+
+    /**
+     * Build the signed URL of the payment page of a deposit.
+     *
+     * @param paymentRequest the deposit, the amount to pay and the channel of the payment
+     * @param clientIp the IP address of the customer
+     * @return the URL, or empty if the deposit doesn't exist
+     * @throws BadRequestAlertException if the deposit has no amount the gateway takes, or another amount than
+     * the request
+     * @throws DepositNotPendingException if the deposit is no longer PENDING, paid or failed
+     */
+    public Optional<PaymentUrlDTO> initiatePayment(PaymentRequestDTO paymentRequest, String clientIp) {
+        log.debug("Request to initiate the payment : {}", paymentRequest);
+        DepositDTO deposit = depositService.findOne(paymentRequest.getDepositId());
+        if (deposit == null) {
+            return Optional.empty();
+        }
+        if (deposit.getStatus() != DepositStatus.PENDING) {
+            throw new DepositNotPendingException();
+        }
+        NapasMerchant merchant = merchantRoutes.route(deposit.getCurrencyCode(), paymentRequest.getChannel());
+        if (merchant == null) {
+            throw new IllegalStateException("The NAPAS gateway is not configured");
+        }
+        long amount = gatewayAmount(deposit);
+        if (paymentRequest.getAmount() != null && paymentRequest.getAmount() != amount) {
+            throw new BadRequestAlertException("The amount differs from the amount of the deposit", ENTITY_NAME, "amountmismatch");
+        }
+        String merchTxnRef = merchTxnRef(deposit.getId());
+        String url = merchant.getUrlBuilder().build(merchTxnRef, amount, deposit.getBookingCode(), clientIp);
+        // The last payment is the one polled if its callbacks never come. The status read above may be stale, the
+        // conditional update is what keeps a deposit completed meanwhile from being paid again
+        if (!depositService.startPayment(deposit.getId(), merchant.getMerchantId(), merchTxnRef)) {
+            throw new DepositNotPendingException();
+        }
+        return Optional.of(new PaymentUrlDTO(deposit.getId(), merchTxnRef, url));
+    }
+
+    private static long gatewayAmount(DepositDTO deposit) {
+        if (deposit.getAmount() == null) {
+            throw new BadRequestAlertException("The deposit has no amount", ENTITY_NAME, "invalidamount");
+        }
+        try {
+            return NapasAmounts.toGatewayAmount(deposit.getCurrencyCode(), deposit.getAmount());
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidamount");
+        }
+    }
+
+    /**
+     * The reference of a new payment of a deposit: its id, followed by the time of the payment and by a random
+     * suffix, so that each attempt has its own reference even when the same deposit is initiated twice within the
+     * same millisecond, by a double click or by two nodes. It fits within the 40 characters the gateway takes.
+     */
+    static String merchTxnRef(Long depositId) {
+        return depositId + "-" + System.currentTimeMillis() + "-" +
+            String.format("%06x", ThreadLocalRandom.current().nextInt(1 << 24));
+    }
+}
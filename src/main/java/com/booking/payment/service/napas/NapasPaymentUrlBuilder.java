@@ -0,0 +1,166 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+/**
+ * Builder of the signed vpcpay.do URLs, which redirect the customer to the payment page of the NAPAS gateway.
+ * <p>
+ * The names of the parameters are known in advance, so they are kept in the ascending order required by the
+ * secure hash instead of being sorted for every URL, and both the canonical string and the URL are written in
+ * buffers reused by each thread.
+ */
+public final class NapasPaymentUrlBuilder {
+
+    public static final String COMMAND_PAY = "pay";
+
+    // The parameters of a payment, in the ascending order of their names
+    static final String VPC_ACCESS_CODE = "vpc_AccessCode";
+    static final String VPC_AMOUNT = "vpc_Amount";
+    static final String VPC_COMMAND = "vpc_Command";
+    static final String VPC_CURRENCY = "vpc_Currency";
+    static final String VPC_LOCALE = "vpc_Locale";
+    static final String VPC_MERCH_TXN_REF = "vpc_MerchTxnRef";
+    static final String VPC_MERCHANT = "vpc_Merchant";
+    static final String VPC_ORDER_INFO = "vpc_OrderInfo";
+    static final String VPC_RETURN_URL = "vpc_ReturnURL";
+    static final String VPC_TICKET_NO = "vpc_TicketNo";
+    static final String VPC_VERSION = "vpc_Version";
+
+    static final String VPC_SECURE_HASH = "vpc_SecureHash";
+    static final String VPC_SECURE_HASH_TYPE = "vpc_SecureHashType";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String vpcUrl;
+
+    private final String accessCode;
+
+    private final String merchantId;
+
+    private final String currency;
+
+    private final String locale;
+
+    private final String returnUrl;
+
+    private final String version;
+
+    private final VpcSecureHash secureHash;
+
+    private final ThreadLocal<StringBuilder> canonicalBuffer = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private final ThreadLocal<StringBuilder> urlBuffer = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    public NapasPaymentUrlBuilder(NapasGatewayProperties properties) {
+        this(properties, properties.getMerchantId(), properties.getAccessCode(), properties.getCurrency(),
+            new VpcSecureHash(properties.getSecureHash()));
+    }
+
+    public NapasPaymentUrlBuilder(NapasGatewayProperties properties, String merchantId, String accessCode, String currency,
+                                  VpcSecureHash secureHash) {
+        this.vpcUrl = properties.getVpcUrl();
+        this.accessCode = accessCode;
+        this.merchantId = merchantId;
+        this.currency = currency;
+        this.locale = properties.getLocale();
+        this.returnUrl = properties.getReturnUrl();
+        this.version = properties.getVersion();
+        this.secureHash = secureHash;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    /**
+     * Build the signed URL of a payment.
+     *
+     * @param merchTxnRef the reference of the payment, unique for the merchant
+     * @param amount the amount, in hundredths of the currency unit as the gateway expects it
+     * @param orderInfo the description of the order, shown to the customer
+     * @param ticketNo the IP address of the customer
+     * @return the URL of the payment page
+     */
+    public String build(String merchTxnRef, long amount, String orderInfo, String ticketNo) {
+        StringBuilder canonical = canonicalBuffer.get();
+        StringBuilder url = urlBuffer.get();
+        canonical.setLength(0);
+        url.setLength(0);
+        url.append(vpcUrl).append('?');
+
+        parameter(canonical, url, VPC_ACCESS_CODE, accessCode);
+        separate(canonical, url);
+        canonical.append(VPC_AMOUNT).append('=').append(amount);
+        url.append(VPC_AMOUNT).append('=').append(amount);
+        parameter(canonical, url, VPC_COMMAND, COMMAND_PAY);
+        parameter(canonical, url, VPC_CURRENCY, currency);
+        parameter(canonical, url, VPC_LOCALE, locale);
+        parameter(canonical, url, VPC_MERCH_TXN_REF, merchTxnRef);
+        parameter(canonical, url, VPC_MERCHANT, merchantId);
+        parameter(canonical, url, VPC_ORDER_INFO, orderInfo);
+        parameter(canonical, url, VPC_RETURN_URL, returnUrl);
+        parameter(canonical, url, VPC_TICKET_NO, ticketNo);
+        parameter(canonical, url, VPC_VERSION, version);
+
+        url.append('&').append(VPC_SECURE_HASH).append('=');
+        secureHash.appendHash(canonical, url);
+        url.append('&').append(VPC_SECURE_HASH_TYPE).append('=').append(VpcSecureHash.TYPE);
+        return url.toString();
+    }
+
+    /**
+     * Append a parameter to the canonical string, as is, and to the query of the URL, percent encoded.
+     * Empty parameters are left out of both.
+     */
+    private static void parameter(StringBuilder canonical, StringBuilder url, String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        separate(canonical, url);
+        canonical.append(name).append('=').append(value);
+        url.append(name).append('=');
+        percentEncode(value, url);
+    }
+
+    private static void separate(StringBuilder canonical, StringBuilder url) {
+        if (canonical.length() > 0) {
+            canonical.append('&');
+            url.append('&');
+        }
+    }
+
+    /**
+     * Percent encode a value as the application/x-www-form-urlencoded type, without the intermediate strings of
+     * {@link java.net.URLEncoder}.
+     */
+    static void percentEncode(String value, StringBuilder target) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                c == '-' || c == '_' || c == '.' || c == '*') {
+                target.append(c);
+            } else if (c == ' ') {
+                target.append('+');
+            } else if (c < 0x80) {
+                appendEscaped(c, target);
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >> 6), target);
+                appendEscaped(0x80 | (c & 0x3F), target);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(0xF0 | (codePoint >> 18), target);
+                appendEscaped(0x80 | ((codePoint >> 12) & 0x3F), target);
+                appendEscaped(0x80 | ((codePoint >> 6) & 0x3F), target);
+                appendEscaped(0x80 | (codePoint & 0x3F), target);
+            } else {
+                appendEscaped(0xE0 | (c >> 12), target);
+                appendEscaped(0x80 | ((c >> 6) & 0x3F), target);
+                appendEscaped(0x80 | (c & 0x3F), target);
+            }
+        }
+    }
+
+    private static void appendEscaped(int b, StringBuilder target) {
+        target.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+}
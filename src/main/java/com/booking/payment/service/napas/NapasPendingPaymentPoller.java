@@ -0,0 +1,245 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositService;
+import com.booking.payment.service.dto.GatewayTransactionDTO;
+import com.booking.payment.service.dto.PendingPaymentDTO;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service completing the NAPAS payments whose callbacks never came, by querying their result with QueryDR.
+ * <p>
+ * The deposits left PENDING for too long after their last payment are polled on a fixed delay, on the
+ * "taskExecutor". Each node claims its own batches with a lease, so several nodes share the work without row
+ * locks held during the calls to the gateway; the deposits a query couldn't complete are polled again once their
+ * lease is over. The queries of a batch run concurrently, with a bounded number in flight and a maximum rate, so
+ * a backlog of stale payments can't flood the gateway. A result for another amount than the amount of the deposit
+ * doesn't complete it: it is counted and logged for an operator, and polled again once its lease is over.
+ */
+@Service
+public class NapasPendingPaymentPoller {
+
+    private final Logger log = LoggerFactory.getLogger(NapasPendingPaymentPoller.class);
+
+    private final DepositRepository depositRepository;
+
+    private final DepositService depositService;
+
+    private final NapasGatewayClient gatewayClient;
+
+    private final NapasMerchantRoutes merchantRoutes;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TaskExecutor taskExecutor;
+
+    private final ApplicationProperties.PaymentPoller properties;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private final Semaphore inFlight;
+
+    private final long permitInterval;
+
+    private long nextPermit = System.nanoTime();
+
+    private final Meter claimedPayments;
+
+    private final Meter completedPayments;
+
+    private final Meter failedQueries;
+
+    private final Meter amountMismatches;
+
+    private final Timer pollTimer;
+
+    public NapasPendingPaymentPoller(DepositRepository depositRepository, DepositService depositService,
+                                     NapasGatewayClient gatewayClient, NapasMerchantRoutes merchantRoutes,
+                                     PlatformTransactionManager transactionManager,
+                                     @Qualifier("taskExecutor") TaskExecutor taskExecutor, ApplicationProperties applicationProperties,
+                                     MetricRegistry metricRegistry) {
+        this.depositRepository = depositRepository;
+        this.depositService = depositService;
+        this.gatewayClient = gatewayClient;
+        this.merchantRoutes = merchantRoutes;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getPaymentPoller();
+        this.inFlight = new Semaphore(properties.getMaxConcurrency());
+        this.permitInterval = (long) (TimeUnit.SECONDS.toNanos(1) / properties.getRate());
+        this.claimedPayments = metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "claimed"));
+        this.completedPayments = metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "completed"));
+        this.failedQueries = metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "errors"));
+        this.amountMismatches = metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "amount-mismatches"));
+        this.pollTimer = metricRegistry.timer(MetricRegistry.name(NapasPendingPaymentPoller.class, "poll"));
+        metricRegistry.register(MetricRegistry.name(NapasPendingPaymentPoller.class, "pending"), new CachedGauge<Long>(5, TimeUnit.SECONDS) {
+            @Override
+            protected Long loadValue() {
+                return depositRepository.countStalePayments(Instant.now().minusMillis(properties.getStaleAfter()));
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(NapasPendingPaymentPoller.class, "in-flight"),
+            (Gauge<Integer>) () -> properties.getMaxConcurrency() - inFlight.availablePermits());
+    }
+
+    /**
+     * Start polling the stale payments on the task executor, unless they are already being polled.
+     */
+    @Scheduled(fixedDelayString = "${application.payment-poller.poll-delay:60000}")
+    public void schedulePoll() {
+        if (!properties.isEnabled() || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    while (poll() == properties.getBatchSize()) {
+                        log.debug("Stale payment batch full, polling the next one");
+                    }
+                } finally {
+                    polling.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            polling.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Claim one batch of stale payments, query their result from the gateway and complete their deposits.
+     *
+     * @return the number of payments in the batch
+     */
+    public int poll() {
+        Instant now = Instant.now();
+        List<PendingPaymentDTO> payments = transactionTemplate.execute(status -> depositRepository.claimStalePayments(
+            now.minusMillis(properties.getStaleAfter()), UUID.randomUUID().toString(),
+            now.plusMillis(properties.getLease()), properties.getBatchSize()));
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        claimedPayments.mark(payments.size());
+        try (Timer.Context ignored = pollTimer.time()) {
+            List<CompletableFuture<GatewayTransactionDTO>> queries = new ArrayList<>(payments.size());
+            for (PendingPaymentDTO payment : payments) {
+                queries.add(query(payment));
+            }
+            for (int i = 0; i < payments.size(); i++) {
+                complete(payments.get(i), queries.get(i), now);
+            }
+        }
+        log.debug("Polled {} stale payments", payments.size());
+        return payments.size();
+    }
+
+    /**
+     * Send a QueryDR with the merchant of the payment, once the rate and the number of queries in flight allow it.
+     */
+    private CompletableFuture<GatewayTransactionDTO> query(PendingPaymentDTO payment) {
+        // The payments started before the merchants were recorded are all of the default merchant
+        NapasMerchant merchant = payment.getMerchantId() == null ?
+            merchantRoutes.getDefaultMerchant() : merchantRoutes.getMerchant(payment.getMerchantId());
+        if (merchant == null) {
+            return failed(new IllegalStateException("Unknown NAPAS merchant " + payment.getMerchantId()));
+        }
+        try {
+            acquirePermit();
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(e);
+        }
+        try {
+            return gatewayClient.queryDR(merchant, payment.getMerchTxnRef()).whenComplete((transaction, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            return failed(e);
+        }
+    }
+
+    /**
+     * Wait for the next query allowed by the rate, the queries being evenly spaced.
+     */
+    private synchronized void acquirePermit() throws InterruptedException {
+        long now = System.nanoTime();
+        long wait = nextPermit - now;
+        nextPermit = Math.max(nextPermit, now) + permitInterval;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void complete(PendingPaymentDTO payment, CompletableFuture<GatewayTransactionDTO> query, Instant now) {
+        GatewayTransactionDTO transaction;
+        try {
+            transaction = query.join();
+        } catch (CompletionException e) {
+            failedQueries.mark();
+            log.warn("Could not query the NAPAS payment {}: {}", payment.getMerchTxnRef(), e.getCause().toString());
+            return;
+        }
+        DepositStatus status = status(payment, transaction, now);
+        if (status == null) {
+            log.debug("NAPAS payment {} still in progress", payment.getMerchTxnRef());
+            return;
+        }
+        if ((status == DepositStatus.SUCCESS || transaction.getAmount() != null) &&
+            !NapasAmounts.isAmountOf(transaction.getAmount(), payment.getCurrencyCode(), payment.getAmount())) {
+            amountMismatches.mark();
+            log.error("NAPAS payment {} is of {}, Deposit {} is of {} {}", payment.getMerchTxnRef(), transaction.getAmount(),
+                payment.getDepositId(), payment.getAmount(), payment.getCurrencyCode());
+            return;
+        }
+        if (depositService.transition(payment.getDepositId(), DepositStatus.PENDING, status, transaction.getTransactionNo())) {
+            completedPayments.mark();
+            log.info("Payment {} of Deposit {} completed by QueryDR with response code {}", payment.getMerchTxnRef(),
+                payment.getDepositId(), transaction.getResponseCode());
+        }
+    }
+
+    /**
+     * The status of a deposit given the result of its payment, or null if the payment is still in progress.
+     */
+    private DepositStatus status(PendingPaymentDTO payment, GatewayTransactionDTO transaction, Instant now) {
+        if (Boolean.FALSE.equals(transaction.getExists())) {
+            // The customer never got through the payment page
+            return payment.getStartedAt().plusMillis(properties.getAbandonAfter()).isBefore(now) ? DepositStatus.FAILED : null;
+        }
+        if (transaction.getResponseCode() == null || transaction.getResponseCode().isEmpty()) {
+            return null;
+        }
+        return NapasCallbackVerifier.APPROVED.equals(transaction.getResponseCode()) ? DepositStatus.SUCCESS : DepositStatus.FAILED;
+    }
+
+    private static CompletableFuture<GatewayTransactionDTO> failed(Exception e) {
+        CompletableFuture<GatewayTransactionDTO> result = new CompletableFuture<>();
+        result.completeExceptionally(e);
+        return result;
+    }
+}
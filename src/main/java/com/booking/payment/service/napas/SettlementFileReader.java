@@ -0,0 +1,162 @@
+package com.booking.payment.service.napas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of the RFC 4180 CSV records of a settlement file.
+ * <p>
+ * The file is read through a {@link FileChannel} into a direct buffer, and decoded as UTF-8 into a char buffer of
+ * the same size, so the memory used does not depend on the size of the file. Quoted fields may contain delimiters,
+ * doubled quotes and line breaks, and lines may end with CRLF or LF.
+ */
+public final class SettlementFileReader implements Closeable {
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final FileChannel channel;
+
+    private final ByteBuffer bytes;
+
+    private final CharBuffer chars;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final char delimiter;
+
+    private final List<String> fields = new ArrayList<>();
+
+    private final StringBuilder field = new StringBuilder(64);
+
+    private boolean endOfInput;
+
+    private boolean flushed;
+
+    private long bytesRead;
+
+    private long recordNumber;
+
+    public SettlementFileReader(Path file, int bufferSize, char delimiter) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+        // A byte never decodes to more than one char, so the decoded bytes always fit
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.chars.limit(0);
+        this.delimiter = delimiter;
+        if (peek() == BYTE_ORDER_MARK) {
+            read();
+        }
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the fields of the record, in a list reused by the next call, or null at the end of the file
+     * @throws IOException if the file can't be read
+     */
+    public List<String> next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        int c = read();
+        if (c < 0) {
+            return null;
+        }
+        boolean quoted = false;
+        for (; c >= 0; c = read()) {
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                } else if (peek() == '"') {
+                    field.append('"');
+                    read();
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                break;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+        }
+        fields.add(field.toString());
+        recordNumber++;
+        return fields;
+    }
+
+    /**
+     * @return the number of the last record read, starting from 1
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return the number of bytes read from the file so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get();
+    }
+
+    private int peek() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        // A read may end in the middle of a multi-byte character, which decodes to nothing until the next read
+        while (chars.position() == 0 && !flushed) {
+            int read = channel.read(bytes);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                bytesRead += read;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (endOfInput) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,62 @@
+package com.booking.payment.service.napas;
+
+/**
+ * A line of a settlement file: the result of a payment, as settled by the NAPAS gateway.
+ */
+public final class SettlementRecord {
+
+    private final long depositId;
+
+    private final long line;
+
+    private final String merchTxnRef;
+
+    private final String transactionNo;
+
+    private final String responseCode;
+
+    private final Long amount;
+
+    public SettlementRecord(long depositId, long line, String merchTxnRef, String transactionNo, String responseCode, Long amount) {
+        this.depositId = depositId;
+        this.line = line;
+        this.merchTxnRef = merchTxnRef;
+        this.transactionNo = transactionNo;
+        this.responseCode = responseCode;
+        this.amount = amount;
+    }
+
+    /**
+     * @return the id of the deposit, read from the reference of the payment
+     */
+    public long getDepositId() {
+        return depositId;
+    }
+
+    /**
+     * @return the number of the record in the settlement file
+     */
+    public long getLine() {
+        return line;
+    }
+
+    public String getMerchTxnRef() {
+        return merchTxnRef;
+    }
+
+    public String getTransactionNo() {
+        return transactionNo;
+    }
+
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public boolean isApproved() {
+        return NapasCallbackVerifier.APPROVED.equals(responseCode);
+    }
+}
@@ -0,0 +1,172 @@
+package com.booking.payment.service.napas;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * External sort of the records of a settlement file by deposit id, then by line.
+ * <p>
+ * Up to "runSize" records are sorted in memory. Beyond that, each full run is sorted and spilled to a temporary
+ * file, and the runs are then merged through a priority queue holding one record per run, so the memory used is
+ * bounded by the run size whatever the size of the settlement file.
+ */
+public final class SettlementSorter implements Closeable {
+
+    private static final Comparator<SettlementRecord> ORDER = Comparator.comparingLong(SettlementRecord::getDepositId)
+        .thenComparingLong(SettlementRecord::getLine);
+
+    private static final int IO_BUFFER_SIZE = 65536;
+
+    private final int runSize;
+
+    private final List<SettlementRecord> run;
+
+    private final List<Path> runFiles = new ArrayList<>();
+
+    private final List<RunReader> runReaders = new ArrayList<>();
+
+    public SettlementSorter(int runSize) {
+        this.runSize = runSize;
+        this.run = new ArrayList<>(Math.min(runSize, 16384));
+    }
+
+    public void add(SettlementRecord record) throws IOException {
+        run.add(record);
+        if (run.size() >= runSize) {
+            spill();
+        }
+    }
+
+    /**
+     * @return the number of runs spilled to temporary files
+     */
+    public int getSpilledRunCount() {
+        return runFiles.size();
+    }
+
+    /**
+     * Sort all the records added so far.
+     *
+     * @return the records in deposit id order, which throws an UncheckedIOException if a run can't be read back
+     * @throws IOException if the last run can't be spilled
+     */
+    public Iterator<SettlementRecord> sorted() throws IOException {
+        if (runFiles.isEmpty()) {
+            run.sort(ORDER);
+            return run.iterator();
+        }
+        if (!run.isEmpty()) {
+            spill();
+        }
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(runFiles.size(), (a, b) -> ORDER.compare(a.current, b.current));
+        for (Path runFile : runFiles) {
+            RunReader reader = new RunReader(runFile);
+            runReaders.add(reader);
+            if (reader.advance()) {
+                heads.add(reader);
+            }
+        }
+        return new Iterator<SettlementRecord>() {
+
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public SettlementRecord next() {
+                RunReader reader = heads.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                SettlementRecord record = reader.current;
+                try {
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return record;
+            }
+        };
+    }
+
+    /**
+     * Close the runs and delete their temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        run.clear();
+        for (RunReader reader : runReaders) {
+            reader.input.close();
+        }
+        for (Path runFile : runFiles) {
+            Files.deleteIfExists(runFile);
+        }
+    }
+
+    private void spill() throws IOException {
+        run.sort(ORDER);
+        Path runFile = Files.createTempFile("settlement-run-", ".bin");
+        runFiles.add(runFile);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), IO_BUFFER_SIZE))) {
+            for (SettlementRecord record : run) {
+                output.writeLong(record.getDepositId());
+                output.writeLong(record.getLine());
+                output.writeUTF(record.getMerchTxnRef());
+                writeNullable(output, record.getTransactionNo());
+                writeNullable(output, record.getResponseCode());
+                output.writeBoolean(record.getAmount() != null);
+                if (record.getAmount() != null) {
+                    output.writeLong(record.getAmount());
+                }
+            }
+        }
+        run.clear();
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * A sorted run, read back one record at a time.
+     */
+    private static final class RunReader {
+
+        private final DataInputStream input;
+
+        private SettlementRecord current;
+
+        RunReader(Path runFile) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), IO_BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            long depositId;
+            try {
+                depositId = input.readLong();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            long line = input.readLong();
+            String merchTxnRef = input.readUTF();
+            String transactionNo = readNullable(input);
+            String responseCode = readNullable(input);
+            Long amount = input.readBoolean() ? input.readLong() : null;
+            current = new SettlementRecord(depositId, line, merchTxnRef, transactionNo, responseCode, amount);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.booking.payment.service.napas;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * The vpc_SecureHash of the NAPAS Virtual Payment Client: the HMAC-SHA256, keyed by the hex decoded secure secret
+ * of the merchant, of the "name=value" pairs of the parameters joined by "&amp;", in the ascending order of their names.
+ * <p>
+ * The secret is decoded once. Each thread then keeps its own initialized {@link Mac} and buffers, so computing a
+ * hash allocates nothing.
+ */
+public final class VpcSecureHash {
+
+    public static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * The value of vpc_SecureHashType for this hash.
+     */
+    public static final String TYPE = "SHA256";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<State> state;
+
+    public VpcSecureHash(String secureSecret) {
+        if (secureSecret == null || secureSecret.isEmpty()) {
+            throw new IllegalArgumentException("The secure secret of the merchant is missing");
+        }
+        this.key = new SecretKeySpec(DatatypeConverter.parseHexBinary(secureSecret), ALGORITHM);
+        this.state = ThreadLocal.withInitial(() -> new State(key));
+        // Fail at startup rather than at the first payment if the key is not usable
+        state.get();
+    }
+
+    /**
+     * Append the upper case hex hash of a canonical string to a buffer.
+     *
+     * @param canonical the sorted "name=value" pairs of the parameters, joined by "&amp;"
+     * @param target the buffer to append the hash to
+     * @return the target
+     */
+    public StringBuilder appendHash(CharSequence canonical, StringBuilder target) {
+        byte[] hash = state.get().hash(canonical);
+        for (byte b : hash) {
+            target.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return target;
+    }
+
+    /**
+     * Check a hash received from the gateway against the hash of a canonical string.
+     * <p>
+     * The comparison takes the same time whatever the position of the first difference, so the response time
+     * tells nothing about the expected hash.
+     *
+     * @param canonical the sorted "name=value" pairs of the parameters, joined by "&amp;"
+     * @param receivedHash the hex hash, in upper or lower case
+     * @return true if the hashes are the same
+     */
+    public boolean verify(CharSequence canonical, CharSequence receivedHash) {
+        byte[] hash = state.get().hash(canonical);
+        if (receivedHash == null || receivedHash.length() != hash.length * 2) {
+            return false;
+        }
+        int difference = 0;
+        for (int i = 0; i < hash.length; i++) {
+            // An invalid digit gives a negative value, which can't match any byte
+            int value = (hexValue(receivedHash.charAt(2 * i)) << 4) | hexValue(receivedHash.charAt(2 * i + 1));
+            difference |= value ^ (hash[i] & 0xFF);
+        }
+        return difference == 0;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * The Mac and buffers of a thread.
+     */
+    private static final class State {
+
+        private final Mac mac;
+
+        private final byte[] hash;
+
+        private byte[] bytes = new byte[1024];
+
+        State(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not initialize the " + ALGORITHM + " of the NAPAS gateway", e);
+            }
+            hash = new byte[mac.getMacLength()];
+        }
+
+        byte[] hash(CharSequence canonical) {
+            int length = encode(canonical);
+            mac.update(bytes, 0, length);
+            try {
+                // doFinal also resets the Mac, which is ready for the next hash with the same key
+                mac.doFinal(hash, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return hash;
+        }
+
+        /**
+         * UTF-8 encode the canonical string in the reused byte buffer, growing it when needed.
+         */
+        private int encode(CharSequence canonical) {
+            int maxLength = canonical.length() * 3;
+            if (bytes.length < maxLength) {
+                bytes = Arrays.copyOf(bytes, Math.max(maxLength, bytes.length * 2));
+            }
+            int position = 0;
+            for (int i = 0; i < canonical.length(); i++) {
+                char c = canonical.charAt(i);
+                if (c < 0x80) {
+                    bytes[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xC0 | (c >> 6));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < canonical.length() &&
+                    Character.isLowSurrogate(canonical.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, canonical.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[position++] = (byte) (0xE0 | (c >> 12));
+                    bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.booking.payment.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.service.DepositExportService;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Locale;
+
+/**
+ * REST controller for exporting all the Deposits.
+ */
+@RestController
+@RequestMapping("/api")
+public class DepositExportResource {
+
+    private final Logger log = LoggerFactory.getLogger(DepositExportResource.class);
+
+    private static final String ENTITY_NAME = "deposit";
+
+    private final DepositExportService depositExportService;
+
+    private final ApplicationProperties applicationProperties;
+
+    public DepositExportResource(DepositExportService depositExportService, ApplicationProperties applicationProperties) {
+        this.depositExportService = depositExportService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * GET  /deposits/_export?format=:format : stream all the deposits, ordered by id.
+     * <p>
+     * The response body is written asynchronously while the deposits are read from the database,
+     * so it is never held in memory, within "application.export.timeout" rather than the timeout of the other
+     * asynchronous requests.
+     *
+     * @param format the export format, "ndjson" (the default) or "csv"
+     * @param response the response the deposits are streamed to
+     * @return the task writing the deposits to the response, with status 200 (OK),
+     * or status 400 (Bad Request) if the format is not supported
+     */
+    @GetMapping("/deposits/_export")
+    @Timed
+    public WebAsyncTask<Void> exportDeposits(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) {
+        log.debug("REST request to export all Deposits as {}", format);
+        DepositExportService.Format exportFormat;
+        try {
+            exportFormat = DepositExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Unsupported export format", ENTITY_NAME, "invalidexportformat");
+        }
+        response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"deposits." + exportFormat.getExtension() + "\"");
+        return new WebAsyncTask<>(applicationProperties.getExport().getTimeout(), () -> {
+            depositExportService.export(exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
+}
@@ -1,15 +1,27 @@
 package com.booking.payment.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.booking.payment.aop.idempotency.Idempotent;
+import com.booking.payment.config.ApplicationProperties;
 import com.booking.payment.service.DepositService;
 import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import com.booking.payment.web.rest.errors.BookingCodeAlreadyUsedException;
+import com.booking.payment.web.rest.errors.PreconditionFailedException;
 import com.booking.payment.web.rest.util.HeaderUtil;
+import com.booking.payment.web.rest.util.PaginationUtil;
+import com.booking.payment.service.dto.BulkItemResultDTO;
 import com.booking.payment.service.dto.DepositDTO;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -31,25 +43,43 @@ public class DepositResource {
 
     private static final String ENTITY_NAME = "deposit";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The default "index.max_result_window" of Elasticsearch, the deepest hit reachable by page number.
+     */
+    private static final int MAX_SEARCH_RESULT_WINDOW = 10000;
+
     private final DepositService depositService;
 
-    public DepositResource(DepositService depositService) {
+    private final ApplicationProperties applicationProperties;
+
+    public DepositResource(DepositService depositService, ApplicationProperties applicationProperties) {
         this.depositService = depositService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
      * POST  /deposits : Create a new deposit.
+     * <p>
+     * A retry with the same Idempotency-Key header as an earlier successful creation gets the response to that
+     * creation, marked by the Idempotent-Replayed header, instead of creating another deposit.
      *
      * @param depositDTO the depositDTO to create
      * @return the ResponseEntity with status 201 (Created) and with body the new depositDTO, or with status 400 (Bad Request) if the deposit has already an ID
+     * or if its booking code is already used, or if its Idempotency-Key was used by another request,
+     * or with status 409 (Conflict) if a request with the same Idempotency-Key is still in progress
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PostMapping("/deposits")
     @Timed
+    @Idempotent
     public ResponseEntity<DepositDTO> createDeposit(@RequestBody DepositDTO depositDTO) throws URISyntaxException {
         log.debug("REST request to save Deposit : {}", depositDTO);
         if (depositDTO.getId() != null) {
             throw new BadRequestAlertException("A new deposit cannot already have an ID", ENTITY_NAME, "idexists");
+        } else if (depositDTO.getBookingCode() != null && depositService.findOneByBookingCode(depositDTO.getBookingCode()).isPresent()) {
+            throw new BookingCodeAlreadyUsedException();
         }
         DepositDTO result = depositService.save(depositDTO);
         return ResponseEntity.created(new URI("/api/deposits/" + result.getId()))
@@ -57,52 +87,144 @@ public class DepositResource {
             .body(result);
     }
 
+    /**
+     * POST  /deposits/_bulk : Create new deposits in bulk.
+     *
+     * @param depositDTOs the depositDTOs to create
+     * @return the ResponseEntity with status 200 (OK) and with body the result of each depositDTO, in the same order,
+     * or with status 400 (Bad Request) if there are more depositDTOs than allowed by "application.bulk.max-items"
+     */
+    @PostMapping("/deposits/_bulk")
+    @Timed
+    public ResponseEntity<List<BulkItemResultDTO>> createDeposits(@RequestBody List<DepositDTO> depositDTOs) {
+        log.debug("REST request to save {} Deposits in bulk", depositDTOs.size());
+        if (depositDTOs.size() > applicationProperties.getBulk().getMaxItems()) {
+            throw new BadRequestAlertException("Too many deposits in a bulk request", ENTITY_NAME, "bulktoolarge");
+        }
+        return ResponseEntity.ok(depositService.saveAll(depositDTOs));
+    }
+
     /**
      * PUT  /deposits : Updates an existing deposit.
+     * <p>
+     * The update only applies to the version of the deposit given by the If-Match header, or else by the
+     * depositDTO itself. The amount and the currency of the deposit can't be updated, as its payments are signed
+     * for them.
      *
      * @param depositDTO the depositDTO to update
+     * @param ifMatch the ETags of the deposit the update applies to, or null
      * @return the ResponseEntity with status 200 (OK) and with body the updated depositDTO,
-     * or with status 400 (Bad Request) if the depositDTO is not valid,
+     * or with status 400 (Bad Request) if the depositDTO is not valid, or if its amount or its currency differ from
+     * the ones of the deposit,
+     * or with status 409 (Conflict) if the version of the depositDTO is not the current one,
+     * or with status 412 (Precondition Failed) if the If-Match header doesn't match the current deposit,
      * or with status 500 (Internal Server Error) if the depositDTO couldn't be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PutMapping("/deposits")
     @Timed
-    public ResponseEntity<DepositDTO> updateDeposit(@RequestBody DepositDTO depositDTO) throws URISyntaxException {
+    public ResponseEntity<DepositDTO> updateDeposit(@RequestBody DepositDTO depositDTO,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+        throws URISyntaxException {
         log.debug("REST request to update Deposit : {}", depositDTO);
         if (depositDTO.getId() == null) {
             return createDeposit(depositDTO);
         }
+        if (ifMatch != null) {
+            DepositDTO currentDeposit = depositService.findOne(depositDTO.getId());
+            if (currentDeposit == null || !eTagMatches(ifMatch, currentDeposit.getVersion())) {
+                throw new PreconditionFailedException("The deposit has been modified");
+            }
+            depositDTO.setVersion(currentDeposit.getVersion());
+        }
+        if (depositDTO.getBookingCode() != null) {
+            Optional<DepositDTO> existingDeposit = depositService.findOneByBookingCode(depositDTO.getBookingCode());
+            if (existingDeposit.isPresent() && !existingDeposit.get().getId().equals(depositDTO.getId())) {
+                throw new BookingCodeAlreadyUsedException();
+            }
+        }
         DepositDTO result = depositService.save(depositDTO);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, depositDTO.getId().toString()))
+            .eTag(eTag(result.getVersion()))
             .body(result);
     }
 
     /**
-     * GET  /deposits : get all the deposits.
+     * GET  /deposits : get a page of the deposits, using keyset pagination on the id.
      *
-     * @return the ResponseEntity with status 200 (OK) and the list of deposits in body
+     * @param cursor the opaque cursor returned in the "next" link of the previous page, or null for the first page
+     * @param size the number of deposits per page
+     * @param withTotal whether to return an approximate total count in the X-Total-Count header
+     * @return the ResponseEntity with status 200 (OK) and the list of deposits in body,
+     * or with status 400 (Bad Request) if the cursor is not valid
      */
     @GetMapping("/deposits")
     @Timed
-    public List<DepositDTO> getAllDeposits() {
-        log.debug("REST request to get all Deposits");
-        return depositService.findAll();
-        }
+    public ResponseEntity<List<DepositDTO>> getAllDeposits(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "20") int size,
+                                                           @RequestParam(defaultValue = "false") boolean withTotal) {
+        log.debug("REST request to get a page of Deposits after cursor {}", cursor);
+        Long afterId = cursor == null ? null : decodeCursor(cursor);
+        Slice<DepositDTO> slice = depositService.findAllAfter(afterId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Long total = withTotal ? depositService.countApproximately() : null;
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, nextCursor(slice), total, "/api/deposits");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /users/:userId/deposits : get a page of the deposits of the "userId" user, using keyset pagination on the id.
+     *
+     * @param userId the id of the user
+     * @param cursor the opaque cursor returned in the "next" link of the previous page, or null for the first page
+     * @param size the number of deposits per page
+     * @return the ResponseEntity with status 200 (OK) and the list of deposits in body,
+     * or with status 400 (Bad Request) if the cursor is not valid
+     */
+    @GetMapping("/users/{userId}/deposits")
+    @Timed
+    public ResponseEntity<List<DepositDTO>> getUserDeposits(@PathVariable Long userId, @RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get a page of the Deposits of user {} after cursor {}", userId, cursor);
+        Long afterId = cursor == null ? null : decodeCursor(cursor);
+        Slice<DepositDTO> slice = depositService.findAllByUserIdAfter(userId, afterId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, nextCursor(slice), null,
+            "/api/users/" + userId + "/deposits");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
 
     /**
      * GET  /deposits/:id : get the "id" deposit.
+     * <p>
+     * The response has the version of the deposit as a strong ETag. When it matches the If-None-Match header, the
+     * response is a 304 (Not Modified) without body: the deposit is then only read, from the second level cache,
+     * and never serialized.
      *
      * @param id the id of the depositDTO to retrieve
-     * @return the ResponseEntity with status 200 (OK) and with body the depositDTO, or with status 404 (Not Found)
+     * @return the ResponseEntity with status 200 (OK) and with body the depositDTO, or with status 304 (Not Modified),
+     * or with status 404 (Not Found)
      */
     @GetMapping("/deposits/{id}")
     @Timed
     public ResponseEntity<DepositDTO> getDeposit(@PathVariable Long id) {
         log.debug("REST request to get Deposit : {}", id);
         DepositDTO depositDTO = depositService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(depositDTO));
+        return Optional.ofNullable(depositDTO)
+            .map(result -> ResponseEntity.ok().eTag(eTag(result.getVersion())).body(result))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * GET  /deposits/booking-code/:bookingCode : get the deposit with the "bookingCode" booking code.
+     *
+     * @param bookingCode the booking code of the depositDTO to retrieve
+     * @return the ResponseEntity with status 200 (OK) and with body the depositDTO, or with status 404 (Not Found)
+     */
+    @GetMapping("/deposits/booking-code/{bookingCode}")
+    @Timed
+    public ResponseEntity<DepositDTO> getDepositByBookingCode(@PathVariable String bookingCode) {
+        log.debug("REST request to get Deposit by booking code : {}", bookingCode);
+        return ResponseUtil.wrapOrNotFound(depositService.findOneByBookingCode(bookingCode));
     }
 
     /**
@@ -122,15 +244,111 @@ public class DepositResource {
     /**
      * SEARCH  /_search/deposits?query=:query : search for the deposit corresponding
      * to the query.
+     * <p>
+     * Pages deeper than the Elasticsearch result window must be requested with a cursor: an empty "cursor" parameter
+     * gets the first page ordered by id, and the "next" link carries the cursor of the following one.
      *
      * @param query the query of the deposit search
-     * @return the result of the search
+     * @param cursor the opaque cursor returned in the "next" link of the previous page, empty for the first page,
+     * or null to use the page number of the pageable instead
+     * @param fields the fields of the deposits to return, or null to return all of them
+     * @param pageable the pagination information
+     * @return the result of the search, or with status 400 (Bad Request) if the cursor is not valid or the page is too deep
      */
     @GetMapping("/_search/deposits")
     @Timed
-    public List<DepositDTO> searchDeposits(@RequestParam String query) {
-        log.debug("REST request to search Deposits for query {}", query);
-        return depositService.search(query);
+    public ResponseEntity<List<DepositDTO>> searchDeposits(@RequestParam String query, @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) String[] fields, Pageable pageable) {
+        log.debug("REST request to search for a page of Deposits for query {}", query);
+        UriComponentsBuilder baseUrl = UriComponentsBuilder.fromPath("/api/_search/deposits");
+        if (fields != null) {
+            baseUrl.queryParam("fields", String.join(",", fields));
+        }
+        if (cursor != null) {
+            Long afterId = cursor.isEmpty() ? null : decodeCursor(cursor);
+            Slice<DepositDTO> slice = depositService.searchAfter(query, afterId,
+                Math.max(1, Math.min(pageable.getPageSize(), MAX_PAGE_SIZE)), fields);
+            HttpHeaders headers = PaginationUtil.generateSearchAfterPaginationHttpHeaders(query, slice, nextCursor(slice),
+                baseUrl.toUriString());
+            return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+        }
+        if (pageable.getOffset() + pageable.getPageSize() > MAX_SEARCH_RESULT_WINDOW) {
+            throw new BadRequestAlertException("Search results this deep must be paged with a cursor", ENTITY_NAME, "searchtoodeep");
+        }
+        Page<DepositDTO> page = depositService.search(query, pageable, fields);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, baseUrl.toUriString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * SEARCH  /_search/deposits/_filter : get the deposits with the given booking code, user id and/or currency code.
+     * <p>
+     * Unlike the query string search, the values must match exactly, and the matching is not scored.
+     *
+     * @param bookingCode the booking code of the deposits
+     * @param userId the user id of the deposits
+     * @param currencyCode the currency code of the deposits
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of deposits in body,
+     * or with status 400 (Bad Request) if no filter is given
+     */
+    @GetMapping("/_search/deposits/_filter")
+    @Timed
+    public ResponseEntity<List<DepositDTO>> filterDeposits(@RequestParam(required = false) String bookingCode,
+                                                           @RequestParam(required = false) Long userId,
+                                                           @RequestParam(required = false) String currencyCode,
+                                                           Pageable pageable) {
+        log.debug("REST request to filter Deposits by bookingCode {}, userId {} and currencyCode {}", bookingCode, userId, currencyCode);
+        if (bookingCode == null && userId == null && currencyCode == null) {
+            throw new BadRequestAlertException("At least one filter is required", ENTITY_NAME, "nofilter");
+        }
+        if (pageable.getOffset() + pageable.getPageSize() > MAX_SEARCH_RESULT_WINDOW) {
+            throw new BadRequestAlertException("Filter results this deep cannot be paged", ENTITY_NAME, "searchtoodeep");
+        }
+        Page<DepositDTO> page = depositService.filter(bookingCode, userId, currencyCode, pageable);
+        UriComponentsBuilder baseUrl = UriComponentsBuilder.fromPath("/api/_search/deposits/_filter");
+        if (bookingCode != null) {
+            baseUrl.queryParam("bookingCode", bookingCode);
+        }
+        if (userId != null) {
+            baseUrl.queryParam("userId", userId);
+        }
+        if (currencyCode != null) {
+            baseUrl.queryParam("currencyCode", currencyCode);
+        }
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, baseUrl.build().toUriString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    private static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Strong comparison of the ETags of an If-Match header with the ETag of a version.
+     */
+    private static boolean eTagMatches(String ifMatch, Long version) {
+        String eTag = eTag(version);
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Long decodeCursor(String cursor) {
+        try {
+            return PaginationUtil.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid pagination cursor", ENTITY_NAME, "invalidcursor");
+        }
+    }
+
+    private String nextCursor(Slice<DepositDTO> slice) {
+        return slice.hasContent()
+            ? PaginationUtil.encodeCursor(slice.getContent().get(slice.getNumberOfElements() - 1).getId())
+            : null;
+    }
 }
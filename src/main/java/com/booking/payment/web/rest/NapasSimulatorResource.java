@@ -0,0 +1,57 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.config.Constants;
+import com.booking.payment.service.napas.NapasGatewaySimulator;
+
+import com.codahale.metrics.annotation.Timed;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller serving the simulator of the NAPAS gateway, with the "napas-simulator" profile.
+ * <p>
+ * The paths are the ones of the real gateway, so that only the host changes in the "napas.gateway" properties.
+ */
+@RestController
+@Profile(Constants.SPRING_PROFILE_NAPAS_SIMULATOR)
+@RequestMapping("/napas-simulator/gateway")
+public class NapasSimulatorResource {
+
+    private final NapasGatewaySimulator napasGatewaySimulator;
+
+    public NapasSimulatorResource(NapasGatewaySimulator napasGatewaySimulator) {
+        this.napasGatewaySimulator = napasGatewaySimulator;
+    }
+
+    /**
+     * GET  /vpcpay.do : the payment page, which redirects to the return URL with the result of the payment.
+     *
+     * @param request the signed payment request
+     * @return the future ResponseEntity with status 302 (Found) to the return URL,
+     * or with status 400 (Bad Request) if the request is not signed,
+     * or with status 503 (Service Unavailable) for a simulated error
+     */
+    @GetMapping("/vpcpay.do")
+    @Timed
+    public CompletableFuture<ResponseEntity<Void>> pay(HttpServletRequest request) {
+        return napasGatewaySimulator.pay(request.getParameterMap());
+    }
+
+    /**
+     * POST  /vpcdps.do : the back-office API, with the queryDR and refund commands.
+     *
+     * @param request the signed command
+     * @return the future ResponseEntity with status 200 (OK) and with the signed result as a form in body,
+     * or with status 400 (Bad Request) if the command is not signed or not supported,
+     * or with status 503 (Service Unavailable) for a simulated error
+     */
+    @PostMapping("/vpcdps.do")
+    @Timed
+    public CompletableFuture<ResponseEntity<String>> query(HttpServletRequest request) {
+        return napasGatewaySimulator.query(request.getParameterMap());
+    }
+}
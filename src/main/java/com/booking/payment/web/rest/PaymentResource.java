@@ -3,12 +3,34 @@
  */
 package com.booking.payment.web.rest;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.service.dto.DepositDTO;
+import com.booking.payment.service.dto.GatewayTransactionDTO;
+import com.booking.payment.service.dto.PaymentRequestDTO;
+import com.booking.payment.service.dto.PaymentUrlDTO;
+import com.booking.payment.service.napas.NapasCallbackService;
+import com.booking.payment.service.napas.NapasGatewayClient;
+import com.booking.payment.service.napas.NapasPaymentService;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+import com.codahale.metrics.annotation.Timed;
+
+import io.github.jhipster.web.util.ResponseUtil;
 
 /**
  * @author Tuan Nguyen
@@ -18,12 +40,75 @@ import com.booking.payment.config.NapasGatewayProperties;
 @RequestMapping("/api")
 public class PaymentResource {
 
-	@Autowired
-	private NapasGatewayProperties gatewayProperties;
-	
-	@GetMapping("/gateway-properties")
-	public NapasGatewayProperties gatewayProperties() {
-		return this.gatewayProperties;
+	private final Logger log = LoggerFactory.getLogger(PaymentResource.class);
+
+	private static final String ENTITY_NAME = "payment";
+
+	private final NapasPaymentService napasPaymentService;
+
+	private final NapasCallbackService napasCallbackService;
+
+	private final NapasGatewayClient napasGatewayClient;
+
+	public PaymentResource(NapasPaymentService napasPaymentService, NapasCallbackService napasCallbackService,
+			NapasGatewayClient napasGatewayClient) {
+		this.napasPaymentService = napasPaymentService;
+		this.napasCallbackService = napasCallbackService;
+		this.napasGatewayClient = napasGatewayClient;
 	}
-	
+
+	/**
+	 * POST  /payments : Initiate the payment of a deposit through the NAPAS gateway.
+	 *
+	 * @param paymentRequest the deposit and the amount to pay
+	 * @param request the request of the customer, whose IP address is sent to the gateway
+	 * @return the ResponseEntity with status 200 (OK) and with body the signed URL of the payment page,
+	 * or with status 400 (Bad Request) if the paymentRequest is not valid,
+	 * or with status 404 (Not Found) if the deposit doesn't exist,
+	 * or with status 409 (Conflict) if the deposit is no longer pending payment
+	 */
+	@PostMapping("/payments")
+	@Timed
+	public ResponseEntity<PaymentUrlDTO> initiatePayment(@Valid @RequestBody PaymentRequestDTO paymentRequest,
+			HttpServletRequest request) {
+		log.debug("REST request to initiate the payment : {}", paymentRequest);
+		return ResponseUtil.wrapOrNotFound(napasPaymentService.initiatePayment(paymentRequest, request.getRemoteAddr()));
+	}
+
+	/**
+	 * GET  /payments/:merchTxnRef/gateway-transaction : Query the NAPAS gateway for the result of a payment.
+	 * <p>
+	 * The request is processed asynchronously, so it doesn't hold a worker thread while the gateway answers.
+	 *
+	 * @param merchTxnRef the reference of the payment
+	 * @return the future transaction, as reported by the gateway,
+	 * or failed with status 503 (Service Unavailable) if the call to the gateway was refused
+	 */
+	@GetMapping("/payments/{merchTxnRef}/gateway-transaction")
+	@Timed
+	public CompletableFuture<GatewayTransactionDTO> getGatewayTransaction(@PathVariable String merchTxnRef) {
+		log.debug("REST request to query the gateway transaction : {}", merchTxnRef);
+		return napasGatewayClient.queryDR(merchTxnRef);
+	}
+
+	/**
+	 * GET or POST  /payments/napas/return and /payments/napas/ipn : Complete the payment of a deposit, with the
+	 * result sent by the NAPAS gateway to the return URL or to the IPN URL.
+	 *
+	 * @param request the callback request, whose parameters are signed by the gateway
+	 * @return the ResponseEntity with status 200 (OK) and with body the deposit in its final status,
+	 * or with status 400 (Bad Request) if the secure hash of the parameters is not valid,
+	 * or with status 404 (Not Found) if the payment is not for an existing deposit
+	 */
+	@RequestMapping(value = { "/payments/napas/return", "/payments/napas/ipn" }, method = { RequestMethod.GET, RequestMethod.POST })
+	@Timed
+	public ResponseEntity<DepositDTO> napasCallback(HttpServletRequest request) {
+		Map<String, String[]> parameters = request.getParameterMap();
+		if (!napasCallbackService.verify(parameters)) {
+			log.warn("Rejected a NAPAS callback with an invalid secure hash, from {}", request.getRemoteAddr());
+			throw new BadRequestAlertException("Invalid secure hash", ENTITY_NAME, "invalidsecurehash");
+		}
+		return ResponseUtil.wrapOrNotFound(napasCallbackService.complete(parameters));
+	}
+
 }
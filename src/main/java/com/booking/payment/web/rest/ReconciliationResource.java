@@ -0,0 +1,56 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.service.DepositReconciliationService;
+import com.booking.payment.service.dto.ReconciliationResultDTO;
+import com.booking.payment.web.rest.errors.BadRequestAlertException;
+
+import com.codahale.metrics.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller for reconciling the settlement files of the NAPAS gateway with the deposits.
+ */
+@RestController
+@RequestMapping("/management")
+public class ReconciliationResource {
+
+    private final Logger log = LoggerFactory.getLogger(ReconciliationResource.class);
+
+    private static final String ENTITY_NAME = "reconciliation";
+
+    private final DepositReconciliationService depositReconciliationService;
+
+    public ReconciliationResource(DepositReconciliationService depositReconciliationService) {
+        this.depositReconciliationService = depositReconciliationService;
+    }
+
+    /**
+     * POST  /reconciliations : reconcile a settlement file with the deposits, and write the mismatches to a report
+     * in the report directory.
+     * <p>
+     * The reconciliation runs on the task executor, and the response is sent once it is over.
+     *
+     * @param file the name of the settlement file, in the settlement directory
+     * @param date the day of the settlement file, by default the yyyyMMdd date in its name
+     * @return the future result of the reconciliation,
+     * or status 400 (Bad Request) if there is no such settlement file, or if its day is unknown
+     */
+    @PostMapping("/reconciliations")
+    @Timed
+    public CompletableFuture<ReconciliationResultDTO> reconcile(@RequestParam String file,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.debug("REST request to reconcile the settlement file {} of {}", file, date);
+        Path settlementFile = depositReconciliationService.findSettlementFile(file)
+            .orElseThrow(() -> new BadRequestAlertException("Unknown settlement file", ENTITY_NAME, "settlementfilenotfound"));
+        LocalDate settlementDate = date != null ? date : depositReconciliationService.findSettlementDate(file)
+            .orElseThrow(() -> new BadRequestAlertException("Unknown settlement date", ENTITY_NAME, "settlementdatemissing"));
+        return depositReconciliationService.reconcile(settlementFile, settlementDate);
+    }
+}
@@ -0,0 +1,60 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.service.DepositReindexService;
+import com.booking.payment.service.dto.ReindexStatusDTO;
+import com.booking.payment.web.rest.util.HeaderUtil;
+
+import com.codahale.metrics.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for rebuilding the Deposit index, and following its progress.
+ */
+@RestController
+@RequestMapping("/management")
+public class ReindexResource {
+
+    private final Logger log = LoggerFactory.getLogger(ReindexResource.class);
+
+    private static final String ENTITY_NAME = "reindex";
+
+    private final DepositReindexService depositReindexService;
+
+    public ReindexResource(DepositReindexService depositReindexService) {
+        this.depositReindexService = depositReindexService;
+    }
+
+    /**
+     * POST  /reindex : start a reindex of all the deposits, resuming the previous one if it did not complete.
+     *
+     * @param restart true to ignore the checkpoints of the previous reindex
+     * @return the ResponseEntity with status 202 (Accepted) and the status of the reindex in body,
+     * or with status 409 (Conflict) if a reindex is already running
+     */
+    @PostMapping("/reindex")
+    @Timed
+    public ResponseEntity<ReindexStatusDTO> startReindex(@RequestParam(defaultValue = "false") boolean restart) {
+        log.debug("REST request to start a reindex, restart: {}", restart);
+        if (!depositReindexService.start(restart)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .headers(HeaderUtil.createFailureAlert(ENTITY_NAME, "reindexrunning", "A reindex is already running"))
+                .body(depositReindexService.getStatus());
+        }
+        return ResponseEntity.accepted().body(depositReindexService.getStatus());
+    }
+
+    /**
+     * GET  /reindex : get the progress of the current, or of the last, reindex.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the status of the reindex in body
+     */
+    @GetMapping("/reindex")
+    @Timed
+    public ReindexStatusDTO getReindexStatus() {
+        return depositReindexService.getStatus();
+    }
+}
@@ -0,0 +1,8 @@
+package com.booking.payment.web.rest.errors;
+
+public class BookingCodeAlreadyUsedException extends BadRequestAlertException {
+
+    public BookingCodeAlreadyUsedException() {
+        super(ErrorConstants.BOOKING_CODE_ALREADY_USED_TYPE, "Booking code already in use", "deposit", "bookingcodeexists");
+    }
+}
@@ -0,0 +1,14 @@
+package com.booking.payment.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+/**
+ * Thrown when a payment is initiated for a deposit that is no longer PENDING, returns a Conflict code.
+ */
+public class DepositNotPendingException extends AbstractThrowableProblem {
+
+    public DepositNotPendingException() {
+        super(ErrorConstants.DEFAULT_TYPE, "The deposit is no longer pending payment", Status.CONFLICT);
+    }
+}
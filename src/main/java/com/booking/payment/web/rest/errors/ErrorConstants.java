@@ -6,6 +6,7 @@ public final class ErrorConstants {
 
     public static final String ERR_CONCURRENCY_FAILURE = "error.concurrencyFailure";
     public static final String ERR_VALIDATION = "error.validation";
+    public static final String ERR_GATEWAY_UNAVAILABLE = "error.gatewayUnavailable";
     public static final String PROBLEM_BASE_URL = "http://www.jhipster.tech/problem";
     public static final URI DEFAULT_TYPE = URI.create(PROBLEM_BASE_URL + "/problem-with-message");
     public static final URI CONSTRAINT_VIOLATION_TYPE = URI.create(PROBLEM_BASE_URL + "/constraint-violation");
@@ -14,6 +15,8 @@ public final class ErrorConstants {
     public static final URI EMAIL_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/email-already-used");
     public static final URI LOGIN_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/login-already-used");
     public static final URI EMAIL_NOT_FOUND_TYPE = URI.create(PROBLEM_BASE_URL + "/email-not-found");
+    public static final URI BOOKING_CODE_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/booking-code-already-used");
+    public static final URI GATEWAY_UNAVAILABLE_TYPE = URI.create(PROBLEM_BASE_URL + "/gateway-unavailable");
 
     private ErrorConstants() {
     }
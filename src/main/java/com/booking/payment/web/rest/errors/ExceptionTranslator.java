@@ -1,5 +1,6 @@
 package com.booking.payment.web.rest.errors;
 
+import com.booking.payment.service.napas.GatewayUnavailableException;
 import com.booking.payment.web.rest.util.HeaderUtil;
 
 import org.springframework.dao.ConcurrencyFailureException;
@@ -95,4 +96,16 @@ public class ExceptionTranslator implements ProblemHandling {
             .build();
         return create(ex, problem, request);
     }
+
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<Problem> handleGatewayUnavailable(GatewayUnavailableException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withType(ErrorConstants.GATEWAY_UNAVAILABLE_TYPE)
+            .withTitle("Payment gateway unavailable")
+            .withStatus(Status.SERVICE_UNAVAILABLE)
+            .withDetail(ex.getMessage())
+            .with("message", ErrorConstants.ERR_GATEWAY_UNAVAILABLE)
+            .build();
+        return create(ex, problem, request);
+    }
 }
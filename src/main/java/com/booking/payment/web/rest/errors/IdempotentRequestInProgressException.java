@@ -0,0 +1,15 @@
+package com.booking.payment.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+/**
+ * Thrown when a request with an Idempotency-Key can't wait any longer for another request with the same key to
+ * complete, returns a Conflict code.
+ */
+public class IdempotentRequestInProgressException extends AbstractThrowableProblem {
+
+    public IdempotentRequestInProgressException() {
+        super(ErrorConstants.DEFAULT_TYPE, "A request with the same Idempotency-Key is in progress", Status.CONFLICT);
+    }
+}
@@ -0,0 +1,14 @@
+package com.booking.payment.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+/**
+ * Simple exception with a message, that returns a Precondition Failed code.
+ */
+public class PreconditionFailedException extends AbstractThrowableProblem {
+
+    public PreconditionFailedException(String message) {
+        super(ErrorConstants.DEFAULT_TYPE, message, Status.PRECONDITION_FAILED);
+    }
+}
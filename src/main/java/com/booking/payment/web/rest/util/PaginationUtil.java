@@ -1,11 +1,14 @@
 package com.booking.payment.web.rest.util;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.Base64;
 
 /**
  * Utility class for handling pagination.
@@ -13,6 +16,9 @@ import java.net.URLEncoder;
  * <p>
  * Pagination uses the same principles as the <a href="https://developer.github.com/v3/#pagination">GitHub API</a>,
  * and follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link header)</a>.
+ * <p>
+ * Keyset pagination uses opaque cursors instead of page numbers, so that fetching a page never
+ * needs to skip over the previous ones, whatever the size of the table.
  */
 public final class PaginationUtil {
 
@@ -47,12 +53,7 @@ public final class PaginationUtil {
     }
 
     public static HttpHeaders generateSearchPaginationHttpHeaders(String query, Page page, String baseUrl) {
-        String escapedQuery;
-        try {
-            escapedQuery = URLEncoder.encode(query, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        String escapedQuery = escapeQuery(query);
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-Total-Count", Long.toString(page.getTotalElements()));
         String link = "";
@@ -73,4 +74,68 @@ public final class PaginationUtil {
         headers.add(HttpHeaders.LINK, link);
         return headers;
     }
+
+    public static HttpHeaders generateSearchAfterPaginationHttpHeaders(String query, Slice slice, String nextCursor, String baseUrl) {
+        String escapedQuery = escapeQuery(query);
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (slice.hasNext() && nextCursor != null) {
+            link = "<" + generateKeysetUri(baseUrl, nextCursor, slice.getSize()) + "&query=" + escapedQuery + ">; rel=\"next\",";
+        }
+        // an empty cursor keeps the first page in cursor mode
+        link += "<" + generateKeysetUri(baseUrl, "", slice.getSize()) + "&query=" + escapedQuery + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String escapeQuery(String query) {
+        try {
+            return URLEncoder.encode(query, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(Slice slice, String nextCursor, Long totalCount, String baseUrl) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalCount != null) {
+            headers.add("X-Total-Count", Long.toString(totalCount));
+        }
+        String link = "";
+        if (slice.hasNext() && nextCursor != null) {
+            link = "<" + generateKeysetUri(baseUrl, nextCursor, slice.getSize()) + ">; rel=\"next\",";
+        }
+        link += "<" + generateKeysetUri(baseUrl, null, slice.getSize()) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateKeysetUri(String baseUrl, String cursor, int size) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl);
+        if (cursor != null) {
+            builder.queryParam("cursor", cursor);
+        }
+        return builder.queryParam("size", size).toUriString();
+    }
+
+    /**
+     * Encode the sort key of the last element of a slice into an opaque, URL-safe cursor.
+     */
+    public static String encodeCursor(long key) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(key).array());
+    }
+
+    /**
+     * Decode a cursor created by {@link #encodeCursor(long)}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static long decodeCursor(String cursor) {
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
 }
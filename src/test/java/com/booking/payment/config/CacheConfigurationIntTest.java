@@ -0,0 +1,102 @@
+package com.booking.payment.config;
+
+import com.booking.payment.PaymentServiceApp;
+import com.booking.payment.repository.DepositRepository;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizeConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import io.github.jhipster.config.JHipsterProperties;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the Hazelcast maps configured by the CacheConfiguration.
+ *
+ * @see CacheConfiguration
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+public class CacheConfigurationIntTest {
+
+    @Autowired
+    private HazelcastInstance hazelcastInstance;
+
+    @Autowired
+    private JHipsterProperties jHipsterProperties;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Test
+    public void domainMapsAreBounded() {
+        MapConfig domainConfig = hazelcastInstance.getConfig().findMapConfig("com.booking.payment.domain.ReindexRange");
+        assertThat(domainConfig.getMaxSizeConfig().getMaxSizePolicy()).isEqualTo(MaxSizeConfig.MaxSizePolicy.PER_NODE);
+        assertThat(domainConfig.getMaxSizeConfig().getSize()).isEqualTo(10000);
+        assertThat(domainConfig.getEvictionPolicy()).isEqualTo(EvictionPolicy.LRU);
+        assertThat(domainConfig.getBackupCount()).isEqualTo(jHipsterProperties.getCache().getHazelcast().getBackupCount());
+        assertThat(domainConfig.getTimeToLiveSeconds())
+            .isEqualTo(jHipsterProperties.getCache().getHazelcast().getTimeToLiveSeconds());
+
+        MapConfig defaultConfig = hazelcastInstance.getConfig().findMapConfig("org.hibernate.cache.internal.StandardQueryCache");
+        assertThat(defaultConfig.getMaxSizeConfig().getSize()).isEqualTo(10000);
+        assertThat(defaultConfig.getBackupCount()).isEqualTo(0);
+        assertThat(hazelcastInstance.getConfig().findMapConfig(DepositRepository.DEPOSITS_BY_USER_CACHE).getEvictionPolicy())
+            .isEqualTo(EvictionPolicy.LRU);
+    }
+
+    @Test
+    public void entityRegionOverridesTheDomainMaps() {
+        MapConfig depositConfig = hazelcastInstance.getConfig().findMapConfig("com.booking.payment.domain.Deposit");
+        assertThat(depositConfig.getMaxSizeConfig().getSize()).isEqualTo(5000);
+        assertThat(depositConfig.getInMemoryFormat()).isEqualTo(InMemoryFormat.OBJECT);
+        assertThat(depositConfig.getTimeToLiveSeconds())
+            .isEqualTo(jHipsterProperties.getCache().getHazelcast().getTimeToLiveSeconds());
+        assertThat(depositConfig.getNearCacheConfig().getEvictionConfig().getSize()).isEqualTo(1000);
+        assertThat(depositConfig.getNearCacheConfig().isInvalidateOnChange()).isTrue();
+        assertThat(hazelcastInstance.getConfig().findMapConfig("com.booking.payment.domain.ReindexRange").getNearCacheConfig())
+            .isNull();
+    }
+
+    @Test
+    public void nearCacheStatisticsArePublished() throws InterruptedException {
+        String prefix = "hazelcast.near-cache.nearCacheMetricsTest.";
+        IMap<Long, String> map = hazelcastInstance.getMap("nearCacheMetricsTest");
+        try {
+            // The creation of the map is notified asynchronously
+            for (int i = 0; i < 50 && !metricRegistry.getGauges().containsKey(prefix + "hits"); i++) {
+                Thread.sleep(100);
+            }
+            map.put(1L, "deposit");
+            map.get(1L);
+            map.get(1L);
+            map.put(1L, "updated deposit");
+
+            // The update invalidated the entry, which is missed again
+            assertThat(map.get(1L)).isEqualTo("updated deposit");
+            assertThat((Long) metricRegistry.getGauges().get(prefix + "hits").getValue()).isEqualTo(1);
+            assertThat((Long) metricRegistry.getGauges().get(prefix + "misses").getValue()).isEqualTo(2);
+            assertThat((Long) metricRegistry.getGauges().get(prefix + "entries").getValue()).isEqualTo(1);
+        } finally {
+            map.destroy();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void heapPoliciesRequireTheBinaryFormat() {
+        ApplicationProperties.Region region = new ApplicationProperties.Region();
+        region.setInMemoryFormat(InMemoryFormat.OBJECT);
+        region.setMaxSizePolicy(MaxSizeConfig.MaxSizePolicy.USED_HEAP_PERCENTAGE);
+
+        CacheConfiguration.initializeRegionMapConfig(region, 3600, 1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.booking.payment.config;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.DepositDTO;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.spi.serialization.SerializationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the Hazelcast serialization of the deposits, with the DepositSerializers ("compact") against
+ * the Java serialization of their Serializable classes ("java"). The bytes per entry of each format are printed at
+ * the start of each fork.
+ * <p>
+ * It is not run by the build, run its main method from the IDE, or with the test classpath:
+ * java -cp target/test-classes:target/classes:... com.booking.payment.config.DepositSerializersBenchmark
+ *
+ * @see DepositSerializers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DepositSerializersBenchmark {
+
+    @Param({ "java", "compact" })
+    private String format;
+
+    private SerializationService serializationService;
+
+    private Deposit deposit;
+
+    private DepositDTO depositDTO;
+
+    private Data depositData;
+
+    private Data depositDTOData;
+
+    @Setup
+    public void setup() {
+        SerializationConfig serializationConfig = new SerializationConfig();
+        if ("compact".equals(format)) {
+            DepositSerializers.register(serializationConfig);
+        }
+        serializationService = new DefaultSerializationServiceBuilder().setConfig(serializationConfig).build();
+        deposit = new Deposit().bookingCode("BOOKING-1539849600").userId(1048576L).currencyCode("VND").amount(150000000L);
+        deposit.setId(1539849600L);
+        deposit.setVersion(2L);
+        deposit.setStatus(DepositStatus.SUCCESS);
+        deposit.setGatewayTransactionNo("1234567");
+        depositDTO = new DepositDTO(deposit.getId(), deposit.getBookingCode(), deposit.getUserId(), deposit.getCurrencyCode(),
+            deposit.getVersion(), deposit.getStatus(), deposit.getAmount(), deposit.getGatewayTransactionNo());
+        depositData = serializationService.toData(deposit);
+        depositDTOData = serializationService.toData(depositDTO);
+        System.out.println(format + ": " + depositData.totalSize() + " bytes per Deposit, " +
+            depositDTOData.totalSize() + " bytes per DepositDTO");
+    }
+
+    @Benchmark
+    public Data writeDeposit() {
+        return serializationService.toData(deposit);
+    }
+
+    @Benchmark
+    public Object readDeposit() {
+        return serializationService.toObject(depositData);
+    }
+
+    @Benchmark
+    public Data writeDepositDTO() {
+        return serializationService.toData(depositDTO);
+    }
+
+    @Benchmark
+    public Object readDepositDTO() {
+        return serializationService.toObject(depositDTOData);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(DepositSerializersBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.booking.payment.config;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.service.dto.CacheTombstone;
+import com.booking.payment.service.dto.CachedDepositDTO;
+import com.booking.payment.service.dto.DepositDTO;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.spi.serialization.SerializationService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the round trip of the deposits through the DepositSerializers.
+ *
+ * @see DepositSerializers
+ */
+public class DepositSerializersUnitTest {
+
+    private SerializationService serializationService;
+
+    @Before
+    public void setup() {
+        SerializationConfig serializationConfig = new SerializationConfig();
+        DepositSerializers.register(serializationConfig);
+        serializationService = new DefaultSerializationServiceBuilder().setConfig(serializationConfig).build();
+    }
+
+    @Test
+    public void depositRoundTrip() {
+        Deposit deposit = new Deposit().bookingCode("BOOKING-42").userId(7L).currencyCode("VND").amount(150000000L);
+        deposit.setId(42L);
+        deposit.setVersion(3L);
+        deposit.setStatus(DepositStatus.SUCCESS);
+        deposit.setGatewayTransactionNo("1234567");
+
+        Data data = serializationService.toData(deposit);
+        Deposit copy = serializationService.toObject(data);
+
+        assertThat(data.getType()).isEqualTo(DepositSerializers.DEPOSIT_TYPE_ID);
+        assertThat(copy).isEqualToComparingFieldByField(deposit);
+    }
+
+    @Test
+    public void depositWithNullFieldsRoundTrip() {
+        Deposit deposit = new Deposit().bookingCode("BOOKING-43");
+        deposit.setStatus(null);
+
+        Deposit copy = serializationService.toObject(serializationService.toData(deposit));
+
+        assertThat(copy).isEqualToComparingFieldByField(deposit);
+        assertThat(copy.getId()).isNull();
+        assertThat(copy.getStatus()).isNull();
+    }
+
+    @Test
+    public void depositDTOListRoundTrip() {
+        List<DepositDTO> depositDTOs = new ArrayList<>();
+        depositDTOs.add(new DepositDTO(42L, "BOOKING-42", 7L, "VND", 3L, DepositStatus.PENDING, 150000000L, null));
+        depositDTOs.add(new DepositDTO(43L, "BOOKING-43", null, null, 0L, DepositStatus.FAILED, null, "1234568"));
+
+        List<DepositDTO> copy = serializationService.toObject(serializationService.toData(depositDTOs));
+
+        assertThat(copy).hasSize(2);
+        for (int i = 0; i < copy.size(); i++) {
+            assertThat(copy.get(i)).isEqualToComparingFieldByField(depositDTOs.get(i));
+        }
+    }
+
+    @Test
+    public void cachedDepositDTORoundTrip() {
+        DepositDTO depositDTO = new DepositDTO(42L, "BOOKING-42", 7L, "VND", 3L, DepositStatus.PENDING, 150000000L, null);
+
+        CachedDepositDTO copy = serializationService.toObject(serializationService.toData(
+            new CachedDepositDTO(depositDTO, 1539849600000L, 3)));
+        CachedDepositDTO absent = serializationService.toObject(serializationService.toData(
+            new CachedDepositDTO(null, 1539849600000L, 3)));
+
+        assertThat(copy.getDeposit()).isEqualToComparingFieldByField(depositDTO);
+        assertThat(copy.getExpiresAt()).isEqualTo(1539849600000L);
+        assertThat(copy.getLoadMillis()).isEqualTo(3);
+        assertThat(absent.getDeposit()).isNull();
+    }
+
+    @Test
+    public void cacheTombstoneRoundTrip() {
+        Data data = serializationService.toData(new CacheTombstone(-42L));
+        CacheTombstone copy = serializationService.toObject(data);
+
+        assertThat(data.getType()).isEqualTo(DepositSerializers.CACHE_TOMBSTONE_TYPE_ID);
+        assertThat(copy).isEqualTo(new CacheTombstone(-42L));
+    }
+}
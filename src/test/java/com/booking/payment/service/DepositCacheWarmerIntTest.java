@@ -0,0 +1,122 @@
+package com.booking.payment.service;
+
+import com.booking.payment.PaymentServiceApp;
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.web.rest.DepositResourceIntTest;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the DepositCacheWarmer.
+ *
+ * @see DepositCacheWarmer
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+@Transactional
+public class DepositCacheWarmerIntTest {
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private DepositService depositService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManager em;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private DepositCacheWarmer warmer;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCacheWarmUp().setWindow(Duration.ofHours(1).toMillis());
+        applicationProperties.getCacheWarmUp().setBatchSize(2);
+        metricRegistry = new MetricRegistry();
+        warmer = new DepositCacheWarmer(depositRepository, depositService, new SyncTaskExecutor(), applicationProperties,
+            metricRegistry);
+    }
+
+    @Test
+    public void warmUpPreloadsTheRecentlyPaidDeposits() {
+        Long first = startPayment("first", Duration.ofMinutes(1));
+        Long second = startPayment("second", Duration.ofMinutes(2));
+        Long third = startPayment("third", Duration.ofMinutes(3));
+        Long old = startPayment("old", Duration.ofHours(2));
+        Cache depositCache = cacheManager.getCache(DepositService.DEPOSIT_DTOS_CACHE);
+        try {
+            assertThat(warmer.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+            warmer.start().join();
+
+            assertThat(warmer.health().getStatus()).isEqualTo(Status.UP);
+            assertThat(warmer.health().getDetails()).containsEntry("warmUp", "done").containsEntry("loaded", 3L);
+            assertThat(gauge("selected")).isEqualTo(3);
+            assertThat(gauge("loaded")).isEqualTo(3L);
+            assertThat(depositCache.get(first)).isNotNull();
+            assertThat(depositCache.get(third)).isNotNull();
+            assertThat(depositCache.get(old)).isNull();
+        } finally {
+            depositCache.evict(first);
+            depositCache.evict(second);
+            depositCache.evict(third);
+        }
+    }
+
+    @Test
+    public void warmUpGivesUpAfterTheTimeout() {
+        startPayment("first", Duration.ofMinutes(1));
+        applicationProperties.getCacheWarmUp().setTimeout(0);
+
+        warmer.start().join();
+
+        assertThat(warmer.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmer.health().getDetails()).containsEntry("warmUp", "timed out").containsEntry("loaded", 0L);
+    }
+
+    @Test
+    public void disabledWarmUpIsInService() {
+        applicationProperties.getCacheWarmUp().setEnabled(false);
+
+        warmer.onApplicationReady();
+
+        assertThat(warmer.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(gauge("duration")).isEqualTo(0L);
+    }
+
+    private Object gauge(String name) {
+        return metricRegistry.getGauges().get(MetricRegistry.name(DepositCacheWarmer.class, name)).getValue();
+    }
+
+    private Long startPayment(String bookingCode, Duration age) {
+        Deposit deposit = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em).bookingCode(bookingCode));
+        depositRepository.startPayment(deposit.getId(), "SMLTEST", deposit.getId() + "-1", Instant.now().minus(age));
+        return deposit.getId();
+    }
+}
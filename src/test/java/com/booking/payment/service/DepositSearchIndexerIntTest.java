@@ -0,0 +1,86 @@
+package com.booking.payment.service;
+
+import com.booking.payment.PaymentServiceApp;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.SearchOutboxEvent;
+import com.booking.payment.domain.enumeration.SearchOperation;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.SearchOutboxEventRepository;
+import com.booking.payment.repository.search.DepositSearchRepository;
+import com.booking.payment.web.rest.DepositResourceIntTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the DepositSearchIndexer.
+ *
+ * @see DepositSearchIndexer
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+@Transactional
+public class DepositSearchIndexerIntTest {
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private SearchOutboxEventRepository searchOutboxEventRepository;
+
+    @Autowired
+    private DepositSearchRepository depositSearchRepository;
+
+    @Autowired
+    private DepositSearchIndexer depositSearchIndexer;
+
+    @Autowired
+    private EntityManager em;
+
+    @Test
+    public void drainAppliesAndDeletesTheDueEvents() {
+        Deposit deposit = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em));
+        SearchOutboxEvent event = searchOutboxEventRepository.saveAndFlush(
+            new SearchOutboxEvent().depositId(deposit.getId()).operation(SearchOperation.INDEX));
+
+        assertThat(depositSearchIndexer.drain()).isEqualTo(1);
+
+        em.clear();
+        assertThat(searchOutboxEventRepository.findOne(event.getId())).isNull();
+        assertThat(depositSearchRepository.exists(deposit.getId())).isTrue();
+        depositSearchRepository.delete(deposit.getId());
+    }
+
+    @Test
+    public void eventsClaimedByAnotherNodeAreLeftAlone() {
+        Deposit deposit = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em));
+        SearchOutboxEvent event = searchOutboxEventRepository.saveAndFlush(
+            new SearchOutboxEvent().depositId(deposit.getId()).operation(SearchOperation.INDEX));
+        List<Long> ids = Collections.singletonList(event.getId());
+
+        assertThat(searchOutboxEventRepository.claim(ids, "other-node", Instant.now().plusSeconds(60))).hasSize(1);
+        assertThat(searchOutboxEventRepository.claim(ids, "this-node", Instant.now().plusSeconds(60))).isEmpty();
+        assertThat(depositSearchIndexer.drain()).isEqualTo(0);
+        assertThat(searchOutboxEventRepository.deleteClaimed(ids, "this-node")).isEqualTo(0);
+        assertThat(searchOutboxEventRepository.reschedule(event.getId(), "this-node", Instant.now())).isFalse();
+
+        // Once the lease of the other node is over, the event is due again
+        assertThat(searchOutboxEventRepository.reschedule(event.getId(), "other-node", Instant.now().minusSeconds(1))).isTrue();
+        List<SearchOutboxEvent> claimed = searchOutboxEventRepository.claim(ids, "this-node", Instant.now().plusSeconds(60));
+        assertThat(claimed).hasSize(1);
+        assertThat(claimed.get(0).getAttempts()).isEqualTo(1);
+        assertThat(searchOutboxEventRepository.deleteClaimed(ids, "other-node")).isEqualTo(0);
+        assertThat(searchOutboxEventRepository.deleteClaimed(ids, "this-node")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,218 @@
+package com.booking.payment.service.impl;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.SearchOutboxEventRepository;
+import com.booking.payment.repository.search.DepositSearchRepository;
+import com.booking.payment.service.DepositService;
+import com.booking.payment.service.dto.BulkItemResultDTO;
+import com.booking.payment.service.dto.CachedDepositDTO;
+import com.booking.payment.service.dto.DepositDTO;
+import com.booking.payment.service.mapper.DepositMapperImpl;
+
+import com.codahale.metrics.MetricRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the caches of the deposits read by DepositServiceImpl, and the errors of its bulk saves, against mocks of
+ * the DepositRepository and of the EntityManager.
+ *
+ * @see DepositServiceImpl#findOne(Long)
+ * @see DepositServiceImpl#findAllByUserIdAfter(Long, Long, int)
+ * @see DepositServiceImpl#saveAll(List)
+ */
+public class DepositServiceImplUnitTest {
+
+    private DepositRepository depositRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    private EntityManager entityManager;
+
+    private CacheManager cacheManager;
+
+    private MetricRegistry metricRegistry;
+
+    private DepositServiceImpl depositService;
+
+    @Before
+    public void setup() {
+        depositRepository = mock(DepositRepository.class);
+        applicationProperties = new ApplicationProperties();
+        cacheManager = new ConcurrentMapCacheManager();
+        metricRegistry = new MetricRegistry();
+        entityManager = mock(EntityManager.class);
+        depositService = new DepositServiceImpl(depositRepository, new DepositMapperImpl(), mock(DepositSearchRepository.class),
+            mock(SearchOutboxEventRepository.class), entityManager, mock(PlatformTransactionManager.class),
+            applicationProperties, cacheManager, metricRegistry);
+    }
+
+    @Test
+    public void findOneIsCached() {
+        when(depositRepository.findOne(42L)).thenReturn(deposit(42L));
+
+        assertThat(depositService.findOne(42L).getBookingCode()).isEqualTo("BOOKING-42");
+        assertThat(depositService.findOne(42L).getBookingCode()).isEqualTo("BOOKING-42");
+
+        verify(depositRepository, times(1)).findOne(42L);
+        assertThat(meter("hits")).isEqualTo(1);
+        assertThat(meter("misses")).isEqualTo(1);
+    }
+
+    @Test
+    public void unknownIdsAreCachedBriefly() {
+        assertThat(depositService.findOne(43L)).isNull();
+        assertThat(depositService.findOne(43L)).isNull();
+        verify(depositRepository, times(1)).findOne(43L);
+
+        applicationProperties.getDepositCache().setNegativeTimeToLiveSeconds(0);
+        assertThat(depositService.findOne(44L)).isNull();
+        assertThat(depositService.findOne(44L)).isNull();
+        verify(depositRepository, times(2)).findOne(44L);
+    }
+
+    @Test
+    public void deleteEvictsTheDeposit() {
+        when(depositRepository.findOne(42L)).thenReturn(deposit(42L));
+        depositService.findOne(42L);
+
+        depositService.delete(42L);
+        when(depositRepository.findOne(42L)).thenReturn(null);
+
+        assertThat(depositService.findOne(42L)).isNull();
+    }
+
+    @Test
+    public void loadsOverlappingAnInvalidationAreNotCached() {
+        AtomicBoolean deleted = new AtomicBoolean();
+        when(depositRepository.findOne(42L)).thenAnswer(invocation -> {
+            // The deposit is deleted, and invalidated, while its previous state is being loaded
+            if (deleted.compareAndSet(false, true)) {
+                depositService.delete(42L);
+            }
+            return deposit(42L);
+        });
+
+        depositService.findOne(42L);
+        depositService.findOne(42L);
+        depositService.findOne(42L);
+
+        // The first load, the read of the deletion, then a single load of the invalidated entry
+        verify(depositRepository, times(3)).findOne(42L);
+        assertThat(meter("misses")).isEqualTo(2);
+        assertThat(meter("hits")).isEqualTo(1);
+    }
+
+    @Test
+    public void userDepositsLoadedBeforeAnInvalidationAreNotCached() {
+        when(depositRepository.findOne(42L)).thenReturn(deposit(42L));
+        AtomicBoolean deleted = new AtomicBoolean();
+        when(depositRepository.findAllDtosByUserIdAndIdGreaterThan(eq(7L), eq(Long.MIN_VALUE), any(Pageable.class)))
+            .thenAnswer(invocation -> {
+                if (deleted.compareAndSet(false, true)) {
+                    depositService.delete(42L);
+                }
+                return new SliceImpl<>(Collections.singletonList(new DepositMapperImpl().toDto(deposit(42L))));
+            });
+
+        depositService.findAllByUserIdAfter(7L, null, 20);
+        depositService.findAllByUserIdAfter(7L, null, 20);
+        depositService.findAllByUserIdAfter(7L, null, 20);
+
+        verify(depositRepository, times(2)).findAllDtosByUserIdAndIdGreaterThan(eq(7L), eq(Long.MIN_VALUE), any(Pageable.class));
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch loaded = new CountDownLatch(1);
+        when(depositRepository.findOne(42L)).thenAnswer(invocation -> {
+            loading.countDown();
+            loaded.await(5, TimeUnit.SECONDS);
+            return deposit(42L);
+        });
+
+        CompletableFuture<DepositDTO> first = CompletableFuture.supplyAsync(() -> depositService.findOne(42L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<DepositDTO> second = CompletableFuture.supplyAsync(() -> depositService.findOne(42L));
+        Thread.sleep(200);
+        loaded.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(42L);
+        assertThat(second.get(5, TimeUnit.SECONDS).getId()).isEqualTo(42L);
+        verify(depositRepository, times(1)).findOne(42L);
+    }
+
+    @Test
+    public void entriesAreRefreshedBeforeTheyExpire() {
+        when(depositRepository.findOne(42L)).thenReturn(deposit(42L));
+        DepositDTO previous = new DepositDTO();
+        previous.setId(42L);
+        cacheManager.getCache(DepositService.DEPOSIT_DTOS_CACHE)
+            .put(42L, new CachedDepositDTO(previous, System.currentTimeMillis() + 1000, 1000));
+
+        applicationProperties.getDepositCache().setEarlyRefreshBeta(0);
+        assertThat(depositService.findOne(42L)).isSameAs(previous);
+        applicationProperties.getDepositCache().setEarlyRefreshBeta(1e9);
+        assertThat(depositService.findOne(42L).getBookingCode()).isEqualTo("BOOKING-42");
+
+        verify(depositRepository, times(1)).findOne(42L);
+        assertThat(meter("early-refreshes")).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkSavesReportTheViolatedConstraint() {
+        doThrow(new ConstraintViolationException("Duplicate entry", null, "ux_deposit_booking_code"))
+            .doThrow(new ConstraintViolationException("Duplicate entry", null, "ux_deposit_booking_code"))
+            .doThrow(new ConstraintViolationException("Cannot add a row", null, "fk_deposit_user_id"))
+            .when(entityManager).flush();
+        // Ids are given on persist, by the sequence of the deposits
+        AtomicLong ids = new AtomicLong();
+        doAnswer(invocation -> {
+            if (invocation.getArguments()[0] instanceof Deposit) {
+                ((Deposit) invocation.getArguments()[0]).setId(ids.incrementAndGet());
+            }
+            return null;
+        }).when(entityManager).persist(any());
+        DepositMapperImpl depositMapper = new DepositMapperImpl();
+        DepositDTO first = depositMapper.toDto(deposit(null));
+        DepositDTO second = depositMapper.toDto(deposit(null));
+
+        List<BulkItemResultDTO> results = depositService.saveAll(Arrays.asList(first, second));
+
+        assertThat(results).extracting(BulkItemResultDTO::getStatus).containsExactly(400, 409);
+        assertThat(results).extracting(BulkItemResultDTO::getError).containsExactly("bookingcodeexists", "constraintviolation");
+    }
+
+    private long meter(String name) {
+        return metricRegistry.meter(MetricRegistry.name(DepositServiceImpl.class, "cache", name)).getCount();
+    }
+
+    private static Deposit deposit(Long id) {
+        Deposit deposit = new Deposit().bookingCode("BOOKING-" + id).userId(7L).currencyCode("VND").amount(150000000L);
+        deposit.setId(id);
+        deposit.setVersion(0L);
+        return deposit;
+    }
+}
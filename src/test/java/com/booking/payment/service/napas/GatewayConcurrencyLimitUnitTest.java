@@ -0,0 +1,97 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the AIMD algorithm of the GatewayConcurrencyLimit.
+ *
+ * @see GatewayConcurrencyLimit
+ */
+public class GatewayConcurrencyLimitUnitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private GatewayConcurrencyLimit concurrencyLimit;
+
+    @Before
+    public void setup() {
+        NapasGatewayProperties properties = new NapasGatewayProperties();
+        properties.getLimit().setInitialLimit(4);
+        properties.getLimit().setMinLimit(2);
+        properties.getLimit().setMaxLimit(8);
+        concurrencyLimit = new GatewayConcurrencyLimit(properties);
+    }
+
+    @Test
+    public void callsBeyondTheLimitAreRefused() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(concurrencyLimit.tryAcquire()).isTrue();
+        }
+        assertThat(concurrencyLimit.tryAcquire()).isFalse();
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(4);
+
+        concurrencyLimit.onIgnored();
+        assertThat(concurrencyLimit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void limitGrowsWhileTheCallsAreFast() {
+        for (int i = 0; i < 20; i++) {
+            callsInParallel(concurrencyLimit.getLimit(), FAST);
+        }
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(8);
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void limitDoesNotGrowWhenUnused() {
+        for (int i = 0; i < 20; i++) {
+            callsInParallel(1, FAST);
+        }
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void limitShrinksWhenTheCallsSlowDown() {
+        callsInParallel(4, FAST);
+        int limit = concurrencyLimit.getLimit();
+
+        callsInParallel(limit, SLOW);
+
+        assertThat(concurrencyLimit.getLimit()).isLessThan(limit);
+        for (int i = 0; i < 20; i++) {
+            callsInParallel(concurrencyLimit.getLimit(), SLOW);
+        }
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void limitShrinksWhenTheCallsFail() {
+        for (int i = 0; i < 4; i++) {
+            concurrencyLimit.tryAcquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            concurrencyLimit.onDropped();
+        }
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(2);
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(0);
+    }
+
+    private void callsInParallel(int calls, long latencyNanos) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(concurrencyLimit.tryAcquire()).isTrue();
+        }
+        for (int i = 0; i < calls; i++) {
+            concurrencyLimit.onSuccess(latencyNanos);
+        }
+    }
+}
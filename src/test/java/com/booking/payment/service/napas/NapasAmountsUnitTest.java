@@ -0,0 +1,36 @@
+package com.booking.payment.service.napas;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the conversion of the amounts of the deposits to the amounts of the NAPAS gateway.
+ *
+ * @see NapasAmounts
+ */
+public class NapasAmountsUnitTest {
+
+    @Test
+    public void toGatewayAmount() {
+        assertThat(NapasAmounts.toGatewayAmount("VND", 150000L)).isEqualTo(15000000L);
+        assertThat(NapasAmounts.toGatewayAmount("USD", 1999L)).isEqualTo(1999L);
+    }
+
+    @Test
+    public void toGatewayAmountOfUnsupportedCurrency() {
+        assertThatThrownBy(() -> NapasAmounts.toGatewayAmount("KWD", 1000L)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> NapasAmounts.toGatewayAmount("AAAAAAAAAA", 1000L)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> NapasAmounts.toGatewayAmount(null, 1000L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void isAmountOf() {
+        assertThat(NapasAmounts.isAmountOf(15000000L, "VND", 150000L)).isTrue();
+        assertThat(NapasAmounts.isAmountOf(150000L, "VND", 150000L)).isFalse();
+        assertThat(NapasAmounts.isAmountOf(null, "VND", 150000L)).isFalse();
+        assertThat(NapasAmounts.isAmountOf(15000000L, "VND", null)).isFalse();
+        assertThat(NapasAmounts.isAmountOf(15000000L, "AAAAAAAAAA", 150000L)).isFalse();
+    }
+}
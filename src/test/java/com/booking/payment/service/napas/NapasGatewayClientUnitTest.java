@@ -0,0 +1,235 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.service.dto.GatewayTransactionDTO;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.netflix.hystrix.Hystrix;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Tests the NapasGatewayClient against a local stub of the gateway.
+ *
+ * @see NapasGatewayClient
+ */
+public class NapasGatewayClientUnitTest {
+
+    private static final String SECURE_SECRET = "198BE3F2E8C75A53F38C1C4A5B6DBA27";
+
+    private static final String APPROVED_TRANSACTION = "vpc_Command=queryDR&vpc_DRExists=Y&vpc_MerchTxnRef=42-1" +
+        "&vpc_TxnResponseCode=0&vpc_TransactionNo=1234567&vpc_Amount=1000000&vpc_Message=Approved";
+
+    private NapasGatewayStub stub;
+
+    private NapasGatewayProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    private NapasGatewayClient client;
+
+    @Before
+    public void setup() throws Exception {
+        // The Hystrix thread pools and their settings are global
+        Hystrix.reset();
+        stub = new NapasGatewayStub();
+        properties = new NapasGatewayProperties();
+        properties.setQueryUrl(stub.getUrl());
+        properties.setMerchantId("SMLTEST");
+        properties.setAccessCode("ECAFAB");
+        properties.setSecureHash(SECURE_SECRET);
+        properties.setUsername("usertest");
+        properties.setPassword("passtest");
+        properties.getClient().setThreads(2);
+        properties.getClient().setQueueSize(0);
+        properties.getClient().setReadTimeout(500);
+        properties.getCircuitBreaker().setRequestVolumeThreshold(2);
+        metricRegistry = new MetricRegistry();
+        client = new NapasGatewayClient(properties, new NapasMerchantRoutes(properties), new GatewayConcurrencyLimit(properties),
+            metricRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        stub.close();
+        Hystrix.reset();
+    }
+
+    @Test
+    public void queryDR() throws Exception {
+        stub.setResponseBody(APPROVED_TRANSACTION);
+
+        GatewayTransactionDTO transaction = client.queryDR("42-1").get(5, TimeUnit.SECONDS);
+
+        assertThat(transaction.getMerchTxnRef()).isEqualTo("42-1");
+        assertThat(transaction.getExists()).isTrue();
+        assertThat(transaction.getResponseCode()).isEqualTo("0");
+        assertThat(transaction.getTransactionNo()).isEqualTo("1234567");
+        assertThat(transaction.getAmount()).isEqualTo(1000000L);
+
+        Map<String, String> request = stub.getRequests().get(0);
+        assertThat(request).containsEntry("vpc_Command", "queryDR")
+            .containsEntry("vpc_MerchTxnRef", "42-1")
+            .containsEntry("vpc_Merchant", "SMLTEST")
+            .containsEntry("vpc_User", "usertest")
+            .containsEntry("vpc_Password", "passtest")
+            .containsEntry("vpc_SecureHashType", "SHA256");
+        assertThat(request.get("vpc_SecureHash")).isEqualTo(expectedSecureHash(request));
+
+        assertThat(metricRegistry.timer(MetricRegistry.name(NapasGatewayClient.class, "queryDR")).getCount()).isEqualTo(1);
+        // The connection is kept alive for the next calls
+        assertThat(gauge("connections.available")).isEqualTo(1);
+        assertThat(gauge("connections.leased")).isEqualTo(0);
+    }
+
+    @Test
+    public void refund() throws Exception {
+        stub.setResponseBody("vpc_Command=refund&vpc_MerchTxnRef=42-R1&vpc_TxnResponseCode=0&vpc_TransactionNo=1234568&vpc_Amount=500000");
+
+        GatewayTransactionDTO transaction = client.refund("42-R1", "1234567", 500000L).get(5, TimeUnit.SECONDS);
+
+        assertThat(transaction.getExists()).isNull();
+        assertThat(transaction.getTransactionNo()).isEqualTo("1234568");
+        assertThat(stub.getRequests().get(0)).containsEntry("vpc_Command", "refund")
+            .containsEntry("vpc_TransNo", "1234567")
+            .containsEntry("vpc_Amount", "500000");
+    }
+
+    @Test
+    public void queryDRTimesOut() throws Exception {
+        stub.setDelayMillis(2000);
+
+        Throwable thrown = catchThrowable(() -> client.queryDR("42-1").get(5, TimeUnit.SECONDS));
+
+        assertThat(thrown).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(HystrixRuntimeException.class);
+        assertThat(thrown.getCause().getCause()).isInstanceOf(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void unconfiguredGatewayFailsTheFutures() throws Exception {
+        client.close();
+        client = new NapasGatewayClient(properties, new NapasMerchantRoutes(new NapasGatewayProperties()),
+            new GatewayConcurrencyLimit(properties), new MetricRegistry());
+
+        CompletableFuture<GatewayTransactionDTO> query = client.queryDR("42-1");
+        CompletableFuture<GatewayTransactionDTO> refund = client.refund("42-R1", "1234567", 500000L);
+
+        assertThat(catchThrowable(() -> query.get(5, TimeUnit.SECONDS)))
+            .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(catchThrowable(() -> refund.get(5, TimeUnit.SECONDS)))
+            .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(stub.getRequests()).isEmpty();
+    }
+
+    @Test
+    public void callsBeyondThePoolAreRejected() throws Exception {
+        stub.setResponseBody(APPROVED_TRANSACTION);
+        stub.setDelayMillis(300);
+
+        List<CompletableFuture<GatewayTransactionDTO>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(client.queryDR("42-" + i));
+        }
+        // The calls don't block the caller, and the pool of 2 threads without queue is saturated
+        for (int i = 0; i < 50 && gauge("threads.active") < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(gauge("threads.active")).isEqualTo(2);
+        assertThat(gauge("connections.leased") + gauge("connections.pending")).isLessThanOrEqualTo(2);
+
+        int rejected = 0;
+        for (CompletableFuture<GatewayTransactionDTO> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(GatewayUnavailableException.class);
+                assertThat(((HystrixRuntimeException) e.getCause().getCause()).getFailureType())
+                    .isEqualTo(HystrixRuntimeException.FailureType.REJECTED_THREAD_EXECUTION);
+                rejected++;
+            }
+        }
+        assertThat(rejected).isEqualTo(2);
+        assertThat(stub.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void callsBeyondTheConcurrencyLimitFailFast() throws Exception {
+        stub.setResponseBody(APPROVED_TRANSACTION);
+        stub.setDelayMillis(300);
+        properties.getLimit().setInitialLimit(1);
+        properties.getLimit().setMinLimit(1);
+        GatewayConcurrencyLimit concurrencyLimit = new GatewayConcurrencyLimit(properties);
+        // Another call is in flight
+        assertThat(concurrencyLimit.tryAcquire()).isTrue();
+        client.close();
+        client = new NapasGatewayClient(properties, new NapasMerchantRoutes(properties), concurrencyLimit, new MetricRegistry());
+
+        Throwable thrown = catchThrowable(() -> client.queryDR("42-1").get(5, TimeUnit.SECONDS));
+
+        assertThat(thrown).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(GatewayUnavailableException.class);
+        assertThat(stub.getRequests()).isEmpty();
+
+        concurrencyLimit.onIgnored();
+        assertThat(client.queryDR("42-1").get(5, TimeUnit.SECONDS).getResponseCode()).isEqualTo("0");
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void circuitBreakerOpensWhenTheGatewayKeepsFailing() throws Exception {
+        stub.setStatus(503);
+
+        Throwable thrown = null;
+        for (int i = 0; i < 20 && !(thrown instanceof GatewayUnavailableException); i++) {
+            thrown = catchThrowable(() -> client.queryDR("42-1").get(5, TimeUnit.SECONDS)).getCause();
+            // The health of the commands is only sampled every 500 milliseconds
+            Thread.sleep(100);
+        }
+
+        assertThat(thrown).isInstanceOf(GatewayUnavailableException.class);
+        assertThat(((HystrixRuntimeException) thrown.getCause()).getFailureType())
+            .isEqualTo(HystrixRuntimeException.FailureType.SHORTCIRCUIT);
+        int requests = stub.getRequests().size();
+        assertThat(catchThrowable(() -> client.queryDR("42-1").get(5, TimeUnit.SECONDS)))
+            .hasCauseInstanceOf(GatewayUnavailableException.class);
+        assertThat(stub.getRequests()).hasSize(requests);
+        assertThat(metricRegistry.meter(MetricRegistry.name(NapasGatewayClient.class, "unavailable")).getCount()).isEqualTo(2);
+    }
+
+    private int gauge(String name) {
+        Gauge<?> gauge = metricRegistry.getGauges().get(MetricRegistry.name(NapasGatewayClient.class, name));
+        return ((Number) gauge.getValue()).intValue();
+    }
+
+    private static String expectedSecureHash(Map<String, String> request) throws Exception {
+        Map<String, String> signed = new TreeMap<>(request);
+        signed.remove("vpc_SecureHash");
+        signed.remove("vpc_SecureHashType");
+        String canonical = signed.entrySet().stream()
+            .map(parameter -> parameter.getKey() + "=" + parameter.getValue())
+            .collect(Collectors.joining("&"));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(DatatypeConverter.parseHexBinary(SECURE_SECRET), "HmacSHA256"));
+        return DatatypeConverter.printHexBinary(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+    }
+}
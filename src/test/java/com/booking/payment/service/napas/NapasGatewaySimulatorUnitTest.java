@@ -0,0 +1,206 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+import com.booking.payment.config.NapasSimulatorProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the NapasGatewaySimulator against the NAPAS classes of the application.
+ *
+ * @see NapasGatewaySimulator
+ */
+public class NapasGatewaySimulatorUnitTest {
+
+    private static final String SECURE_SECRET = "198BE3F2E8C75A53F38C1C4A5B6DBA27";
+
+    private static final String RETURN_URL = "http://localhost:8081/api/payments/napas/return";
+
+    private NapasGatewayProperties gatewayProperties;
+
+    private NapasSimulatorProperties simulatorProperties;
+
+    private NapasGatewaySimulator simulator;
+
+    @Before
+    public void setup() {
+        gatewayProperties = new NapasGatewayProperties();
+        gatewayProperties.setVpcUrl("http://localhost:8081/napas-simulator/gateway/vpcpay.do");
+        gatewayProperties.setReturnUrl(RETURN_URL);
+        gatewayProperties.setMerchantId("SMLTEST");
+        gatewayProperties.setAccessCode("ECAFAB");
+        gatewayProperties.setSecureHash(SECURE_SECRET);
+        gatewayProperties.setUsername("usertest");
+        gatewayProperties.setPassword("passtest");
+        simulatorProperties = new NapasSimulatorProperties();
+        simulatorProperties.getLatency().setMedianMillis(0);
+        simulatorProperties.setDeclineRate(0);
+        simulatorProperties.setErrorRate(0);
+        simulatorProperties.setTimeoutRate(0);
+        simulatorProperties.setIpnCount(0);
+        simulatorProperties.setThreads(2);
+        simulator = new NapasGatewaySimulator(gatewayProperties, simulatorProperties, new MetricRegistry());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        simulator.close();
+    }
+
+    @Test
+    public void payRedirectsToTheReturnUrlWithASignedResult() throws Exception {
+        ResponseEntity<Void> response = simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+        URI location = response.getHeaders().getLocation();
+        assertThat(location.toString()).startsWith(RETURN_URL + "?");
+        Map<String, String[]> result = parse(location.getRawQuery());
+        assertThat(new NapasCallbackVerifier(gatewayProperties).verify(result)).isTrue();
+        assertThat(result.get(NapasCallbackVerifier.VPC_MERCH_TXN_REF)).containsExactly("42-1");
+        assertThat(result.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE)).containsExactly(NapasCallbackVerifier.APPROVED);
+        assertThat(result.get(NapasPaymentUrlBuilder.VPC_AMOUNT)).containsExactly("1000000");
+        assertThat(result.get(NapasPaymentUrlBuilder.VPC_ORDER_INFO)).containsExactly("Deposit 42");
+        assertThat(result.get(NapasCallbackVerifier.VPC_TRANSACTION_NO)).isNotEmpty();
+    }
+
+    @Test
+    public void payDeclined() throws Exception {
+        simulatorProperties.setDeclineRate(1);
+
+        ResponseEntity<Void> response = simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+        Map<String, String[]> result = parse(response.getHeaders().getLocation().getRawQuery());
+        assertThat(result.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE)).containsExactly("1");
+    }
+
+    @Test
+    public void payRejectsATamperedRequest() throws Exception {
+        Map<String, String[]> payment = payment("42-1", 1000000);
+        payment.put(NapasPaymentUrlBuilder.VPC_AMOUNT, new String[] { "1" });
+
+        ResponseEntity<Void> response = simulator.pay(payment).get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void simulatedErrors() throws Exception {
+        simulatorProperties.setErrorRate(1);
+
+        ResponseEntity<Void> response = simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void simulatedLatency() throws Exception {
+        simulatorProperties.getLatency().setMedianMillis(200);
+        simulatorProperties.getLatency().setP99Millis(200);
+
+        long start = System.nanoTime();
+        simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    public void queryDRAndRefund() throws Exception {
+        simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+        Map<String, String[]> transaction = query(NapasGatewayClient.COMMAND_QUERY_DR, "42-1", null, null);
+        assertThat(transaction.get(NapasGatewaySimulator.VPC_DR_EXISTS)).containsExactly("Y");
+        assertThat(transaction.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE)).containsExactly(NapasCallbackVerifier.APPROVED);
+        String transactionNo = transaction.get(NapasCallbackVerifier.VPC_TRANSACTION_NO)[0];
+
+        Map<String, String[]> refund = query(NapasGatewayClient.COMMAND_REFUND, "42-R1", transactionNo, "600000");
+        assertThat(refund.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE)).containsExactly(NapasCallbackVerifier.APPROVED);
+        // Only 400000 are left to refund
+        Map<String, String[]> excessiveRefund = query(NapasGatewayClient.COMMAND_REFUND, "42-R2", transactionNo, "600000");
+        assertThat(excessiveRefund.get(NapasCallbackVerifier.VPC_TXN_RESPONSE_CODE)).containsExactly("1");
+
+        Map<String, String[]> unknown = query(NapasGatewayClient.COMMAND_QUERY_DR, "43-1", null, null);
+        assertThat(unknown.get(NapasGatewaySimulator.VPC_DR_EXISTS)).containsExactly("N");
+    }
+
+    @Test
+    public void ipnFanOut() throws Exception {
+        try (NapasGatewayStub ipnReceiver = new NapasGatewayStub()) {
+            simulatorProperties.setIpnUrl(ipnReceiver.getUrl());
+            simulatorProperties.setIpnCount(3);
+            simulatorProperties.getIpnDelay().setMedianMillis(10);
+
+            simulator.pay(payment("42-1", 1000000)).get(5, TimeUnit.SECONDS);
+
+            for (int i = 0; i < 50 && ipnReceiver.getRequests().size() < 3; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(ipnReceiver.getRequests()).hasSize(3);
+            NapasCallbackVerifier verifier = new NapasCallbackVerifier(gatewayProperties);
+            for (Map<String, String> ipn : ipnReceiver.getRequests()) {
+                Map<String, String[]> parameters = new HashMap<>();
+                ipn.forEach((name, value) -> parameters.put(name, new String[] { value }));
+                assertThat(verifier.verify(parameters)).isTrue();
+                assertThat(ipn.get(NapasCallbackVerifier.VPC_MERCH_TXN_REF)).isEqualTo("42-1");
+            }
+        }
+    }
+
+    private Map<String, String[]> payment(String merchTxnRef, long amount) {
+        String url = new NapasPaymentUrlBuilder(gatewayProperties).build(merchTxnRef, amount, "Deposit 42", "127.0.0.1");
+        return parse(URI.create(url).getRawQuery());
+    }
+
+    /**
+     * Send a command to the back-office API, signed as the NapasGatewayClient does.
+     */
+    private Map<String, String[]> query(String command, String merchTxnRef, String transactionNo, String amount) throws Exception {
+        Map<String, String> parameters = new TreeMap<>();
+        parameters.put(NapasPaymentUrlBuilder.VPC_ACCESS_CODE, gatewayProperties.getAccessCode());
+        parameters.put(NapasPaymentUrlBuilder.VPC_COMMAND, command);
+        parameters.put(NapasPaymentUrlBuilder.VPC_MERCH_TXN_REF, merchTxnRef);
+        parameters.put(NapasPaymentUrlBuilder.VPC_MERCHANT, gatewayProperties.getMerchantId());
+        parameters.put(NapasGatewaySimulator.VPC_PASSWORD, gatewayProperties.getPassword());
+        parameters.put(NapasGatewaySimulator.VPC_USER, gatewayProperties.getUsername());
+        parameters.put(NapasPaymentUrlBuilder.VPC_VERSION, gatewayProperties.getVersion());
+        if (transactionNo != null) {
+            parameters.put(NapasGatewaySimulator.VPC_TRANS_NO, transactionNo);
+            parameters.put(NapasPaymentUrlBuilder.VPC_AMOUNT, amount);
+        }
+        StringBuilder canonical = new StringBuilder();
+        parameters.forEach((name, value) -> canonical.append(canonical.length() > 0 ? "&" : "").append(name).append('=').append(value));
+        Map<String, String[]> request = new HashMap<>();
+        parameters.forEach((name, value) -> request.put(name, new String[] { value }));
+        request.put(NapasPaymentUrlBuilder.VPC_SECURE_HASH,
+            new String[] { new VpcSecureHash(SECURE_SECRET).appendHash(canonical, new StringBuilder()).toString() });
+
+        ResponseEntity<String> response = simulator.query(request).get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Map<String, String[]> result = parse(response.getBody());
+        assertThat(new NapasCallbackVerifier(gatewayProperties).verify(result)).isTrue();
+        return result;
+    }
+
+    private static Map<String, String[]> parse(String query) {
+        Map<String, String[]> parameters = new HashMap<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(query, StandardCharsets.UTF_8)) {
+            parameters.put(pair.getName(), new String[] { pair.getValue() });
+        }
+        return parameters;
+    }
+}
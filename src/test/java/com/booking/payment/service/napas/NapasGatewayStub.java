@@ -0,0 +1,86 @@
+package com.booking.payment.service.napas;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local stub of the back-office API of the NAPAS gateway, answering every call with the same status and body,
+ * after a configurable delay.
+ */
+public class NapasGatewayStub implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<Map<String, String>> requests = new CopyOnWriteArrayList<>();
+
+    private volatile String responseBody = "";
+
+    private volatile long delayMillis;
+
+    private volatile int status = 200;
+
+    public NapasGatewayStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/gateway/vpcdps.do", exchange -> {
+            String body = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (NameValuePair pair : URLEncodedUtils.parse(body, StandardCharsets.UTF_8)) {
+                parameters.put(pair.getName(), pair.getValue());
+            }
+            requests.add(parameters);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(response);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/gateway/vpcdps.do";
+    }
+
+    public List<Map<String, String>> getRequests() {
+        return requests;
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the routing of the payments by the NapasMerchantRoutes.
+ *
+ * @see NapasMerchantRoutes
+ */
+public class NapasMerchantRoutesUnitTest {
+
+    private NapasGatewayProperties properties;
+
+    @Before
+    public void setup() {
+        properties = new NapasGatewayProperties();
+        properties.setVpcUrl("https://sandbox.napas.com.vn/gateway/vpcpay.do");
+        properties.setMerchantId("SMLTEST");
+        properties.setAccessCode("ECAFAB");
+        properties.setSecureHash("198BE3F2E8C75A53F38C1C4A5B6DBA27");
+        properties.setReturnUrl("http://localhost:8081/api/payments/napas/return");
+        properties.getMerchants().put("usd", merchant("SMLUSD", "USD", null));
+        properties.getMerchants().put("usd-tour", merchant("SMLTOUR", "USD", "tour"));
+    }
+
+    @Test
+    public void routeByCurrencyAndChannel() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+
+        assertThat(routes.route("USD", "tour").getMerchantId()).isEqualTo("SMLTOUR");
+        assertThat(routes.route("USD", "hotel").getMerchantId()).isEqualTo("SMLUSD");
+        assertThat(routes.route("USD", null).getMerchantId()).isEqualTo("SMLUSD");
+        assertThat(routes.route("VND", "tour").getName()).isEqualTo(NapasMerchantRoutes.DEFAULT_MERCHANT);
+        assertThat(routes.route("VND", "tour").getMerchantId()).isEqualTo("SMLTEST");
+    }
+
+    @Test
+    public void getMerchantById() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+
+        assertThat(routes.getMerchant("SMLTOUR").getName()).isEqualTo("usd-tour");
+        assertThat(routes.getMerchant("SMLTEST")).isSameAs(routes.getDefaultMerchant());
+        assertThat(routes.getMerchant("UNKNOWN")).isNull();
+        assertThat(routes.getMerchant(null)).isNull();
+    }
+
+    @Test
+    public void noMerchantConfigured() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(new NapasGatewayProperties());
+
+        assertThat(routes.isConfigured()).isFalse();
+        assertThat(routes.route("VND", null)).isNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void merchantsWithTheSameRouteAreRejected() {
+        properties.getMerchants().put("usd-tour-2", merchant("SMLTOUR2", "USD", "tour"));
+
+        new NapasMerchantRoutes(properties);
+    }
+
+    @Test
+    public void merchantsSharingAMerchantIdAndItsSecretAreAccepted() {
+        properties.getMerchants().put("usd-hotel", merchant("SMLUSD", "USD", "hotel"));
+
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+
+        assertThat(routes.route("USD", "hotel").getMerchantId()).isEqualTo("SMLUSD");
+        assertThat(routes.getMerchant("SMLUSD")).isNotNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void merchantsSharingAMerchantIdWithDifferentSecretsAreRejected() {
+        properties.getMerchants().put("usd-hotel", merchant("SMLUSD", "USD", "hotel"));
+        properties.getMerchants().get("usd-hotel").setSecureHash("198BE3F2E8C75A53F38C1C4A5B6DBA27");
+
+        new NapasMerchantRoutes(properties);
+    }
+
+    @Test
+    public void refreshKeepsTheRoutesOnConflictingSecrets() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+        NapasMerchant merchant = routes.getMerchant("SMLTOUR");
+        properties.getMerchants().put("vnd-tour", merchant("SMLTOUR", "VND", "tour"));
+        properties.getMerchants().get("vnd-tour").setSecureHash("198BE3F2E8C75A53F38C1C4A5B6DBA27");
+
+        routes.refresh();
+
+        assertThat(routes.getMerchant("SMLTOUR")).isSameAs(merchant);
+        assertThat(routes.route("VND", "tour").getName()).isEqualTo(NapasMerchantRoutes.DEFAULT_MERCHANT);
+    }
+
+    @Test
+    public void refreshSwapsTheRoutes() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+        properties.getMerchants().remove("usd-tour");
+        properties.getMerchants().put("vnd-tour", merchant("SMLVNDTOUR", "VND", "tour"));
+
+        routes.refresh();
+
+        assertThat(routes.route("USD", "tour").getMerchantId()).isEqualTo("SMLUSD");
+        assertThat(routes.route("VND", "tour").getMerchantId()).isEqualTo("SMLVNDTOUR");
+        assertThat(routes.getMerchant("SMLTOUR")).isNull();
+    }
+
+    @Test
+    public void refreshKeepsTheRoutesOnInvalidMerchants() {
+        NapasMerchantRoutes routes = new NapasMerchantRoutes(properties);
+        NapasMerchant merchant = routes.route("USD", "tour");
+        properties.getMerchants().put("usd-tour", merchant("SMLTOUR", "USD", "tour"));
+        properties.getMerchants().get("usd-tour").setSecureHash("");
+
+        routes.refresh();
+
+        assertThat(routes.route("USD", "tour")).isSameAs(merchant);
+    }
+
+    private static NapasGatewayProperties.Merchant merchant(String merchantId, String currency, String channel) {
+        NapasGatewayProperties.Merchant merchant = new NapasGatewayProperties.Merchant();
+        merchant.setMerchantId(merchantId);
+        merchant.setAccessCode("ECAFAB");
+        merchant.setSecureHash("A3F2E8C75A53F38C1C4A5B6DBA27198B");
+        merchant.setCurrency(currency);
+        merchant.setChannel(channel);
+        return merchant;
+    }
+}
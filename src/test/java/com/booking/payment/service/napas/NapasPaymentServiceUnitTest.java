@@ -0,0 +1,34 @@
+package com.booking.payment.service.napas;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the references of the payments initiated by the NapasPaymentService.
+ *
+ * @see NapasPaymentService#merchTxnRef(Long)
+ */
+public class NapasPaymentServiceUnitTest {
+
+    @Test
+    public void merchTxnRefNamesItsDeposit() {
+        String merchTxnRef = NapasPaymentService.merchTxnRef(123456789012345678L);
+
+        assertThat(merchTxnRef).matches(123456789012345678L + "-[0-9]{13}-[0-9a-f]{6}").hasSize(39);
+        assertThat(NapasCallbackService.depositId(merchTxnRef)).isEqualTo(123456789012345678L);
+    }
+
+    @Test
+    public void merchTxnRefsOfTheSameMillisecondDiffer() {
+        Set<String> merchTxnRefs = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            merchTxnRefs.add(NapasPaymentService.merchTxnRef(42L));
+        }
+
+        assertThat(merchTxnRefs).hasSize(1000);
+    }
+}
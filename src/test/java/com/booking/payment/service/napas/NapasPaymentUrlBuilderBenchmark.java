@@ -0,0 +1,57 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the signed payment URLs built per second, on one core.
+ * <p>
+ * It is not run by the build, run its main method from the IDE, or with the test classpath:
+ * java -cp target/test-classes:target/classes:... com.booking.payment.service.napas.NapasPaymentUrlBuilderBenchmark
+ *
+ * @see NapasPaymentUrlBuilder
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NapasPaymentUrlBuilderBenchmark {
+
+    private NapasPaymentUrlBuilder urlBuilder;
+
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        NapasGatewayProperties properties = new NapasGatewayProperties();
+        properties.setVpcUrl("https://sandbox.napas.com.vn/gateway/vpcpay.do");
+        properties.setMerchantId("SMLTEST");
+        properties.setAccessCode("ECAFAB");
+        properties.setSecureHash("198BE3F2E8C75A53F38C1C4A5B6DBA27");
+        properties.setReturnUrl("http://localhost:8081/api/payments/napas/return");
+        urlBuilder = new NapasPaymentUrlBuilder(properties);
+    }
+
+    @Benchmark
+    public String build() {
+        long depositId = ++sequence;
+        return urlBuilder.build(depositId + "-1539849600000", 150000000L, "BOOKING-" + depositId, "203.162.4.191");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(NapasPaymentUrlBuilderBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.config.NapasGatewayProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the NapasPaymentUrlBuilder against a straightforward computation of the secure hash.
+ *
+ * @see NapasPaymentUrlBuilder
+ */
+public class NapasPaymentUrlBuilderUnitTest {
+
+    private static final String SECURE_SECRET = "198BE3F2E8C75A53F38C1C4A5B6DBA27";
+
+    private NapasPaymentUrlBuilder urlBuilder;
+
+    @Before
+    public void setup() {
+        NapasGatewayProperties properties = new NapasGatewayProperties();
+        properties.setVpcUrl("https://sandbox.napas.com.vn/gateway/vpcpay.do");
+        properties.setMerchantId("SMLTEST");
+        properties.setAccessCode("ECAFAB");
+        properties.setSecureHash(SECURE_SECRET);
+        properties.setReturnUrl("http://localhost:8081/api/payments/napas/return");
+        urlBuilder = new NapasPaymentUrlBuilder(properties);
+    }
+
+    @Test
+    public void buildSignedUrl() throws Exception {
+        String url = urlBuilder.build("42-1", 1000000L, "Đặt cọc BOOKING 42", "127.0.0.1");
+
+        assertThat(url).startsWith("https://sandbox.napas.com.vn/gateway/vpcpay.do?vpc_AccessCode=ECAFAB&vpc_Amount=1000000&");
+        assertThat(url).contains("&vpc_OrderInfo=" + URLEncoder.encode("Đặt cọc BOOKING 42", "UTF-8") + "&");
+        assertThat(url).contains("&vpc_ReturnURL=" + URLEncoder.encode("http://localhost:8081/api/payments/napas/return", "UTF-8") + "&");
+        assertThat(url).endsWith("&vpc_SecureHashType=SHA256");
+
+        Map<String, String> parameters = new TreeMap<>();
+        for (Map.Entry<String, List<String>> parameter : UriComponentsBuilder.fromHttpUrl(url).build().getQueryParams().entrySet()) {
+            parameters.put(parameter.getKey(), URLDecoder.decode(parameter.getValue().get(0), "UTF-8"));
+        }
+        assertThat(parameters).containsEntry("vpc_Command", "pay")
+            .containsEntry("vpc_Currency", "VND")
+            .containsEntry("vpc_Locale", "vn")
+            .containsEntry("vpc_MerchTxnRef", "42-1")
+            .containsEntry("vpc_Merchant", "SMLTEST")
+            .containsEntry("vpc_OrderInfo", "Đặt cọc BOOKING 42")
+            .containsEntry("vpc_TicketNo", "127.0.0.1")
+            .containsEntry("vpc_Version", "2");
+
+        String secureHash = parameters.remove("vpc_SecureHash");
+        parameters.remove("vpc_SecureHashType");
+        assertThat(secureHash).isEqualTo(expectedSecureHash(parameters));
+    }
+
+    @Test
+    public void buildWithReusedBuffers() throws Exception {
+        String first = urlBuilder.build("42-1", 1000000L, "A long description of the first order", "127.0.0.1");
+        urlBuilder.build("43-1", 5L, "B", "10.0.0.1");
+
+        assertThat(urlBuilder.build("42-1", 1000000L, "A long description of the first order", "127.0.0.1")).isEqualTo(first);
+    }
+
+    private static String expectedSecureHash(Map<String, String> sortedParameters) throws Exception {
+        String canonical = sortedParameters.entrySet().stream()
+            .map(parameter -> parameter.getKey() + "=" + parameter.getValue())
+            .collect(Collectors.joining("&"));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(DatatypeConverter.parseHexBinary(SECURE_SECRET), "HmacSHA256"));
+        return DatatypeConverter.printHexBinary(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,162 @@
+package com.booking.payment.service.napas;
+
+import com.booking.payment.PaymentServiceApp;
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositService;
+import com.booking.payment.service.dto.GatewayTransactionDTO;
+import com.booking.payment.web.rest.DepositResourceIntTest;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the NapasPendingPaymentPoller, against a mock of the NAPAS back-office API.
+ *
+ * @see NapasPendingPaymentPoller
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+@Transactional
+public class NapasPendingPaymentPollerIntTest {
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private DepositService depositService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private NapasMerchantRoutes merchantRoutes;
+
+    private NapasGatewayClient gatewayClient;
+
+    private MetricRegistry metricRegistry;
+
+    private NapasPendingPaymentPoller poller;
+
+    @Before
+    public void setup() {
+        gatewayClient = mock(NapasGatewayClient.class);
+        metricRegistry = new MetricRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPaymentPoller().setRate(1000);
+        poller = new NapasPendingPaymentPoller(depositRepository, depositService, gatewayClient, merchantRoutes, transactionManager,
+            new SyncTaskExecutor(), applicationProperties, metricRegistry);
+    }
+
+    @Test
+    public void pollCompletesStalePayments() {
+        Long approved = startPayment("approved", Duration.ofMinutes(20));
+        Long declined = startPayment("declined", Duration.ofMinutes(20));
+        Long unknown = startPayment("unknown", Duration.ofMinutes(20));
+        Long abandoned = startPayment("abandoned", Duration.ofHours(2));
+        Long recent = startPayment("recent", Duration.ofMinutes(1));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), eq(approved + "-1"))).thenReturn(transaction(true, "0", "1234567"));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), eq(declined + "-1"))).thenReturn(transaction(true, "5", "1234568"));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), eq(unknown + "-1"))).thenReturn(transaction(false, null, null));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), eq(abandoned + "-1"))).thenReturn(transaction(false, null, null));
+
+        assertThat(metricRegistry.getGauges().get(MetricRegistry.name(NapasPendingPaymentPoller.class, "pending")).getValue())
+            .isEqualTo(4L);
+        assertThat(poller.poll()).isEqualTo(4);
+
+        assertThat(depositService.findOne(approved).getStatus()).isEqualTo(DepositStatus.SUCCESS);
+        assertThat(depositService.findOne(approved).getGatewayTransactionNo()).isEqualTo("1234567");
+        assertThat(depositService.findOne(declined).getStatus()).isEqualTo(DepositStatus.FAILED);
+        assertThat(depositService.findOne(unknown).getStatus()).isEqualTo(DepositStatus.PENDING);
+        assertThat(depositService.findOne(abandoned).getStatus()).isEqualTo(DepositStatus.FAILED);
+        assertThat(depositService.findOne(recent).getStatus()).isEqualTo(DepositStatus.PENDING);
+        verify(gatewayClient, never()).queryDR(any(NapasMerchant.class), eq(recent + "-1"));
+        assertThat(metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "completed")).getCount()).isEqualTo(3);
+
+        // The payment still in progress is leased, it is only polled again once the lease is over
+        assertThat(poller.poll()).isEqualTo(0);
+        verify(gatewayClient, times(4)).queryDR(any(NapasMerchant.class), anyString());
+    }
+
+    @Test
+    public void pollKeepsPaymentsTheGatewayCouldNotQuery() {
+        Long id = startPayment("error", Duration.ofMinutes(20));
+        CompletableFuture<GatewayTransactionDTO> error = new CompletableFuture<>();
+        error.completeExceptionally(new IOException("The NAPAS gateway answered 503 to NapasQueryDR"));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), anyString())).thenReturn(error);
+
+        assertThat(poller.poll()).isEqualTo(1);
+
+        assertThat(depositService.findOne(id).getStatus()).isEqualTo(DepositStatus.PENDING);
+        assertThat(metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "errors")).getCount()).isEqualTo(1);
+        assertThat(poller.poll()).isEqualTo(0);
+    }
+
+    @Test
+    public void pollFlagsPaymentsOfAnotherAmount() {
+        Long id = startPayment("other-amount", Duration.ofMinutes(20));
+        GatewayTransactionDTO transaction = transaction(true, "0", "1234567").join();
+        transaction.setAmount(100L);
+        when(gatewayClient.queryDR(any(NapasMerchant.class), anyString())).thenReturn(CompletableFuture.completedFuture(transaction));
+
+        assertThat(poller.poll()).isEqualTo(1);
+
+        assertThat(depositService.findOne(id).getStatus()).isEqualTo(DepositStatus.PENDING);
+        assertThat(metricRegistry.meter(MetricRegistry.name(NapasPendingPaymentPoller.class, "amount-mismatches")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void newPaymentReleasesTheLease() {
+        Long id = startPayment("unknown", Duration.ofMinutes(20));
+        when(gatewayClient.queryDR(any(NapasMerchant.class), anyString())).thenReturn(transaction(false, null, null));
+        assertThat(poller.poll()).isEqualTo(1);
+
+        depositRepository.startPayment(id, "SMLTEST", id + "-2", Instant.now().minus(Duration.ofMinutes(20)));
+
+        assertThat(poller.poll()).isEqualTo(1);
+        verify(gatewayClient).queryDR(merchantRoutes.getMerchant("SMLTEST"), id + "-2");
+    }
+
+    private Long startPayment(String bookingCode, Duration age) {
+        Deposit deposit = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em).bookingCode(bookingCode)
+            .currencyCode("VND").amount(10000L));
+        // Without merchant, as the payments started before the merchants were recorded
+        depositRepository.startPayment(deposit.getId(), null, deposit.getId() + "-1", Instant.now().minus(age));
+        return deposit.getId();
+    }
+
+    private static CompletableFuture<GatewayTransactionDTO> transaction(boolean exists, String responseCode, String transactionNo) {
+        GatewayTransactionDTO transaction = new GatewayTransactionDTO();
+        transaction.setExists(exists);
+        transaction.setResponseCode(responseCode);
+        transaction.setTransactionNo(transactionNo);
+        if (exists) {
+            // The 10000 VND of the deposits, in hundredths
+            transaction.setAmount(1000000L);
+        }
+        return CompletableFuture.completedFuture(transaction);
+    }
+}
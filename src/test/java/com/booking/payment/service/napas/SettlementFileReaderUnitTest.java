@@ -0,0 +1,93 @@
+package com.booking.payment.service.napas;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the SettlementFileReader.
+ *
+ * @see SettlementFileReader
+ */
+public class SettlementFileReaderUnitTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readQuotedFieldsAndLineEndings() throws Exception {
+        Path file = write("\uFEFFMerchTxnRef,Note\r\n" +
+            "42-1,\"Paid, at last\"\r\n" +
+            "43-1,\"He said \"\"hello\"\"\"\n" +
+            "44-1,\"Two\r\nlines\"\n" +
+            "45-1,");
+
+        List<List<String>> records = readAll(file, 1024);
+
+        assertThat(records).containsExactly(
+            listOf("MerchTxnRef", "Note"),
+            listOf("42-1", "Paid, at last"),
+            listOf("43-1", "He said \"hello\""),
+            listOf("44-1", "Two\r\nlines"),
+            listOf("45-1", ""));
+    }
+
+    @Test
+    public void readThroughABufferSmallerThanTheRecords() throws Exception {
+        // The multi-byte characters are split across the reads of the channel
+        Path file = write("MerchTxnRef,Note\n42-1,Thanh toán đặt cọc\n43-1,Nguyễn\n");
+
+        List<List<String>> records = readAll(file, 5);
+
+        assertThat(records).containsExactly(
+            listOf("MerchTxnRef", "Note"),
+            listOf("42-1", "Thanh toán đặt cọc"),
+            listOf("43-1", "Nguyễn"));
+    }
+
+    @Test
+    public void countRecordsAndBytes() throws Exception {
+        Path file = write("a\nb\nc\n");
+
+        try (SettlementFileReader reader = new SettlementFileReader(file, 1024, ',')) {
+            while (reader.next() != null) {
+                // Read all the records
+            }
+            assertThat(reader.getRecordNumber()).isEqualTo(3);
+            assertThat(reader.getBytesRead()).isEqualTo(6);
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<List<String>> readAll(Path file, int bufferSize) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (SettlementFileReader reader = new SettlementFileReader(file, bufferSize, ',')) {
+            for (List<String> fields = reader.next(); fields != null; fields = reader.next()) {
+                records.add(new ArrayList<>(fields));
+            }
+        }
+        return records;
+    }
+
+    private static List<String> listOf(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,113 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.PaymentServiceApp;
+import com.booking.payment.config.ApplicationProperties;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositExportService;
+import com.booking.payment.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the DepositExportResource REST controller.
+ *
+ * @see DepositExportResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+public class DepositExportResourceIntTest {
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private DepositExportService depositExportService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restDepositExportMockMvc;
+
+    @Before
+    public void setup() {
+        final DepositExportResource depositExportResource = new DepositExportResource(depositExportService, applicationProperties);
+        this.restDepositExportMockMvc = MockMvcBuilders.standaloneSetup(depositExportResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    @Transactional
+    public void exportDepositsAsCsv() throws Exception {
+        MvcResult result = restDepositExportMockMvc.perform(get("/api/deposits/_export?format=csv"))
+            .andExpect(request().asyncStarted())
+            .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"deposits.csv\""))
+            .andReturn();
+
+        // The body is streamed to the original response by the async task, within the timeout of the export
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(applicationProperties.getExport().getTimeout());
+        result.getAsyncResult();
+        restDepositExportMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+        assertThat(result.getResponse().getContentAsString())
+            .startsWith("id,bookingCode,userId,currencyCode,version,status,amount,gatewayTransactionNo\r\n");
+    }
+
+    @Test
+    @Transactional
+    public void exportDepositsWithUnknownFormat() throws Exception {
+        restDepositExportMockMvc.perform(get("/api/deposits/_export?format=xml"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void exportWritesOneRowPerDeposit() throws Exception {
+        Deposit first = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em).bookingCode("EXPORT-1"));
+        Deposit second = depositRepository.saveAndFlush(DepositResourceIntTest.createEntity(em).bookingCode("EXPORT,\"2\""));
+        long count = depositRepository.count();
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        assertThat(depositExportService.export(DepositExportService.Format.NDJSON, ndjson)).isEqualTo(count);
+        String[] lines = new String(ndjson.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize((int) count);
+        assertThat(lines[lines.length - 2]).startsWith("{\"id\":" + first.getId() + ",").contains("\"bookingCode\":\"EXPORT-1\"");
+        assertThat(lines[lines.length - 1]).startsWith("{\"id\":" + second.getId() + ",");
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertThat(depositExportService.export(DepositExportService.Format.CSV, csv)).isEqualTo(count);
+        assertThat(new String(csv.toByteArray(), StandardCharsets.UTF_8))
+            .endsWith(second.getId() + ",\"EXPORT,\"\"2\"\"\"," + second.getUserId() + "," + second.getCurrencyCode() + "," +
+                second.getVersion() + "," + second.getStatus() + "," + second.getAmount() + ",\r\n");
+    }
+}
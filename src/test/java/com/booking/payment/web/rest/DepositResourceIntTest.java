@@ -2,13 +2,17 @@ package com.booking.payment.web.rest;
 
 import com.booking.payment.PaymentServiceApp;
 
+import com.booking.payment.aop.idempotency.IdempotencyAspect;
+import com.booking.payment.config.ApplicationProperties;
 import com.booking.payment.domain.Deposit;
 import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositSearchIndexer;
 import com.booking.payment.service.DepositService;
 import com.booking.payment.repository.search.DepositSearchRepository;
 import com.booking.payment.service.dto.DepositDTO;
 import com.booking.payment.service.mapper.DepositMapper;
 import com.booking.payment.web.rest.errors.ExceptionTranslator;
+import com.booking.payment.web.rest.util.PaginationUtil;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -17,6 +21,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -25,11 +30,16 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 import static com.booking.payment.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -51,6 +61,9 @@ public class DepositResourceIntTest {
     private static final String DEFAULT_CURRENCY_CODE = "AAAAAAAAAA";
     private static final String UPDATED_CURRENCY_CODE = "BBBBBBBBBB";
 
+    private static final Long DEFAULT_AMOUNT = 1L;
+    private static final Long UPDATED_AMOUNT = 2L;
+
     @Autowired
     private DepositRepository depositRepository;
 
@@ -63,6 +76,12 @@ public class DepositResourceIntTest {
     @Autowired
     private DepositSearchRepository depositSearchRepository;
 
+    @Autowired
+    private DepositSearchIndexer depositSearchIndexer;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -75,6 +94,12 @@ public class DepositResourceIntTest {
     @Autowired
     private EntityManager em;
 
+    /**
+     * The DepositResource bean, advised by the IdempotencyAspect.
+     */
+    @Autowired
+    private DepositResource proxiedDepositResource;
+
     private MockMvc restDepositMockMvc;
 
     private Deposit deposit;
@@ -82,7 +107,7 @@ public class DepositResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final DepositResource depositResource = new DepositResource(depositService);
+        final DepositResource depositResource = new DepositResource(depositService, applicationProperties);
         this.restDepositMockMvc = MockMvcBuilders.standaloneSetup(depositResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -100,7 +125,8 @@ public class DepositResourceIntTest {
         Deposit deposit = new Deposit()
             .bookingCode(DEFAULT_BOOKING_CODE)
             .userId(DEFAULT_USER_ID)
-            .currencyCode(DEFAULT_CURRENCY_CODE);
+            .currencyCode(DEFAULT_CURRENCY_CODE)
+            .amount(DEFAULT_AMOUNT);
         return deposit;
     }
 
@@ -129,8 +155,10 @@ public class DepositResourceIntTest {
         assertThat(testDeposit.getBookingCode()).isEqualTo(DEFAULT_BOOKING_CODE);
         assertThat(testDeposit.getUserId()).isEqualTo(DEFAULT_USER_ID);
         assertThat(testDeposit.getCurrencyCode()).isEqualTo(DEFAULT_CURRENCY_CODE);
+        assertThat(testDeposit.getAmount()).isEqualTo(DEFAULT_AMOUNT);
 
-        // Validate the Deposit in Elasticsearch
+        // Validate the Deposit in Elasticsearch, once the search outbox has been drained
+        depositSearchIndexer.drain();
         Deposit depositEs = depositSearchRepository.findOne(testDeposit.getId());
         assertThat(depositEs).isEqualToIgnoringGivenFields(testDeposit);
     }
@@ -155,6 +183,165 @@ public class DepositResourceIntTest {
         assertThat(depositList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void createDepositWithExistingBookingCode() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+        int databaseSizeBeforeCreate = depositRepository.findAll().size();
+
+        // A booking code belongs to a single deposit, so this API call must fail
+        DepositDTO depositDTO = depositMapper.toDto(createEntity(em));
+        restDepositMockMvc.perform(post("/api/deposits")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositDTO)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.bookingcodeexists"));
+
+        // Validate the Deposit in the database
+        List<Deposit> depositList = depositRepository.findAll();
+        assertThat(depositList).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    @Transactional
+    public void createDepositWithIdempotencyKey() throws Exception {
+        MockMvc idempotentDepositMockMvc = idempotentDepositMockMvc();
+        int databaseSizeBeforeCreate = depositRepository.findAll().size();
+        String idempotencyKey = UUID.randomUUID().toString();
+        byte[] content = TestUtil.convertObjectToJsonBytes(depositMapper.toDto(deposit));
+
+        String created = idempotentDepositMockMvc.perform(post("/api/deposits")
+            .header(IdempotencyAspect.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(content))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist(IdempotencyAspect.IDEMPOTENT_REPLAYED_HEADER))
+            .andReturn().getResponse().getContentAsString();
+        Long id = depositRepository.findAll().get(databaseSizeBeforeCreate).getId();
+
+        // The retry gets the same response, instead of the error of a duplicate booking code
+        idempotentDepositMockMvc.perform(post("/api/deposits")
+            .header(IdempotencyAspect.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(content))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(IdempotencyAspect.IDEMPOTENT_REPLAYED_HEADER, "true"))
+            .andExpect(header().string(HttpHeaders.LOCATION, "/api/deposits/" + id))
+            .andExpect(content().json(created))
+            .andExpect(jsonPath("$.id").value(id.intValue()));
+
+        assertThat(depositRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    @Transactional
+    public void createDepositWithReusedIdempotencyKey() throws Exception {
+        MockMvc idempotentDepositMockMvc = idempotentDepositMockMvc();
+        int databaseSizeBeforeCreate = depositRepository.findAll().size();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        idempotentDepositMockMvc.perform(post("/api/deposits")
+            .header(IdempotencyAspect.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositMapper.toDto(deposit))))
+            .andExpect(status().isCreated());
+
+        // Another deposit with the same key is not a retry, so it must be rejected
+        idempotentDepositMockMvc.perform(post("/api/deposits")
+            .header(IdempotencyAspect.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositMapper.toDto(createEntity(em).bookingCode(UPDATED_BOOKING_CODE)))))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.idempotencykeyreused"));
+
+        assertThat(depositRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    private MockMvc idempotentDepositMockMvc() {
+        return MockMvcBuilders.standaloneSetup(proxiedDepositResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    public void createDepositsInBulk() throws Exception {
+        int databaseSizeBeforeCreate = depositRepository.findAll().size();
+
+        // The second deposit already has an ID, so it must be rejected without failing the others
+        DepositDTO first = depositMapper.toDto(createEntity(em).bookingCode("BULK-1"));
+        DepositDTO withId = depositMapper.toDto(createEntity(em).bookingCode("BULK-2"));
+        withId.setId(1L);
+        DepositDTO third = depositMapper.toDto(createEntity(em).bookingCode("BULK-3"));
+
+        // The chunks are committed in their own transactions, so the deposits are deleted afterwards
+        try {
+            restDepositMockMvc.perform(post("/api/deposits/_bulk")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(first, withId, third))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$.[0].status").value(201))
+                .andExpect(jsonPath("$.[0].id").isNumber())
+                .andExpect(jsonPath("$.[1].status").value(400))
+                .andExpect(jsonPath("$.[1].error").value("idexists"))
+                .andExpect(jsonPath("$.[2].index").value(2))
+                .andExpect(jsonPath("$.[2].status").value(201));
+
+            // Validate the Deposits in the database and in Elasticsearch
+            List<Deposit> depositList = depositRepository.findAll();
+            assertThat(depositList).hasSize(databaseSizeBeforeCreate + 2);
+            Deposit testDeposit = depositList.get(depositList.size() - 1);
+            assertThat(testDeposit.getBookingCode()).isEqualTo("BULK-3");
+            depositSearchIndexer.drain();
+            assertThat(depositSearchRepository.findOne(testDeposit.getId())).isEqualToIgnoringGivenFields(testDeposit);
+        } finally {
+            deleteDeposits("BULK-1", "BULK-3");
+        }
+    }
+
+    @Test
+    public void createDepositsInBulkWithExistingBookingCode() throws Exception {
+        depositRepository.saveAndFlush(createEntity(em).bookingCode("BULK-EXISTING"));
+        DepositDTO existing = depositMapper.toDto(createEntity(em).bookingCode("BULK-EXISTING"));
+        DepositDTO other = depositMapper.toDto(createEntity(em).bookingCode("BULK-OTHER"));
+
+        try {
+            restDepositMockMvc.perform(post("/api/deposits/_bulk")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(existing, other))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].status").value(400))
+                .andExpect(jsonPath("$.[0].error").value("bookingcodeexists"))
+                .andExpect(jsonPath("$.[1].status").value(201));
+        } finally {
+            deleteDeposits("BULK-EXISTING", "BULK-OTHER");
+        }
+    }
+
+    /**
+     * Delete committed deposits, and drain their search outbox events.
+     */
+    private void deleteDeposits(String... bookingCodes) {
+        for (String bookingCode : bookingCodes) {
+            depositRepository.findByBookingCode(bookingCode).ifPresent(depositRepository::delete);
+        }
+        depositSearchIndexer.drain();
+    }
+
+    @Test
+    @Transactional
+    public void createDepositsInBulkWithTooManyDeposits() throws Exception {
+        DepositDTO[] depositDTOs = new DepositDTO[applicationProperties.getBulk().getMaxItems() + 1];
+        Arrays.fill(depositDTOs, depositMapper.toDto(deposit));
+
+        restDepositMockMvc.perform(post("/api/deposits/_bulk")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositDTOs)))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getAllDeposits() throws Exception {
@@ -168,7 +355,70 @@ public class DepositResourceIntTest {
             .andExpect(jsonPath("$.[*].id").value(hasItem(deposit.getId().intValue())))
             .andExpect(jsonPath("$.[*].bookingCode").value(hasItem(DEFAULT_BOOKING_CODE.toString())))
             .andExpect(jsonPath("$.[*].userId").value(hasItem(DEFAULT_USER_ID.intValue())))
-            .andExpect(jsonPath("$.[*].currencyCode").value(hasItem(DEFAULT_CURRENCY_CODE.toString())));
+            .andExpect(jsonPath("$.[*].currencyCode").value(hasItem(DEFAULT_CURRENCY_CODE.toString())))
+            .andExpect(jsonPath("$.[*].amount").value(hasItem(DEFAULT_AMOUNT.intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllDepositsWithKeysetPagination() throws Exception {
+        // Initialize the database
+        Deposit first = depositRepository.saveAndFlush(createEntity(em).bookingCode("PAGE-1"));
+        Deposit second = depositRepository.saveAndFlush(createEntity(em).bookingCode("PAGE-2"));
+        Deposit third = depositRepository.saveAndFlush(createEntity(em).bookingCode("PAGE-3"));
+        String cursor = PaginationUtil.encodeCursor(first.getId());
+
+        // Get the page following the first deposit
+        restDepositMockMvc.perform(get("/api/deposits?size=1&withTotal=true&cursor=" + cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(second.getId().intValue()))
+            .andExpect(header().string("X-Total-Count", String.valueOf(depositRepository.count())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString(
+                "cursor=" + PaginationUtil.encodeCursor(second.getId()) + "&size=1>; rel=\"next\"")));
+
+        // Get the last page
+        restDepositMockMvc.perform(get("/api/deposits?size=10&cursor=" + PaginationUtil.encodeCursor(second.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(third.getId().intValue()))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    @Transactional
+    public void getAllDepositsWithInvalidCursor() throws Exception {
+        restDepositMockMvc.perform(get("/api/deposits?cursor=not-a-cursor"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getUserDeposits() throws Exception {
+        // Initialize the database
+        Deposit first = depositRepository.saveAndFlush(createEntity(em).bookingCode("USER-1").userId(UPDATED_USER_ID));
+        Deposit second = depositRepository.saveAndFlush(createEntity(em).bookingCode("USER-2").userId(UPDATED_USER_ID));
+        depositRepository.saveAndFlush(createEntity(em).bookingCode("OTHER-USER"));
+
+        // Get the first page of the deposits of the user
+        String link = restDepositMockMvc.perform(get("/api/users/{userId}/deposits?size=1", UPDATED_USER_ID))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(first.getId().intValue()))
+            .andExpect(jsonPath("$.[0].bookingCode").value("USER-1"))
+            .andExpect(jsonPath("$.[0].userId").value(UPDATED_USER_ID.intValue()))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        String nextCursor = PaginationUtil.encodeCursor(first.getId());
+        assertThat(link).contains("</api/users/" + UPDATED_USER_ID + "/deposits?cursor=" + nextCursor + "&size=1>; rel=\"next\"");
+
+        // Get the next, and last, page
+        restDepositMockMvc.perform(get("/api/users/{userId}/deposits?cursor={cursor}&size=1", UPDATED_USER_ID, nextCursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(second.getId().intValue()))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
     }
 
     @Test
@@ -184,7 +434,46 @@ public class DepositResourceIntTest {
             .andExpect(jsonPath("$.id").value(deposit.getId().intValue()))
             .andExpect(jsonPath("$.bookingCode").value(DEFAULT_BOOKING_CODE.toString()))
             .andExpect(jsonPath("$.userId").value(DEFAULT_USER_ID.intValue()))
-            .andExpect(jsonPath("$.currencyCode").value(DEFAULT_CURRENCY_CODE.toString()));
+            .andExpect(jsonPath("$.currencyCode").value(DEFAULT_CURRENCY_CODE.toString()))
+            .andExpect(jsonPath("$.amount").value(DEFAULT_AMOUNT.intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void getDepositIfNoneMatch() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+
+        // Get the deposit, and then again with its ETag
+        String eTag = restDepositMockMvc.perform(get("/api/deposits/{id}", deposit.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + deposit.getVersion() + "\""))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restDepositMockMvc.perform(get("/api/deposits/{id}", deposit.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        restDepositMockMvc.perform(get("/api/deposits/{id}", deposit.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"-1\""))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(deposit.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void getDepositByBookingCode() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+
+        // Get the deposit
+        restDepositMockMvc.perform(get("/api/deposits/booking-code/{bookingCode}", DEFAULT_BOOKING_CODE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.id").value(deposit.getId().intValue()))
+            .andExpect(jsonPath("$.bookingCode").value(DEFAULT_BOOKING_CODE));
+
+        restDepositMockMvc.perform(get("/api/deposits/booking-code/{bookingCode}", UPDATED_BOOKING_CODE))
+            .andExpect(status().isNotFound());
     }
 
     @Test
@@ -209,8 +498,7 @@ public class DepositResourceIntTest {
         em.detach(updatedDeposit);
         updatedDeposit
             .bookingCode(UPDATED_BOOKING_CODE)
-            .userId(UPDATED_USER_ID)
-            .currencyCode(UPDATED_CURRENCY_CODE);
+            .userId(UPDATED_USER_ID);
         DepositDTO depositDTO = depositMapper.toDto(updatedDeposit);
 
         restDepositMockMvc.perform(put("/api/deposits")
@@ -224,13 +512,86 @@ public class DepositResourceIntTest {
         Deposit testDeposit = depositList.get(depositList.size() - 1);
         assertThat(testDeposit.getBookingCode()).isEqualTo(UPDATED_BOOKING_CODE);
         assertThat(testDeposit.getUserId()).isEqualTo(UPDATED_USER_ID);
-        assertThat(testDeposit.getCurrencyCode()).isEqualTo(UPDATED_CURRENCY_CODE);
+        assertThat(testDeposit.getCurrencyCode()).isEqualTo(DEFAULT_CURRENCY_CODE);
+        assertThat(testDeposit.getAmount()).isEqualTo(DEFAULT_AMOUNT);
 
-        // Validate the Deposit in Elasticsearch
+        // Validate the Deposit in Elasticsearch, once the search outbox has been drained
+        depositSearchIndexer.drain();
         Deposit depositEs = depositSearchRepository.findOne(testDeposit.getId());
         assertThat(depositEs).isEqualToIgnoringGivenFields(testDeposit);
     }
 
+    @Test
+    @Transactional
+    public void updateDepositAmountOrCurrency() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+        Long version = deposit.getVersion();
+
+        // The amount of a deposit, and its currency, can't change once it exists
+        DepositDTO updatedAmount = depositMapper.toDto(deposit);
+        updatedAmount.setAmount(UPDATED_AMOUNT);
+        DepositDTO updatedCurrency = depositMapper.toDto(deposit);
+        updatedCurrency.setCurrencyCode(UPDATED_CURRENCY_CODE);
+        for (DepositDTO depositDTO : new DepositDTO[] { updatedAmount, updatedCurrency }) {
+            restDepositMockMvc.perform(put("/api/deposits")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(depositDTO)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("error.amountimmutable"));
+        }
+
+        // Validate the Deposit in the database
+        em.clear();
+        Deposit testDeposit = depositRepository.findOne(deposit.getId());
+        assertThat(testDeposit.getCurrencyCode()).isEqualTo(DEFAULT_CURRENCY_CODE);
+        assertThat(testDeposit.getAmount()).isEqualTo(DEFAULT_AMOUNT);
+        assertThat(testDeposit.getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    @Transactional
+    public void updateDepositIfMatch() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+        Long version = deposit.getVersion();
+
+        DepositDTO depositDTO = depositMapper.toDto(deposit);
+        depositDTO.setBookingCode(UPDATED_BOOKING_CODE);
+
+        // An update of another version of the deposit is rejected
+        restDepositMockMvc.perform(put("/api/deposits")
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositDTO)))
+            .andExpect(status().isPreconditionFailed());
+        assertThat(depositRepository.findOne(deposit.getId()).getBookingCode()).isEqualTo(DEFAULT_BOOKING_CODE);
+
+        restDepositMockMvc.perform(put("/api/deposits")
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositDTO)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""))
+            .andExpect(jsonPath("$.version").value(version + 1))
+            .andExpect(jsonPath("$.bookingCode").value(UPDATED_BOOKING_CODE));
+    }
+
+    @Test
+    @Transactional
+    public void updateDepositWithStaleVersion() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+
+        DepositDTO depositDTO = depositMapper.toDto(deposit);
+        depositDTO.setVersion(deposit.getVersion() - 1);
+
+        restDepositMockMvc.perform(put("/api/deposits")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(depositDTO)))
+            .andExpect(status().isConflict());
+    }
+
     @Test
     @Transactional
     public void updateNonExistingDeposit() throws Exception {
@@ -263,7 +624,8 @@ public class DepositResourceIntTest {
             .accept(TestUtil.APPLICATION_JSON_UTF8))
             .andExpect(status().isOk());
 
-        // Validate Elasticsearch is empty
+        // Validate Elasticsearch is empty, once the search outbox has been drained
+        depositSearchIndexer.drain();
         boolean depositExistsInEs = depositSearchRepository.exists(deposit.getId());
         assertThat(depositExistsInEs).isFalse();
 
@@ -289,6 +651,84 @@ public class DepositResourceIntTest {
             .andExpect(jsonPath("$.[*].currencyCode").value(hasItem(DEFAULT_CURRENCY_CODE.toString())));
     }
 
+    @Test
+    @Transactional
+    public void searchDepositWithPagination() throws Exception {
+        // Initialize the database
+        depositRepository.saveAndFlush(deposit);
+        depositSearchRepository.save(deposit);
+
+        // Search the deposit, fetching only some of its fields
+        restDepositMockMvc.perform(get("/api/_search/deposits?query=id:" + deposit.getId() + "&page=0&size=5&fields=bookingCode"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("fields=bookingCode&page=0&size=5&query=id%3A" + deposit.getId())))
+            .andExpect(jsonPath("$.[0].id").value(deposit.getId().intValue()))
+            .andExpect(jsonPath("$.[0].bookingCode").value(DEFAULT_BOOKING_CODE))
+            .andExpect(jsonPath("$.[0].userId").isEmpty())
+            .andExpect(jsonPath("$.[0].currencyCode").isEmpty());
+    }
+
+    @Test
+    @Transactional
+    public void searchDepositsWithCursor() throws Exception {
+        // Initialize the database
+        Deposit first = depositRepository.saveAndFlush(createEntity(em).bookingCode("CURSOR-1").userId(UPDATED_USER_ID));
+        Deposit second = depositRepository.saveAndFlush(createEntity(em).bookingCode("CURSOR-2").userId(UPDATED_USER_ID));
+        depositSearchRepository.save(Arrays.asList(first, second));
+        String query = "userId:" + UPDATED_USER_ID;
+
+        // The first page is requested with an empty cursor
+        String link = restDepositMockMvc.perform(get("/api/_search/deposits?query=" + query + "&cursor=&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(first.getId().intValue()))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        String nextCursor = PaginationUtil.encodeCursor(first.getId());
+        assertThat(link).contains("cursor=" + nextCursor + "&size=1&query=userId%3A" + UPDATED_USER_ID + ">; rel=\"next\"");
+
+        // Get the next page with the cursor of the "next" link
+        restDepositMockMvc.perform(get("/api/_search/deposits?query=" + query + "&cursor=" + nextCursor + "&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(second.getId().intValue()))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    @Transactional
+    public void searchDepositsTooDeep() throws Exception {
+        restDepositMockMvc.perform(get("/api/_search/deposits?query=*&page=500&size=20"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void filterDeposits() throws Exception {
+        // Initialize the database
+        Deposit matching = depositRepository.saveAndFlush(createEntity(em).bookingCode("FILTER 1"));
+        Deposit other = depositRepository.saveAndFlush(createEntity(em).bookingCode("FILTER"));
+        depositSearchRepository.save(Arrays.asList(matching, other));
+
+        // The booking code is matched exactly, not as analyzed text
+        restDepositMockMvc.perform(get("/api/_search/deposits/_filter?bookingCode=FILTER 1&currencyCode=" + DEFAULT_CURRENCY_CODE))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("bookingCode=FILTER%201&currencyCode=" + DEFAULT_CURRENCY_CODE)))
+            .andExpect(jsonPath("$.[0].id").value(matching.getId().intValue()));
+
+        restDepositMockMvc.perform(get("/api/_search/deposits/_filter?userId=" + DEFAULT_USER_ID + "&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(other.getId().intValue(), matching.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void filterDepositsWithoutFilter() throws Exception {
+        restDepositMockMvc.perform(get("/api/_search/deposits/_filter"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void equalsVerifier() throws Exception {
@@ -0,0 +1,329 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.PaymentServiceApp;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.dto.PaymentRequestDTO;
+import com.booking.payment.service.napas.NapasCallbackService;
+import com.booking.payment.service.napas.NapasGatewayClient;
+import com.booking.payment.service.napas.NapasPaymentService;
+import com.booking.payment.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.persistence.EntityManager;
+import javax.xml.bind.DatatypeConverter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the PaymentResource REST controller.
+ *
+ * @see PaymentResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+public class PaymentResourceIntTest {
+
+    private static final String SECURE_SECRET = "198BE3F2E8C75A53F38C1C4A5B6DBA27";
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private NapasPaymentService napasPaymentService;
+
+    @Autowired
+    private NapasCallbackService napasCallbackService;
+
+    @Autowired
+    private NapasGatewayClient napasGatewayClient;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restPaymentMockMvc;
+
+    @Before
+    public void setup() {
+        PaymentResource paymentResource = new PaymentResource(napasPaymentService, napasCallbackService, napasGatewayClient);
+        this.restPaymentMockMvc = MockMvcBuilders.standaloneSetup(paymentResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    @Transactional
+    public void initiatePayment() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        PaymentRequestDTO paymentRequest = new PaymentRequestDTO();
+        paymentRequest.setDepositId(deposit.getId());
+        paymentRequest.setAmount(1000000L);
+
+        restPaymentMockMvc.perform(post("/api/payments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(paymentRequest)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.depositId").value(deposit.getId().intValue()))
+            .andExpect(jsonPath("$.merchTxnRef").value(startsWith(deposit.getId() + "-")))
+            .andExpect(jsonPath("$.url").value(allOf(
+                startsWith("https://sandbox.napas.com.vn/gateway/vpcpay.do?vpc_AccessCode=ECAFAB&vpc_Amount=1000000&"),
+                containsString("&vpc_OrderInfo=" + deposit.getBookingCode() + "&"),
+                containsString("&vpc_SecureHash="))));
+    }
+
+    @Test
+    @Transactional
+    public void initiatePaymentOfCompletedDeposit() throws Exception {
+        Deposit paid = depositRepository.saveAndFlush(createDeposit().status(DepositStatus.SUCCESS));
+        Deposit failed = depositRepository.saveAndFlush(createDeposit().bookingCode("FAILED").status(DepositStatus.FAILED));
+
+        for (Deposit deposit : new Deposit[] { paid, failed }) {
+            PaymentRequestDTO paymentRequest = new PaymentRequestDTO();
+            paymentRequest.setDepositId(deposit.getId());
+            restPaymentMockMvc.perform(post("/api/payments")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(paymentRequest)))
+                .andExpect(status().isConflict());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void initiatePaymentOfNonExistingDeposit() throws Exception {
+        PaymentRequestDTO paymentRequest = new PaymentRequestDTO();
+        paymentRequest.setDepositId(Long.MAX_VALUE);
+        paymentRequest.setAmount(1000000L);
+
+        restPaymentMockMvc.perform(post("/api/payments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(paymentRequest)))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void initiatePaymentWithoutAmount() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        PaymentRequestDTO paymentRequest = new PaymentRequestDTO();
+        paymentRequest.setDepositId(deposit.getId());
+
+        // The amount paid is the amount of the deposit
+        restPaymentMockMvc.perform(post("/api/payments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(paymentRequest)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.url").value(containsString("&vpc_Amount=1000000&")));
+    }
+
+    @Test
+    @Transactional
+    public void initiatePaymentWithAnotherAmount() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        PaymentRequestDTO paymentRequest = new PaymentRequestDTO();
+        paymentRequest.setDepositId(deposit.getId());
+        paymentRequest.setAmount(100L);
+
+        restPaymentMockMvc.perform(post("/api/payments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(paymentRequest)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.amountmismatch"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackCompletesPayment() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        Long version = deposit.getVersion();
+        startPayment(deposit, "-1539849600000");
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/return", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(deposit.getId().intValue()))
+            .andExpect(jsonPath("$.status").value("SUCCESS"))
+            .andExpect(jsonPath("$.gatewayTransactionNo").value("1234567"))
+            .andExpect(jsonPath("$.version").value(version + 1));
+
+        // The IPN of the same payment, or of any later one, doesn't change the completed deposit
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("SUCCESS"))
+            .andExpect(jsonPath("$.version").value(version + 1));
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849700000", "5", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("SUCCESS"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackCompletesAuthorizedPayment() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        // The payment is initiated while the deposit is PENDING
+        startPayment(deposit, "-1539849600000");
+        depositRepository.transition(deposit.getId(), DepositStatus.PENDING, DepositStatus.AUTHORIZED, null);
+        em.clear();
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("SUCCESS"))
+            .andExpect(jsonPath("$.gatewayTransactionNo").value("1234567"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackFailsPayment() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        startPayment(deposit, "-1539849600000");
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "5", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("FAILED"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackWithInvalidSecureHash() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        startPayment(deposit, "-1539849600000");
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/return", deposit.getId() + "-1539849600000", "0", false))
+            .andExpect(status().isBadRequest());
+
+        em.clear();
+        assertThat(depositRepository.findOne(deposit.getId()).getStatus()).isEqualTo(DepositStatus.PENDING);
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackWithAnotherAmount() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit().amount(20000L));
+        startPayment(deposit, "-1539849600000");
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.amountmismatch"));
+
+        em.clear();
+        assertThat(depositRepository.findOne(deposit.getId()).getStatus()).isEqualTo(DepositStatus.PENDING);
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackOfSupersededPaymentIsIgnored() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        startPayment(deposit, "-1539849600000");
+        startPayment(deposit, "-1539849700000");
+
+        // Neither the failure nor the approval of the abandoned payment completes the deposit
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "5", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("PENDING"));
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("PENDING"));
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849700000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("SUCCESS"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackOfAnotherMerchantIsIgnored() throws Exception {
+        Deposit deposit = depositRepository.saveAndFlush(createDeposit());
+        depositRepository.startPayment(deposit.getId(), "SMLUSD", deposit.getId() + "-1539849600000", Instant.now());
+
+        restPaymentMockMvc.perform(callback("/api/payments/napas/ipn", deposit.getId() + "-1539849600000", "0", true))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    @Transactional
+    public void napasCallbackOfNonExistingDeposit() throws Exception {
+        restPaymentMockMvc.perform(callback("/api/payments/napas/return", Long.MAX_VALUE + "-1539849600000", "0", true))
+            .andExpect(status().isNotFound());
+    }
+
+    /**
+     * A deposit of 10000 VND, a currency without minor unit, paid as a vpc_Amount of 1000000.
+     */
+    private Deposit createDeposit() {
+        return DepositResourceIntTest.createEntity(em).currencyCode("VND").amount(10000L);
+    }
+
+    /**
+     * Record a payment of the deposit, initiated with the default merchant.
+     */
+    private void startPayment(Deposit deposit, String suffix) {
+        depositRepository.startPayment(deposit.getId(), "SMLTEST", deposit.getId() + suffix, Instant.now());
+    }
+
+    /**
+     * Build a callback of the gateway, signed as it does, or tampered with after being signed.
+     */
+    private static MockHttpServletRequestBuilder callback(String url, String merchTxnRef, String responseCode, boolean valid)
+        throws Exception {
+        Map<String, String> parameters = new TreeMap<>();
+        parameters.put("vpc_Amount", "1000000");
+        parameters.put("vpc_Command", "pay");
+        parameters.put("vpc_Locale", "vn");
+        parameters.put("vpc_MerchTxnRef", merchTxnRef);
+        parameters.put("vpc_Merchant", "SMLTEST");
+        parameters.put("vpc_OrderInfo", "Đặt cọc");
+        parameters.put("vpc_TransactionNo", "1234567");
+        parameters.put("vpc_TxnResponseCode", responseCode);
+        parameters.put("vpc_Version", "2");
+        String canonical = parameters.entrySet().stream()
+            .map(parameter -> parameter.getKey() + "=" + parameter.getValue())
+            .collect(Collectors.joining("&"));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(DatatypeConverter.parseHexBinary(SECURE_SECRET), "HmacSHA256"));
+        String secureHash = DatatypeConverter.printHexBinary(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+        if (!valid) {
+            parameters.put("vpc_Amount", "1");
+        }
+
+        MockHttpServletRequestBuilder request = get(url)
+            // The hash is compared whatever its case
+            .param("vpc_SecureHash", secureHash.toLowerCase())
+            .param("vpc_SecureHashType", "SHA256")
+            .param("vpc_Message", "");
+        parameters.forEach(request::param);
+        return request;
+    }
+}
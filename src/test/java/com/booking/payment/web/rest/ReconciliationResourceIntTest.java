@@ -0,0 +1,194 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.PaymentServiceApp;
+
+import com.booking.payment.config.ApplicationProperties;
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.domain.enumeration.DepositStatus;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.service.DepositReconciliationService;
+import com.booking.payment.web.rest.errors.ExceptionTranslator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ReconciliationResource REST controller.
+ * <p>
+ * The reconciliation runs on the task executor, in its own transaction, so the deposits of these tests are
+ * committed, and removed after each test.
+ *
+ * @see ReconciliationResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+public class ReconciliationResourceIntTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private DepositReconciliationService depositReconciliationService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restReconciliationMockMvc;
+
+    private final List<Deposit> deposits = new ArrayList<>();
+
+    private ApplicationProperties.Reconciliation defaults;
+
+    private Path settlementDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        ApplicationProperties.Reconciliation properties = applicationProperties.getReconciliation();
+        defaults = new ApplicationProperties.Reconciliation();
+        defaults.setSettlementDirectory(properties.getSettlementDirectory());
+        defaults.setReportDirectory(properties.getReportDirectory());
+        defaults.setRunSize(properties.getRunSize());
+        settlementDirectory = temporaryFolder.newFolder("settlements").toPath();
+        properties.setSettlementDirectory(settlementDirectory.toString());
+        properties.setReportDirectory(settlementDirectory.resolve("reports").toString());
+        // Spill the sort to several runs
+        properties.setRunSize(2);
+
+        ReconciliationResource reconciliationResource = new ReconciliationResource(depositReconciliationService);
+        this.restReconciliationMockMvc = MockMvcBuilders.standaloneSetup(reconciliationResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void cleanup() {
+        ApplicationProperties.Reconciliation properties = applicationProperties.getReconciliation();
+        properties.setSettlementDirectory(defaults.getSettlementDirectory());
+        properties.setReportDirectory(defaults.getReportDirectory());
+        properties.setRunSize(defaults.getRunSize());
+        depositRepository.delete(deposits);
+    }
+
+    @Test
+    public void reconcileSettlementFile() throws Exception {
+        Deposit paid = createDeposit("RECONCILE-1", DepositStatus.SUCCESS, "2026-10-18T08:00:00+07:00");
+        Deposit pending = createDeposit("RECONCILE-2", DepositStatus.PENDING, "2026-10-18T09:00:00+07:00");
+        Deposit notSettled = createDeposit("RECONCILE-3", DepositStatus.SUCCESS, "2026-10-18T10:00:00+07:00");
+        Deposit paidTwice = createDeposit("RECONCILE-4", DepositStatus.SUCCESS, "2026-10-18T11:00:00+07:00");
+        Deposit failed = createDeposit("RECONCILE-5", DepositStatus.FAILED, "2026-10-18T12:00:00+07:00");
+        // Paid across midnight, and paid on the next day: neither is a deposit of the day
+        Deposit paidTheDayBefore = createDeposit("RECONCILE-6", DepositStatus.SUCCESS, "2026-10-17T23:59:00+07:00");
+        createDeposit("RECONCILE-7", DepositStatus.SUCCESS, "2026-10-19T00:00:00+07:00");
+        Deposit paidLess = createDeposit("RECONCILE-8", DepositStatus.SUCCESS, "2026-10-18T23:59:59+07:00");
+        Files.write(settlementDirectory.resolve("settlement-20261018.csv"), (
+            "MerchTxnRef,TransactionNo,TxnResponseCode,Amount,Note\r\n" +
+            paidTwice.getId() + "-2,1004,0,1000000,\"Second payment, same deposit\"\r\n" +
+            (failed.getId() + 1000) + "-1,1006,0,1000000,\r\n" +
+            paid.getId() + "-1,1001,0,1000000,\r\n" +
+            "ABC-1,1007,0,1000000,\r\n" +
+            failed.getId() + "-1,1005,1,1000000,\r\n" +
+            paidTwice.getId() + "-1,1003,0,1000000,\r\n" +
+            pending.getId() + "-1,1002,0,1000000,\r\n" +
+            paidTheDayBefore.getId() + "-1,1008,0,1000000,\r\n" +
+            paidLess.getId() + "-1,1009,0,100,\r\n").getBytes(StandardCharsets.UTF_8));
+
+        MvcResult mvcResult = restReconciliationMockMvc.perform(post("/management/reconciliations?file=settlement-20261018.csv"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        restReconciliationMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.settlementFile").value("settlement-20261018.csv"))
+            .andExpect(jsonPath("$.reportFile").value("settlement-20261018.mismatches.csv"))
+            .andExpect(jsonPath("$.lineCount").value(9))
+            .andExpect(jsonPath("$.depositCount").value(7))
+            .andExpect(jsonPath("$.matchedCount").value(3))
+            .andExpect(jsonPath("$.mismatchCount").value(6))
+            .andExpect(jsonPath("$.mismatchCounts.UNKNOWN_REFERENCE").value(1))
+            .andExpect(jsonPath("$.mismatchCounts.UNKNOWN_DEPOSIT").value(1))
+            .andExpect(jsonPath("$.mismatchCounts.STATUS_MISMATCH").value(1))
+            .andExpect(jsonPath("$.mismatchCounts.DUPLICATE_SETTLEMENT").value(1))
+            .andExpect(jsonPath("$.mismatchCounts.MISSING_SETTLEMENT").value(1))
+            .andExpect(jsonPath("$.mismatchCounts.AMOUNT_MISMATCH").value(1));
+
+        List<String> report = Files.readAllLines(settlementDirectory.resolve("reports/settlement-20261018.mismatches.csv"));
+        assertThat(report).containsExactly(
+            "type,merchTxnRef,transactionNo,responseCode,amount,line,depositId,depositStatus,depositAmount,depositCurrencyCode",
+            "UNKNOWN_REFERENCE,ABC-1,1007,0,1000000,5,,,,",
+            "STATUS_MISMATCH," + pending.getId() + "-1,1002,0,1000000,8," + pending.getId() + ",PENDING,10000,VND",
+            "MISSING_SETTLEMENT,,,,,," + notSettled.getId() + ",SUCCESS,10000,VND",
+            "DUPLICATE_SETTLEMENT," + paidTwice.getId() + "-1,1003,0,1000000,7," + paidTwice.getId() + ",SUCCESS,10000,VND",
+            "AMOUNT_MISMATCH," + paidLess.getId() + "-1,1009,0,100,10," + paidLess.getId() + ",SUCCESS,10000,VND",
+            "UNKNOWN_DEPOSIT," + (failed.getId() + 1000) + "-1,1006,0,1000000,3,,,,");
+    }
+
+    @Test
+    public void reconcileSettlementFileOfAnotherDate() throws Exception {
+        createDeposit("RECONCILE-1", DepositStatus.SUCCESS, "2026-10-18T08:00:00+07:00");
+        Files.write(settlementDirectory.resolve("settlement.csv"),
+            "MerchTxnRef,TransactionNo,TxnResponseCode,Amount\r\n".getBytes(StandardCharsets.UTF_8));
+
+        restReconciliationMockMvc.perform(post("/management/reconciliations?file=settlement.csv"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.settlementdatemissing"));
+
+        MvcResult mvcResult = restReconciliationMockMvc.perform(post("/management/reconciliations?file=settlement.csv&date=2026-10-19"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        restReconciliationMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.depositCount").value(0))
+            .andExpect(jsonPath("$.mismatchCount").value(0));
+    }
+
+    @Test
+    public void reconcileUnknownSettlementFile() throws Exception {
+        restReconciliationMockMvc.perform(post("/management/reconciliations?file=../application.yml"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.settlementfilenotfound"));
+    }
+
+    private Deposit createDeposit(String bookingCode, DepositStatus status, String paymentStartedAt) {
+        Deposit deposit = depositRepository.saveAndFlush(new Deposit().bookingCode(bookingCode).userId(1L).currencyCode("VND")
+            .amount(10000L).status(status));
+        deposits.add(deposit);
+        jdbcTemplate.update("update deposit set payment_started_at = ? where id = ?",
+            Timestamp.from(OffsetDateTime.parse(paymentStartedAt).toInstant()), deposit.getId());
+        return deposit;
+    }
+}
@@ -0,0 +1,129 @@
+package com.booking.payment.web.rest;
+
+import com.booking.payment.PaymentServiceApp;
+
+import com.booking.payment.domain.Deposit;
+import com.booking.payment.repository.DepositRepository;
+import com.booking.payment.repository.ReindexRangeRepository;
+import com.booking.payment.repository.search.DepositSearchRepository;
+import com.booking.payment.service.DepositReindexService;
+import com.booking.payment.web.rest.errors.ExceptionTranslator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.isOneOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ReindexResource REST controller.
+ * <p>
+ * The reindex runs on its own threads and transactions, so the deposits of these tests are committed,
+ * and removed after each test.
+ *
+ * @see ReindexResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PaymentServiceApp.class)
+public class ReindexResourceIntTest {
+
+    @Autowired
+    private DepositRepository depositRepository;
+
+    @Autowired
+    private ReindexRangeRepository reindexRangeRepository;
+
+    @Autowired
+    private DepositSearchRepository depositSearchRepository;
+
+    @Autowired
+    private DepositReindexService depositReindexService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restReindexMockMvc;
+
+    private final List<Deposit> deposits = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        ReindexResource reindexResource = new ReindexResource(depositReindexService);
+        this.restReindexMockMvc = MockMvcBuilders.standaloneSetup(reindexResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void cleanup() {
+        depositRepository.delete(deposits);
+        deposits.forEach(deposit -> depositSearchRepository.delete(deposit.getId()));
+        reindexRangeRepository.deleteAll();
+    }
+
+    @Test
+    public void reindexAllDeposits() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Deposit deposit = new Deposit().bookingCode("REINDEX-" + i).userId(1L).currencyCode("VND");
+            deposits.add(depositRepository.saveAndFlush(deposit));
+        }
+
+        restReindexMockMvc.perform(post("/management/reindex?restart=true"))
+            .andExpect(status().isAccepted())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.state").value(isOneOf("RUNNING", "COMPLETED")));
+
+        awaitReindex();
+        restReindexMockMvc.perform(get("/management/reindex"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.state").value("COMPLETED"))
+            .andExpect(jsonPath("$.indexedCount").value(3))
+            .andExpect(jsonPath("$.completedRangeCount").value(1));
+
+        for (Deposit deposit : deposits) {
+            assertThat(depositSearchRepository.findOne(deposit.getId())).isEqualToIgnoringGivenFields(deposit);
+        }
+        assertThat(reindexRangeRepository.findAllByCompletedFalseOrderByRangeStart()).isEmpty();
+    }
+
+    @Test
+    public void staleDepositsDoNotOverwriteNewerDocuments() {
+        Deposit deposit = depositRepository.saveAndFlush(new Deposit().bookingCode("REINDEX-STALE").userId(1L).currencyCode("VND"));
+        deposits.add(deposit);
+        Deposit newer = new Deposit().bookingCode("REINDEX-NEWER").userId(1L).currencyCode("VND");
+        newer.setId(deposit.getId());
+        newer.setVersion(deposit.getVersion() + 1);
+
+        assertThat(depositSearchRepository.bulk(Collections.singletonList(newer), Collections.emptyList())).isEmpty();
+        assertThat(depositSearchRepository.bulk(Collections.singletonList(deposit), Collections.emptyList())).isEmpty();
+        assertThat(depositSearchRepository.findOne(deposit.getId()).getBookingCode()).isEqualTo("REINDEX-NEWER");
+
+        assertThat(depositSearchRepository.bulk(Collections.emptyList(), Collections.singletonList(deposit.getId()))).isEmpty();
+        assertThat(depositSearchRepository.bulk(Collections.singletonList(newer), Collections.emptyList())).isEmpty();
+        assertThat(depositSearchRepository.exists(deposit.getId())).isFalse();
+    }
+
+    private void awaitReindex() throws InterruptedException {
+        for (int i = 0; i < 100 && depositReindexService.getStatus().getState() == DepositReindexService.State.RUNNING; i++) {
+            Thread.sleep(100);
+        }
+    }
+}
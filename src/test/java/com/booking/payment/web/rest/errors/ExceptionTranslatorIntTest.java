@@ -148,4 +148,14 @@ public class ExceptionTranslatorIntTest {
             .andExpect(jsonPath("$.title").value("Internal Server Error"));
     }
 
+    @Test
+    public void testGatewayUnavailable() throws Exception {
+        mockMvc.perform(get("/test/gateway-unavailable"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().contentType(MediaTypes.PROBLEM))
+            .andExpect(jsonPath("$.type").value(ErrorConstants.GATEWAY_UNAVAILABLE_TYPE.toString()))
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_GATEWAY_UNAVAILABLE))
+            .andExpect(jsonPath("$.detail").value("The circuit breaker of the NAPAS gateway is open"));
+    }
+
 }
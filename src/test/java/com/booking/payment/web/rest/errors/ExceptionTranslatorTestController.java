@@ -1,5 +1,7 @@
 package com.booking.payment.web.rest.errors;
 
+import com.booking.payment.service.napas.GatewayUnavailableException;
+
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
@@ -68,6 +70,11 @@ public class ExceptionTranslatorTestController {
         throw new RuntimeException();
     }
 
+    @GetMapping("/test/gateway-unavailable")
+    public void gatewayUnavailable() {
+        throw new GatewayUnavailableException("The circuit breaker of the NAPAS gateway is open");
+    }
+
     public static class TestDTO {
 
         @NotNull
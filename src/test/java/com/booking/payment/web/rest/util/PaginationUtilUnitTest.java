@@ -11,6 +11,7 @@ import org.junit.Test;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpHeaders;
 
 /**
@@ -155,4 +156,51 @@ public class PaginationUtilUnitTest {
         assertTrue(xTotalCountHeaders.size() == 1);
         assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(0L));
     }
+
+    @Test
+    public void generateKeysetPaginationHttpHeadersTest() {
+        String baseUrl = "/api/example";
+        List<String> content = new ArrayList<>();
+        content.add("a");
+        String cursor = PaginationUtil.encodeCursor(42L);
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(
+            new SliceImpl<>(content, new PageRequest(0, 1), true), cursor, 400L, baseUrl);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        assertTrue(strHeaders.size() == 1);
+        String expectedData = "</api/example?cursor=" + cursor + "&size=1>; rel=\"next\","
+                + "</api/example?size=1>; rel=\"first\"";
+        assertEquals(expectedData, strHeaders.get(0));
+        assertEquals("400", headers.getFirst("X-Total-Count"));
+
+        // Last slice, without total count
+        headers = PaginationUtil.generateKeysetPaginationHttpHeaders(
+            new SliceImpl<>(content, new PageRequest(0, 1), false), cursor, null, baseUrl);
+        assertEquals("</api/example?size=1>; rel=\"first\"", headers.getFirst(HttpHeaders.LINK));
+        assertTrue(headers.get("X-Total-Count") == null);
+    }
+
+    @Test
+    public void generateSearchAfterPaginationHttpHeadersTest() {
+        List<String> content = new ArrayList<>();
+        content.add("a");
+        String cursor = PaginationUtil.encodeCursor(42L);
+        HttpHeaders headers = PaginationUtil.generateSearchAfterPaginationHttpHeaders("Test1, test2",
+            new SliceImpl<>(content, new PageRequest(0, 1), true), cursor, "/api/_search/example");
+        String expectedData = "</api/_search/example?cursor=" + cursor + "&size=1&query=Test1%2C+test2>; rel=\"next\","
+                + "</api/_search/example?cursor=&size=1&query=Test1%2C+test2>; rel=\"first\"";
+        assertEquals(expectedData, headers.getFirst(HttpHeaders.LINK));
+        assertTrue(headers.get("X-Total-Count") == null);
+    }
+
+    @Test
+    public void cursorTest() {
+        assertEquals(42L, PaginationUtil.decodeCursor(PaginationUtil.encodeCursor(42L)));
+        assertEquals(Long.MIN_VALUE, PaginationUtil.decodeCursor(PaginationUtil.encodeCursor(Long.MIN_VALUE)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCursorTest() {
+        PaginationUtil.decodeCursor("AAAA");
+    }
 }